@@ -1,9 +1,26 @@
 package com.example.model;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.function.ObjIntConsumer;
+
 /**
  * Implementation of an AVL Tree, a self-balancing binary search tree.
  * Each node in the tree stores a word, its frequency, and height.
  * The tree automatically maintains balance during insertions.
+ *
+ * Every node also stores the number of words, the sum of the frequencies and
+ * the highest frequency of its subtree. They answer order-statistics queries
+ * (the rank of a word, the word at a rank), frequency sums over ranges of
+ * words and the most frequent words in O(log n) per word, without visiting
+ * the whole tree. Inserts and lookups walk the tree iteratively.
+ *
+ * A tree has a single writer, but any number of threads can read immutable
+ * {@link #snapshot() snapshots} of it without locking. Nodes are never
+ * changed once a snapshot can see them: the writer copies the nodes on the
+ * path to an insertion instead (path copying), and only nodes created since
+ * the last snapshot are updated in place.
  */
 public class AVLTree {
 
@@ -12,7 +29,11 @@ public class AVLTree {
         String key;        // The word stored in the node
         int count;         // Frequency of the word
         int height;        // Height of the node in the tree
+        int size;          // Number of words in the subtree
+        long total;        // Sum of the frequencies in the subtree
+        int maxCount;      // Highest frequency in the subtree
         TreeNode left, right; // Pointers to the left and right child nodes
+        int version;       // Version of the tree the node was created in
 
         /**
          * Constructor to create a new TreeNode with the given key.
@@ -24,54 +45,183 @@ public class AVLTree {
             this.key = key;
             this.count = 1;  // Default frequency is 1 when the key is first inserted
             this.height = 1; // Default height is 1 for a new leaf node
+            this.size = 1;
+            this.total = 1;
+            this.maxCount = 1;
+            this.version = AVLTree.this.version;
         }
     }
 
     private TreeNode rootNode; // The root node of the AVL Tree
 
+    // Nodes of this version are not visible to any snapshot and can be updated in place
+    private int version;
+    private boolean readOnly;
+
+    /**
+     * Takes an immutable snapshot of the tree. The snapshot can be read from
+     * any thread while this tree keeps changing, and never sees later
+     * changes. Taking a snapshot does not copy anything.
+     *
+     * @return A read-only tree with the words inserted so far
+     */
+    public AVLTree snapshot() {
+        AVLTree snapshot = new AVLTree();
+        snapshot.rootNode = rootNode;
+        snapshot.readOnly = true;
+        version++; // Every existing node is shared from now on
+        return snapshot;
+    }
+
     /**
      * Public method to insert a word into the AVL Tree.
      *
      * @param word The word to be inserted into the tree
      */
     public void insert(String word) {
-        rootNode = insertIntoTree(rootNode, word); // Start insertion from the root node
+        insert(word, 1);
     }
 
     /**
-     * Private recursive method to insert a word into the AVL Tree.
-     * Automatically balances the tree after the word is inserted.
+     * Public method to insert a word into the AVL Tree several times at once,
+     * for example when merging frequencies counted elsewhere. A word whose
+     * frequency drops to zero is removed from the tree.
      *
-     * @param currentNode The current node being examined during insertion
-     * @param newKey      The word to insert into the tree
-     * @return The updated TreeNode after insertion
+     * @param word  The word to be inserted into the tree
+     * @param count The number of occurrences to add; negative to take some back
      */
-    private TreeNode insertIntoTree(TreeNode currentNode, String newKey) {
-        if (currentNode == null) { // Base case: If the current node is null, create a new node
-            return new TreeNode(newKey);
+    public void insert(String word, int count) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("AVL tree snapshots are read-only");
         }
+        // Nodes from the root to the word, made writable and linked on the way down
+        TreeNode[] path = new TreeNode[getHeight(rootNode) + 1];
+        boolean[] wentLeft = new boolean[path.length]; // Direction from path[i] to the next node
+        int depth = 0;
+        TreeNode currentNode = rootNode;
+        while (currentNode != null) {
+            currentNode = getWritableNode(currentNode); // Copy the node if a snapshot can see it
+            link(path, wentLeft, depth, currentNode);
+            path[depth] = currentNode;
 
-        // Compare the word being inserted with the current node's key
-        int comparison = newKey.compareTo(currentNode.key);
+            // Compare the word being inserted with the current node's key
+            int comparison = word.compareTo(currentNode.key);
+            if (comparison == 0) {
+                break;
+            }
+            wentLeft[depth++] = comparison < 0;
+            currentNode = comparison < 0 ? currentNode.left : currentNode.right;
+        }
 
-        // If the new word is smaller, recurse into the left subtree
-        if (comparison < 0) {
-            currentNode.left = insertIntoTree(currentNode.left, newKey);
+        if (currentNode == null) { // The word is new: attach a leaf below the last node
+            if (count == 0) {
+                return;
+            }
+            TreeNode newNode = new TreeNode(word);
+            newNode.count = count;
+            newNode.total = count;
+            newNode.maxCount = count;
+            link(path, wentLeft, depth, newNode);
+        } else { // If the word already exists in the tree, add to its frequency
+            currentNode.count += count;
+            depth = currentNode.count == 0 ? removeNode(path, wentLeft, depth) : depth + 1;
         }
-        // If the new word is larger, recurse into the right subtree
-        else if (comparison > 0) {
-            currentNode.right = insertIntoTree(currentNode.right, newKey);
+
+        // Update the nodes on the path bottom-up and rebalance them
+        for (int i = depth - 1; i >= 0; i--) {
+            updateNode(path[i]);
+            link(path, wentLeft, i, balanceTree(path[i]));
         }
-        // If the word already exists in the tree, increment its frequency
-        else {
-            currentNode.count++;
+    }
+
+    /**
+     * Removes the node at path[index], which must be writable. A node with
+     * two children takes the word of its successor, and the successor is
+     * removed instead.
+     *
+     * @return The length of the path whose nodes need updating
+     */
+    private int removeNode(TreeNode[] path, boolean[] wentLeft, int index) {
+        TreeNode removedNode = path[index];
+        if (removedNode.left == null || removedNode.right == null) {
+            link(path, wentLeft, index, removedNode.left != null ? removedNode.left : removedNode.right);
+            return index;
         }
 
-        // Update the height of the current node after insertion
-        currentNode.height = 1 + Math.max(getHeight(currentNode.left), getHeight(currentNode.right));
+        // Walk to the leftmost node of the right subtree, copying the nodes on the way
+        int depth = index;
+        wentLeft[depth++] = false;
+        TreeNode successor = getWritableNode(removedNode.right);
+        while (true) {
+            link(path, wentLeft, depth, successor);
+            path[depth] = successor;
+            if (successor.left == null) {
+                break;
+            }
+            wentLeft[depth++] = true;
+            successor = getWritableNode(successor.left);
+        }
+        removedNode.key = successor.key;
+        removedNode.count = successor.count;
+        link(path, wentLeft, depth, successor.right);
+        return depth;
+    }
 
-        // Balance the tree and return the updated node
-        return balanceTree(currentNode);
+    /**
+     * Links a node in place of the child of path[depth - 1] on the path, or
+     * as the root when depth is 0.
+     */
+    private void link(TreeNode[] path, boolean[] wentLeft, int depth, TreeNode treeNode) {
+        if (depth == 0) {
+            rootNode = treeNode;
+        } else if (wentLeft[depth - 1]) {
+            path[depth - 1].left = treeNode;
+        } else {
+            path[depth - 1].right = treeNode;
+        }
+    }
+
+    /**
+     * Returns a node that can be updated in place: the node itself if it was
+     * created since the last snapshot, otherwise a copy of it.
+     *
+     * @param treeNode The node about to be updated
+     * @return The node to update and link in its place
+     */
+    private TreeNode getWritableNode(TreeNode treeNode) {
+        if (treeNode.version == version) {
+            return treeNode;
+        }
+        TreeNode copy = new TreeNode(treeNode.key);
+        copy.count = treeNode.count;
+        copy.height = treeNode.height;
+        copy.size = treeNode.size;
+        copy.total = treeNode.total;
+        copy.maxCount = treeNode.maxCount;
+        copy.left = treeNode.left;
+        copy.right = treeNode.right;
+        return copy;
+    }
+
+    /**
+     * Recomputes the height and subtree aggregates of a node from its children.
+     *
+     * @param treeNode The node whose children changed
+     */
+    private void updateNode(TreeNode treeNode) {
+        TreeNode left = treeNode.left;
+        TreeNode right = treeNode.right;
+        treeNode.height = 1 + Math.max(getHeight(left), getHeight(right));
+        treeNode.size = 1 + getSize(left) + getSize(right);
+        treeNode.total = treeNode.count + getTotal(left) + getTotal(right);
+        int maxCount = treeNode.count;
+        if (left != null) {
+            maxCount = Math.max(maxCount, left.maxCount);
+        }
+        if (right != null) {
+            maxCount = Math.max(maxCount, right.maxCount);
+        }
+        treeNode.maxCount = maxCount;
     }
 
     /**
@@ -115,6 +265,14 @@ public class AVLTree {
         return treeNode == null ? 0 : treeNode.height;
     }
 
+    private int getSize(TreeNode treeNode) {
+        return treeNode == null ? 0 : treeNode.size;
+    }
+
+    private long getTotal(TreeNode treeNode) {
+        return treeNode == null ? 0 : treeNode.total;
+    }
+
     /**
      * Calculates the balance factor of a given TreeNode.
      * Balance factor = height of left subtree - height of right subtree.
@@ -133,13 +291,14 @@ public class AVLTree {
      * @return The new root after the rotation
      */
     private TreeNode performLeftRotation(TreeNode unbalancedNode) {
-        TreeNode newRoot = unbalancedNode.right; // The right child becomes the new root
+        unbalancedNode = getWritableNode(unbalancedNode);
+        TreeNode newRoot = getWritableNode(unbalancedNode.right); // The right child becomes the new root
         unbalancedNode.right = newRoot.left;    // The left subtree of the new root becomes the right child
         newRoot.left = unbalancedNode;          // The unbalanced node becomes the left child
 
-        // Update heights of the affected nodes
-        unbalancedNode.height = 1 + Math.max(getHeight(unbalancedNode.left), getHeight(unbalancedNode.right));
-        newRoot.height = 1 + Math.max(getHeight(newRoot.left), getHeight(newRoot.right));
+        // Update heights and aggregates of the affected nodes
+        updateNode(unbalancedNode);
+        updateNode(newRoot);
 
         return newRoot; // Return the new root
     }
@@ -151,13 +310,14 @@ public class AVLTree {
      * @return The new root after the rotation
      */
     private TreeNode performRightRotation(TreeNode unbalancedNode) {
-        TreeNode newRoot = unbalancedNode.left; // The left child becomes the new root
+        unbalancedNode = getWritableNode(unbalancedNode);
+        TreeNode newRoot = getWritableNode(unbalancedNode.left); // The left child becomes the new root
         unbalancedNode.left = newRoot.right;    // The right subtree of the new root becomes the left child
         newRoot.right = unbalancedNode;         // The unbalanced node becomes the right child
 
-        // Update heights of the affected nodes
-        unbalancedNode.height = 1 + Math.max(getHeight(unbalancedNode.left), getHeight(unbalancedNode.right));
-        newRoot.height = 1 + Math.max(getHeight(newRoot.left), getHeight(newRoot.right));
+        // Update heights and aggregates of the affected nodes
+        updateNode(unbalancedNode);
+        updateNode(newRoot);
 
         return newRoot; // Return the new root
     }
@@ -169,31 +329,280 @@ public class AVLTree {
      * @return The frequency of the word, or 0 if the word is not found
      */
     public int getFrequency(String searchKey) {
-        TreeNode foundNode = findNode(rootNode, searchKey); // Search for the word in the tree
-        return foundNode != null ? foundNode.count : 0;     // Return the frequency if found, else 0
+        TreeNode currentNode = rootNode;
+        while (currentNode != null) {
+            int comparison = searchKey.compareTo(currentNode.key); // Compare the word with the current node's key
+
+            // Continue in the left or right subtree based on comparison
+            if (comparison < 0) {
+                currentNode = currentNode.left;
+            } else if (comparison > 0) {
+                currentNode = currentNode.right;
+            } else { // If the word matches, return its frequency
+                return currentNode.count;
+            }
+        }
+        return 0; // The word is not found
+    }
+
+    /**
+     * Gets the number of distinct words in the tree.
+     *
+     * @return The number of words
+     */
+    public int size() {
+        return getSize(rootNode);
+    }
+
+    /**
+     * Gets the sum of the frequencies of all words.
+     *
+     * @return The total frequency
+     */
+    public long getTotalFrequency() {
+        return getTotal(rootNode);
     }
 
     /**
-     * Searches for a word in the AVL Tree and returns the corresponding node.
+     * Gets the rank of a word: the number of words in the tree that sort
+     * before it. The word itself does not need to be in the tree.
      *
-     * @param currentNode The current node being examined during the search
-     * @param searchKey   The word to search for
-     * @return The node containing the word, or null if not found
+     * @param word The word
+     * @return The number of smaller words
      */
-    private TreeNode findNode(TreeNode currentNode, String searchKey) {
-        if (currentNode == null) { // Base case: If the node is null, the word is not found
-            return null;
+    public int rank(String word) {
+        int rank = 0;
+        TreeNode currentNode = rootNode;
+        while (currentNode != null) {
+            int comparison = word.compareTo(currentNode.key);
+            if (comparison <= 0) {
+                currentNode = currentNode.left;
+            } else {
+                rank += getSize(currentNode.left) + 1; // The left subtree and the node sort before the word
+                currentNode = currentNode.right;
+            }
         }
+        return rank;
+    }
 
-        int comparison = searchKey.compareTo(currentNode.key); // Compare the word with the current node's key
+    /**
+     * Gets the word at a rank in ascending word order.
+     *
+     * @param rank The 0-based rank
+     * @return The word
+     * @throws IndexOutOfBoundsException if the rank is not below {@link #size()}
+     */
+    public String select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of bounds for " + size() + " words");
+        }
+        TreeNode currentNode = rootNode;
+        while (true) {
+            int leftSize = getSize(currentNode.left);
+            if (rank < leftSize) {
+                currentNode = currentNode.left;
+            } else if (rank == leftSize) {
+                return currentNode.key;
+            } else {
+                rank -= leftSize + 1;
+                currentNode = currentNode.right;
+            }
+        }
+    }
 
-        // Recurse into the left or right subtree based on comparison
-        if (comparison < 0) {
-            return findNode(currentNode.left, searchKey);
-        } else if (comparison > 0) {
-            return findNode(currentNode.right, searchKey);
-        } else { // If the word matches, return the current node
-            return currentNode;
+    /**
+     * Gets the number of distinct words from one word (inclusive) to another
+     * (exclusive).
+     *
+     * @param fromWord The lowest word of the range
+     * @param toWord   The word the range ends before
+     * @return The number of words in the range
+     */
+    public int countRange(String fromWord, String toWord) {
+        return Math.max(0, rank(toWord) - rank(fromWord));
+    }
+
+    /**
+     * Gets the sum of the frequencies of the words from one word (inclusive)
+     * to another (exclusive).
+     *
+     * @param fromWord The lowest word of the range
+     * @param toWord   The word the range ends before
+     * @return The total frequency of the range
+     */
+    public long getRangeFrequency(String fromWord, String toWord) {
+        if (fromWord.compareTo(toWord) >= 0) {
+            return 0;
+        }
+        return getTotalBefore(toWord) - getTotalBefore(fromWord);
+    }
+
+    // Sum of the frequencies of the words that sort before a word
+    private long getTotalBefore(String word) {
+        long total = 0;
+        TreeNode currentNode = rootNode;
+        while (currentNode != null) {
+            if (word.compareTo(currentNode.key) <= 0) {
+                currentNode = currentNode.left;
+            } else {
+                total += getTotal(currentNode.left) + currentNode.count;
+                currentNode = currentNode.right;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Visits the most frequent words, highest frequency first and equal
+     * frequencies in ascending word order. Subtrees are expanded best first
+     * by their highest frequency, so only the paths to the visited words are
+     * walked.
+     *
+     * @param limit   The maximum number of words to visit
+     * @param visitor Receives each word and its frequency
+     */
+    public void forEachMostFrequent(int limit, ObjIntConsumer<String> visitor) {
+        forEachMostFrequentInRange(null, null, limit, visitor);
+    }
+
+    /**
+     * Visits the most frequent words from one word (inclusive) to another
+     * (exclusive), like {@link #forEachMostFrequent}. The range is first split
+     * into O(log n) whole subtrees and single nodes, so the cost does not
+     * depend on the number of words in the range.
+     *
+     * @param fromWord The lowest word of the range, or null to start at the first word
+     * @param toWord   The word the range ends before, or null to end after the last word
+     * @param limit    The maximum number of words to visit
+     * @param visitor  Receives each word and its frequency
+     */
+    public void forEachMostFrequentInRange(String fromWord, String toWord, int limit, ObjIntConsumer<String> visitor) {
+        // A candidate is either a single node or a whole subtree not expanded yet
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        addRange(rootNode, null, null, fromWord, toWord, candidates);
+        int visited = 0;
+        while (visited < limit && !candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            TreeNode treeNode = candidate.treeNode;
+            if (!candidate.subtree) {
+                visitor.accept(treeNode.key, treeNode.count);
+                visited++;
+                continue;
+            }
+            candidates.add(new Candidate(treeNode, false));
+            if (treeNode.left != null) {
+                candidates.add(new Candidate(treeNode.left, true));
+            }
+            if (treeNode.right != null) {
+                candidates.add(new Candidate(treeNode.right, true));
+            }
+        }
+    }
+
+    /**
+     * Adds the parts of a subtree that lie in a range as candidates: whole
+     * subtrees where all their words are in it, and single nodes on the two
+     * paths to the ends of the range.
+     *
+     * @param treeNode   The root of the subtree
+     * @param lowerBound Every word of the subtree is above it, or null
+     * @param upperBound Every word of the subtree is below it, or null
+     */
+    private void addRange(TreeNode treeNode, String lowerBound, String upperBound, String fromWord, String toWord,
+            PriorityQueue<Candidate> candidates) {
+        if (treeNode == null) {
+            return;
+        }
+        boolean startsInside = fromWord == null || lowerBound != null && lowerBound.compareTo(fromWord) >= 0;
+        boolean endsInside = toWord == null || upperBound != null && upperBound.compareTo(toWord) <= 0;
+        if (startsInside && endsInside) {
+            candidates.add(new Candidate(treeNode, true));
+            return;
+        }
+        boolean atOrAboveFrom = fromWord == null || treeNode.key.compareTo(fromWord) >= 0;
+        boolean belowTo = toWord == null || treeNode.key.compareTo(toWord) < 0;
+        if (atOrAboveFrom && belowTo) {
+            candidates.add(new Candidate(treeNode, false));
+        }
+        if (atOrAboveFrom) {
+            addRange(treeNode.left, lowerBound, treeNode.key, fromWord, toWord, candidates);
+        }
+        if (belowTo) {
+            addRange(treeNode.right, treeNode.key, upperBound, fromWord, toWord, candidates);
+        }
+    }
+
+    /**
+     * Entry of the best-first search in {@link #forEachMostFrequentInRange}. A
+     * subtree ranks by its highest frequency and its smallest word, so it is
+     * expanded before any single word it could outrank.
+     */
+    private final class Candidate implements Comparable<Candidate> {
+        final TreeNode treeNode;
+        final boolean subtree;
+        final int frequency;
+        final String firstKey;
+
+        Candidate(TreeNode treeNode, boolean subtree) {
+            this.treeNode = treeNode;
+            this.subtree = subtree;
+            this.frequency = subtree ? treeNode.maxCount : treeNode.count;
+            TreeNode first = treeNode;
+            while (subtree && first.left != null) {
+                first = first.left;
+            }
+            this.firstKey = first.key;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (frequency != other.frequency) {
+                return Integer.compare(other.frequency, frequency);
+            }
+            return firstKey.compareTo(other.firstKey);
+        }
+    }
+
+    /**
+     * Visits every word with its frequency in ascending word order.
+     *
+     * @param visitor Receives each word and its frequency
+     */
+    public void forEach(ObjIntConsumer<String> visitor) {
+        forEachInRange(null, null, visitor);
+    }
+
+    /**
+     * Visits the words from one word (inclusive) to another (exclusive) with
+     * their frequencies in ascending word order, skipping the subtrees outside
+     * the range.
+     *
+     * @param fromWord The lowest word of the range, or null to start at the first word
+     * @param toWord   The word the range ends before, or null to end after the last word
+     * @param visitor  Receives each word and its frequency
+     */
+    public void forEachInRange(String fromWord, String toWord, ObjIntConsumer<String> visitor) {
+        Deque<TreeNode> path = new ArrayDeque<>(); // Ancestors still to visit
+        TreeNode currentNode = rootNode;
+        while (currentNode != null || !path.isEmpty()) {
+            // Go as far left as the range allows, then visit and continue in the right subtree
+            while (currentNode != null) {
+                if (fromWord != null && currentNode.key.compareTo(fromWord) < 0) {
+                    currentNode = currentNode.right; // The node and its left subtree are below the range
+                } else {
+                    path.push(currentNode);
+                    currentNode = currentNode.left;
+                }
+            }
+            if (path.isEmpty()) {
+                break;
+            }
+            currentNode = path.pop();
+            if (toWord != null && currentNode.key.compareTo(toWord) >= 0) {
+                break; // Every remaining word is above the range
+            }
+            visitor.accept(currentNode.key, currentNode.count);
+            currentNode = currentNode.right;
         }
     }
 }
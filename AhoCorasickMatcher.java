@@ -0,0 +1,238 @@
+package com.example.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled Aho-Corasick automaton that counts the occurrences of several
+ * keywords in a single pass over a text. Overlapping matches are counted,
+ * the same way a repeated single-pattern search would count them.
+ *
+ * The automaton is a complete DFA stored in primitive int arrays. Characters
+ * are mapped to a small alphabet made of the characters used by the keywords,
+ * every other character shares one column that always leads back to the root.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class AhoCorasickMatcher {
+
+    // Number of ASCII characters resolved through the lookup table
+    private static final int ASCII_SIZE = 128;
+
+    // Sorted distinct non-ASCII characters used by the keywords
+    private final char[] extendedAlphabet;
+
+    // Alphabet class of each ASCII character (0 = not used by any keyword)
+    private final int[] asciiClasses;
+
+    // Number of columns in the transition table (alphabet size + 1)
+    private final int width;
+
+    // Transition table: transitions[state * width + class] = next state
+    private final int[] transitions;
+
+    // Distinct pattern ending at each state, or -1
+    private final int[] patternAt;
+
+    // Nearest state on the failure chain that ends a pattern, or -1
+    private final int[] outputLink;
+
+    // Number of keyword occurrences recognized when entering each state
+    private final int[] outputWeight;
+
+    // Distinct pattern used by each keyword, or -1 for empty keywords
+    private final int[] keywordPatterns;
+
+    // Number of distinct patterns
+    private final int patternCount;
+
+    private AhoCorasickMatcher(char[] extendedAlphabet, int[] asciiClasses, int width, int[] transitions,
+            int[] patternAt, int[] outputLink, int[] outputWeight, int[] keywordPatterns, int patternCount) {
+        this.extendedAlphabet = extendedAlphabet;
+        this.asciiClasses = asciiClasses;
+        this.width = width;
+        this.transitions = transitions;
+        this.patternAt = patternAt;
+        this.outputLink = outputLink;
+        this.outputWeight = outputWeight;
+        this.keywordPatterns = keywordPatterns;
+        this.patternCount = patternCount;
+    }
+
+    /**
+     * Compiles an automaton for the given keywords. Duplicate keywords share a
+     * single pattern but are still reported and weighted separately, and empty
+     * keywords never match.
+     *
+     * @param keywords The keywords to search for
+     * @return The compiled automaton
+     */
+    public static AhoCorasickMatcher compile(String[] keywords) {
+        // Assign an id to every distinct, non-empty keyword
+        Map<String, Integer> patternIds = new HashMap<>();
+        int[] keywordPatterns = new int[keywords.length];
+        for (int i = 0; i < keywords.length; i++) {
+            if (keywords[i].isEmpty()) {
+                keywordPatterns[i] = -1;
+            } else {
+                keywordPatterns[i] = patternIds.computeIfAbsent(keywords[i], k -> patternIds.size());
+            }
+        }
+        String[] patterns = new String[patternIds.size()];
+        int[] patternWeights = new int[patterns.length];
+        for (Map.Entry<String, Integer> entry : patternIds.entrySet()) {
+            patterns[entry.getValue()] = entry.getKey();
+        }
+        for (int pattern : keywordPatterns) {
+            if (pattern >= 0) {
+                patternWeights[pattern]++;
+            }
+        }
+
+        // Build the compact alphabet
+        int[] asciiClasses = new int[ASCII_SIZE];
+        StringBuilder extended = new StringBuilder();
+        int classes = 0;
+        int totalLength = 0;
+        for (String pattern : patterns) {
+            totalLength += pattern.length();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < ASCII_SIZE) {
+                    if (asciiClasses[c] == 0) {
+                        asciiClasses[c] = ++classes;
+                    }
+                } else if (extended.indexOf(String.valueOf(c)) < 0) {
+                    extended.append(c);
+                }
+            }
+        }
+        char[] extendedAlphabet = extended.toString().toCharArray();
+        Arrays.sort(extendedAlphabet);
+        int width = classes + extendedAlphabet.length + 1;
+
+        // Build the keyword trie; -1 marks a missing edge until the DFA is completed
+        int maxStates = totalLength + 1;
+        int[] transitions = new int[maxStates * width];
+        Arrays.fill(transitions, -1);
+        int[] patternAt = new int[maxStates];
+        Arrays.fill(patternAt, -1);
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            String pattern = patterns[p];
+            for (int i = 0; i < pattern.length(); i++) {
+                int slot = state * width + classOf(pattern.charAt(i), asciiClasses, classes, extendedAlphabet);
+                if (transitions[slot] < 0) {
+                    transitions[slot] = states++;
+                }
+                state = transitions[slot];
+            }
+            patternAt[state] = p;
+        }
+
+        // Breadth-first pass computing failure links and completing the DFA
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        int[] outputWeight = new int[states];
+        outputLink[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < width; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fail = failure[state];
+            outputLink[state] = patternAt[fail] >= 0 ? fail : outputLink[fail];
+            outputWeight[state] = outputWeight[fail] + (patternAt[state] >= 0 ? patternWeights[patternAt[state]] : 0);
+
+            for (int c = 0; c < width; c++) {
+                int slot = state * width + c;
+                int next = transitions[slot];
+                if (next < 0) {
+                    transitions[slot] = transitions[fail * width + c];
+                } else {
+                    failure[next] = transitions[fail * width + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        return new AhoCorasickMatcher(extendedAlphabet, asciiClasses, width,
+                Arrays.copyOf(transitions, states * width), Arrays.copyOf(patternAt, states),
+                outputLink, outputWeight, keywordPatterns, patterns.length);
+    }
+
+    /**
+     * Maps a character to its column in the transition table.
+     */
+    private static int classOf(char c, int[] asciiClasses, int asciiClassCount, char[] extendedAlphabet) {
+        if (c < ASCII_SIZE) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(extendedAlphabet, c);
+        return index < 0 ? 0 : asciiClassCount + 1 + index;
+    }
+
+    private int classOf(char c) {
+        return classOf(c, asciiClasses, width - extendedAlphabet.length - 1, extendedAlphabet);
+    }
+
+    /**
+     * Counts the occurrences of every keyword in a text.
+     *
+     * @param text The text to scan
+     * @return The number of occurrences of each keyword, in the order they were compiled
+     */
+    public int[] countOccurrences(CharSequence text) {
+        int[] patternCounts = new int[patternCount];
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = transitions[state * width + classOf(text.charAt(i))];
+            // Walk the output chain to credit every pattern ending here
+            for (int out = patternAt[state] >= 0 ? state : outputLink[state]; out > 0; out = outputLink[out]) {
+                patternCounts[patternAt[out]]++;
+            }
+        }
+
+        int[] keywordCounts = new int[keywordPatterns.length];
+        for (int k = 0; k < keywordPatterns.length; k++) {
+            keywordCounts[k] = keywordPatterns[k] < 0 ? 0 : patternCounts[keywordPatterns[k]];
+        }
+        return keywordCounts;
+    }
+
+    /**
+     * Counts the total number of keyword occurrences in a text. This is the sum
+     * of {@link #countOccurrences(CharSequence)} but needs no output chain walk
+     * and no allocation.
+     *
+     * @param text The text to scan
+     * @return The total number of keyword occurrences
+     */
+    public int countTotal(CharSequence text) {
+        int total = 0;
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = transitions[state * width + classOf(text.charAt(i))];
+            total += outputWeight[state];
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of keywords the automaton was compiled for.
+     *
+     * @return The number of keywords
+     */
+    public int getKeywordCount() {
+        return keywordPatterns.length;
+    }
+}
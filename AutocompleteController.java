@@ -0,0 +1,33 @@
+package com.example.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.service.AutocompleteService;
+
+@RestController
+@RequestMapping("/api/autocomplete")
+public class AutocompleteController {
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    // Called on every keystroke of the plan search bar; the session's own searches are suggested first
+    @GetMapping
+    public List<String> autocomplete(@RequestParam String query, @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String sessionId) {
+        int clamped = Math.max(1, Math.min(limit, AutocompleteService.MAX_SUGGESTIONS));
+        return autocompleteService.getSuggestions(sessionId, query, clamped);
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return autocompleteService.getStats();
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.model.CompletionIndex;
+import com.example.model.StreamingServicePlan;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Autocomplete over everything a user may be typing: plan and service names,
+ * past searches, and the words of the indexed pages, merged into one
+ * {@link CompletionIndex} ranked by weight.
+ *
+ * The sources rank in tiers. Catalog names always come before past searches,
+ * and past searches before indexed words. Within a tier, names and searches
+ * rank by how often they were searched, and indexed words by their frequency.
+ * A name of several words can also be completed from any of its words, so
+ * "ads" suggests "Standard with Ads".
+ *
+ * Suggestions are read from the top completions cached in the trie nodes of
+ * the current index, in time proportional to the length of the query. The
+ * index is immutable and published through a volatile field. A background
+ * thread checks the sources every {@link #REFRESH_INTERVAL_SECONDS} seconds
+ * and rebuilds it when any of them changed, off the request threads.
+ */
+@Service
+public class AutocompleteService {
+
+    // The most suggestions returned, all read from the trie caches
+    public static final int MAX_SUGGESTIONS = CompletionIndex.CACHED_COMPLETIONS;
+
+    // Seconds between checks of the sources for changes
+    private static final int REFRESH_INTERVAL_SECONDS = 5;
+
+    // Most frequent indexed words included, so the vocabulary cannot crowd out memory
+    private static final int VOCABULARY_LIMIT = 100_000;
+
+    // Tiers of the sources, in the top bits of the weights; popularity fills the rest
+    private static final int CATALOG = 2;
+    private static final int SEARCHED = 1;
+    private static final int VOCABULARY = 0;
+    private static final int TIER_SHIFT = 40;
+    private static final long MAX_POPULARITY = (1L << TIER_SHIFT) - 1;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final CsvService csvService;
+    private final InvertedIndexService invertedIndexService;
+    private final SearchHistoryService searchHistoryService;
+    private final FrequencyService frequencyService;
+
+    // The index that queries read, replaced whole on every rebuild
+    private volatile Suggestions suggestions;
+
+    // Versions of the sources the current index was built from; only used by the refresh thread
+    private long indexVersion = -1;
+    private long historyVersion = -1;
+    private int frequencyFingerprint;
+
+    // The indexed words in sorted order with their frequencies, reloaded only when the index changes
+    private String[] vocabularyKeys = new String[0];
+    private long[] vocabularyWeights = new long[0];
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "autocomplete-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Autowired
+    public AutocompleteService(CsvService csvService, InvertedIndexService invertedIndexService,
+            SearchHistoryService searchHistoryService, FrequencyService frequencyService) {
+        this.csvService = csvService;
+        this.invertedIndexService = invertedIndexService;
+        this.searchHistoryService = searchHistoryService;
+        this.frequencyService = frequencyService;
+        refreshExecutor.execute(this::refresh);
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Suggests completions of what the user typed so far, best first. The
+     * session's own past searches come before everything else.
+     *
+     * @param sessionId The session of the user, or null
+     * @param query     The text typed so far; case and repeated spaces are ignored
+     * @param limit     The number of suggestions, at most {@link #MAX_SUGGESTIONS}
+     * @return The suggestions
+     */
+    public List<String> getSuggestions(String sessionId, String query, int limit) {
+        Suggestions current = suggestions;
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Several keys can lead to the same name, so keep the first, best ranked one
+        Map<String, String> results = new LinkedHashMap<>();
+        if (sessionId != null) {
+            for (String search : searchHistoryService.getSessionSuggestions(sessionId, prefix, limit)) {
+                results.putIfAbsent(normalize(search), search);
+            }
+        }
+        if (current != null) {
+            for (int term : current.index.complete(prefix, MAX_SUGGESTIONS)) {
+                if (results.size() >= limit) {
+                    break;
+                }
+                results.putIfAbsent(normalize(current.names[term]), current.names[term]);
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Describes the current index: its size, its memory and how long it took
+     * to build.
+     *
+     * @return The statistics, empty until the first index is built
+     */
+    public Map<String, Object> getStats() {
+        Suggestions current = suggestions;
+        Map<String, Object> stats = new HashMap<>();
+        if (current != null) {
+            stats.put("keys", current.keyCount);
+            stats.put("nodes", current.index.getNodeCount());
+            stats.put("memoryBytes", current.index.getMemoryBytes());
+            stats.put("buildMillis", current.buildMillis);
+        }
+        return stats;
+    }
+
+    // Rebuilds the index if a source changed since the last build; runs on the refresh thread only
+    private void refresh() {
+        try {
+            long currentIndexVersion = invertedIndexService.getVersion();
+            long currentHistoryVersion = searchHistoryService.getSearchCount();
+            List<Map.Entry<String, Long>> searched = frequencyService.getSearchFrequencies(FrequencyService.ALL_TIME,
+                    FrequencyService.MAX_SEARCH_TERMS);
+            if (suggestions != null && currentIndexVersion == indexVersion
+                    && currentHistoryVersion == historyVersion && searched.hashCode() == frequencyFingerprint) {
+                return;
+            }
+            if (currentIndexVersion != indexVersion) {
+                loadVocabulary();
+            }
+            suggestions = build(searched);
+            indexVersion = currentIndexVersion;
+            historyVersion = currentHistoryVersion;
+            frequencyFingerprint = searched.hashCode();
+        } catch (Exception e) {
+            // Keep serving the previous index, and try again on the next check
+            System.err.println("Error rebuilding the autocomplete index");
+            e.printStackTrace();
+        }
+    }
+
+    // Reads the indexed words, already normalized, unique and in sorted order
+    private void loadVocabulary() {
+        List<String> keys = new ArrayList<>();
+        List<Integer> frequencies = new ArrayList<>();
+        invertedIndexService.forEachWord(VOCABULARY_LIMIT, (word, frequency) -> {
+            keys.add(word);
+            frequencies.add(frequency);
+        });
+        long[] weights = new long[keys.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = ((long) VOCABULARY << TIER_SHIFT) | frequencies.get(i);
+        }
+        vocabularyKeys = keys.toArray(new String[0]);
+        vocabularyWeights = weights;
+    }
+
+    /**
+     * Builds the index over the vocabulary and the names from the catalog and
+     * the searches. Only the names are sorted; they are merged into the sorted
+     * vocabulary in one pass, and a name replaces an indexed word with the same
+     * key, since it ranks in a higher tier.
+     */
+    private Suggestions build(List<Map.Entry<String, Long>> searched) {
+        long start = System.nanoTime();
+        Map<String, Candidate> candidates = new HashMap<>();
+
+        for (StreamingServicePlan plan : csvService.getAllPlans()) {
+            addName(candidates, plan.getServiceName(), CATALOG);
+            addName(candidates, plan.getPlanName(), CATALOG);
+        }
+        searchHistoryService.forEachSearch((word, uses) -> addName(candidates, word, SEARCHED).searches += uses);
+        for (Map.Entry<String, Long> term : searched) {
+            addName(candidates, term.getKey(), SEARCHED).searches += term.getValue();
+        }
+
+        // Key every name by itself and by each of its later words
+        Map<String, Candidate> keyed = new HashMap<>(candidates);
+        for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            for (int space = key.indexOf(' '); space >= 0; space = key.indexOf(' ', space + 1)) {
+                keyed.merge(key.substring(space + 1), entry.getValue(),
+                        (existing, added) -> added.weight() > existing.weight() ? added : existing);
+            }
+        }
+        String[] nameKeys = keyed.keySet().toArray(new String[0]);
+        Arrays.sort(nameKeys);
+
+        String[] vocabulary = vocabularyKeys;
+        int size = vocabulary.length + nameKeys.length;
+        String[] keys = new String[size];
+        String[] names = new String[size];
+        long[] weights = new long[size];
+        int count = 0;
+        for (int v = 0, n = 0; v < vocabulary.length || n < nameKeys.length; count++) {
+            int comparison = v == vocabulary.length ? 1
+                    : n == nameKeys.length ? -1 : vocabulary[v].compareTo(nameKeys[n]);
+            if (comparison < 0) {
+                keys[count] = vocabulary[v];
+                names[count] = vocabulary[v];
+                weights[count] = vocabularyWeights[v++];
+            } else {
+                Candidate candidate = keyed.get(nameKeys[n]);
+                keys[count] = nameKeys[n++];
+                names[count] = candidate.name;
+                weights[count] = candidate.weight();
+                if (comparison == 0) {
+                    v++;
+                }
+            }
+        }
+        int termCount = count;
+        CompletionIndex index = CompletionIndex.build(new CompletionIndex.Terms() {
+            @Override
+            public int size() {
+                return termCount;
+            }
+
+            @Override
+            public int length(int term) {
+                return keys[term].length();
+            }
+
+            @Override
+            public char charAt(int term, int index) {
+                return keys[term].charAt(index);
+            }
+
+            @Override
+            public String key(int term) {
+                return keys[term];
+            }
+
+            @Override
+            public long weight(int term) {
+                return weights[term];
+            }
+        });
+        return new Suggestions(index, termCount, names, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Adds a name to the candidate with its key, raising the candidate to the name's tier
+    private static Candidate addName(Map<String, Candidate> candidates, String name, int tier) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return new Candidate(name, tier); // Nothing to complete; counted nowhere
+        }
+        Candidate candidate = candidates.computeIfAbsent(key, k -> new Candidate(name, tier));
+        if (tier > candidate.tier) {
+            candidate.name = name; // The spelling of the highest tier is shown
+            candidate.tier = tier;
+        }
+        return candidate;
+    }
+
+    // Lowercases and collapses whitespace, so keys and queries compare the same way
+    private static String normalize(String text) {
+        return WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    // A name being merged from the sources
+    private static final class Candidate {
+        String name;
+        int tier;
+        long searches;
+
+        Candidate(String name, int tier) {
+            this.name = name;
+            this.tier = tier;
+        }
+
+        long weight() {
+            return ((long) tier << TIER_SHIFT) | Math.min(searches, MAX_POPULARITY);
+        }
+    }
+
+    // One built index and, for each of its keys, the name to suggest
+    private static final class Suggestions {
+        final CompletionIndex index;
+        final int keyCount;
+        final String[] names;
+        final long buildMillis;
+
+        Suggestions(CompletionIndex index, int keyCount, String[] names, long buildMillis) {
+            this.index = index;
+            this.keyCount = keyCount;
+            this.names = names;
+            this.buildMillis = buildMillis;
+        }
+    }
+
+    /**
+     * Stops the background rebuilds.
+     */
+    @PreDestroy
+    public void close() {
+        refreshExecutor.shutdownNow();
+    }
+}
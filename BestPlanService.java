@@ -1,6 +1,5 @@
 package com.example.service;
 
-import java.util.Comparator;
 import java.util.List;
 
 import org.springframework.stereotype.Service;
@@ -10,6 +9,9 @@ import com.example.model.StreamingServicePlan;
 @Service
 public class BestPlanService {
 
+    // Number of plans returned as the best ones
+    private static final int BEST_PLAN_COUNT = 2;
+
     private final CsvService csvService;
 
     public BestPlanService(CsvService csvService) {
@@ -18,19 +20,7 @@ public class BestPlanService {
 
     // Get the two best plans with the lowest price
     public List<StreamingServicePlan> getBestPlans() {
-        List<StreamingServicePlan> plans = csvService.readCsv();  // Get all plans from CSV
-
-        // Sort plans by price in ascending order
-        plans.sort(Comparator.comparingDouble(plan -> {
-            try {
-                // Remove any non-numeric characters from the price (like "$")
-                return Double.parseDouble(plan.getPrice().replaceAll("[^\\d.]", ""));
-            } catch (NumberFormatException e) {
-                return Double.MAX_VALUE; // If price is invalid, push it to the end
-            }
-        }));
-
-        // Return the top 2 lowest priced plans
-        return plans.size() > 2 ? plans.subList(0, 2) : plans;
+        // The catalog keeps its plans sorted by price, so this is a slice of that order
+        return csvService.getCatalog().getCheapest(BEST_PLAN_COUNT);
     }
 }
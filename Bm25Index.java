@@ -0,0 +1,262 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Term dictionary and postings lists over a {@link PageCorpus}, scored with
+ * Okapi BM25. Pages are split into words by the shared {@link Tokenizer}. For every
+ * term the index stores the ids of the pages containing it (ascending) and
+ * the term frequency in each page, in primitive arrays.
+ *
+ * Queries are evaluated document-at-a-time over the postings of the query
+ * terms and the best pages are kept in a {@link TopKHeap}, so a query costs
+ * O(matches log k) and never touches pages that do not contain a query term.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class Bm25Index {
+
+    // Term frequency saturation parameter
+    private static final double K1 = 1.2;
+
+    // Document length normalization parameter
+    private static final double B = 0.75;
+
+    // Corpus snapshot the index was built from
+    private final PageCorpus corpus;
+
+    // Term -> term id
+    private final Map<String, Integer> termIds;
+
+    // Page ids containing each term, in ascending order
+    private final int[][] postingDocs;
+
+    // Frequency of the term in each page of its postings list
+    private final int[][] postingFreqs;
+
+    // Number of tokens in each page
+    private final int[] docLengths;
+
+    // Average number of tokens per page
+    private final double averageDocLength;
+
+    /**
+     * Result of a ranked query: page ids in rank order with their scores and
+     * the summed frequency of the query terms in each page.
+     */
+    public static final class Hits {
+        private final int[] docs;
+        private final double[] scores;
+        private final int[] frequencies;
+
+        Hits(int[] docs, double[] scores, int[] frequencies) {
+            this.docs = docs;
+            this.scores = scores;
+            this.frequencies = frequencies;
+        }
+
+        public int size() {
+            return docs.length;
+        }
+
+        public int getDoc(int rank) {
+            return docs[rank];
+        }
+
+        public double getScore(int rank) {
+            return scores[rank];
+        }
+
+        public int getFrequency(int rank) {
+            return frequencies[rank];
+        }
+    }
+
+    private Bm25Index(PageCorpus corpus, Map<String, Integer> termIds, int[][] postingDocs, int[][] postingFreqs,
+            int[] docLengths, double averageDocLength) {
+        this.corpus = corpus;
+        this.termIds = termIds;
+        this.postingDocs = postingDocs;
+        this.postingFreqs = postingFreqs;
+        this.docLengths = docLengths;
+        this.averageDocLength = averageDocLength;
+    }
+
+    /**
+     * Builds the index for a corpus snapshot.
+     *
+     * @param corpus The corpus to index
+     * @return The built index
+     */
+    public static Bm25Index build(PageCorpus corpus) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<int[]> docsByTerm = new ArrayList<>();   // Growable postings, slot 0 holds the size
+        List<int[]> freqsByTerm = new ArrayList<>();
+        int[] docLengths = new int[corpus.size()];
+        long totalLength = 0;
+
+        Tokenizer tokenizer = new Tokenizer();
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            // Count the terms of this page before appending them to the postings
+            Map<String, Integer> pageTerms = new HashMap<>();
+            tokenizer.reset(corpus.getContent(doc)); // The tokenizer lowercases as it goes
+            while (tokenizer.next()) {
+                pageTerms.merge(tokenizer.token(), 1, Integer::sum);
+                docLengths[doc]++;
+            }
+            totalLength += docLengths[doc];
+
+            for (Map.Entry<String, Integer> entry : pageTerms.entrySet()) {
+                int termId = termIds.computeIfAbsent(entry.getKey(), k -> {
+                    docsByTerm.add(new int[5]);
+                    freqsByTerm.add(new int[5]);
+                    return termIds.size();
+                });
+                int[] docs = docsByTerm.get(termId);
+                int[] freqs = freqsByTerm.get(termId);
+                int size = docs[0];
+                if (size + 1 == docs.length) {
+                    docs = Arrays.copyOf(docs, docs.length * 2);
+                    freqs = Arrays.copyOf(freqs, freqs.length * 2);
+                    docsByTerm.set(termId, docs);
+                    freqsByTerm.set(termId, freqs);
+                }
+                docs[size + 1] = doc;
+                freqs[size + 1] = entry.getValue();
+                docs[0] = size + 1;
+            }
+        }
+
+        // Trim the postings to their exact size
+        int[][] postingDocs = new int[docsByTerm.size()][];
+        int[][] postingFreqs = new int[docsByTerm.size()][];
+        for (int termId = 0; termId < postingDocs.length; termId++) {
+            int[] docs = docsByTerm.get(termId);
+            postingDocs[termId] = Arrays.copyOfRange(docs, 1, docs[0] + 1);
+            postingFreqs[termId] = Arrays.copyOfRange(freqsByTerm.get(termId), 1, docs[0] + 1);
+        }
+
+        double averageDocLength = corpus.size() == 0 ? 0 : (double) totalLength / corpus.size();
+        return new Bm25Index(corpus, termIds, postingDocs, postingFreqs, docLengths, averageDocLength);
+    }
+
+    /**
+     * Splits text into lowercase tokens with the shared {@link Tokenizer}.
+     *
+     * @param text The text to tokenize
+     * @return The tokens in order of appearance
+     */
+    public static List<String> tokenize(String text) {
+        return Tokenizer.tokenize(text);
+    }
+
+    /**
+     * Gets the corpus snapshot this index was built from.
+     *
+     * @return The indexed corpus
+     */
+    public PageCorpus getCorpus() {
+        return corpus;
+    }
+
+    /**
+     * Visits every term of the dictionary with its number of occurrences in
+     * the whole corpus, in no particular order.
+     *
+     * @param visitor Receives each term and its frequency
+     */
+    public void forEachTerm(ObjIntConsumer<String> visitor) {
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            int frequency = 0;
+            for (int pageFrequency : postingFreqs[entry.getValue()]) {
+                frequency += pageFrequency;
+            }
+            visitor.accept(entry.getKey(), frequency);
+        }
+    }
+
+    /**
+     * Ranks the pages matching a query by their BM25 score plus a weighted
+     * per-page prior, such as link authority, and returns one page of results.
+     * Only pages containing a query term are ranked.
+     *
+     * @param query       The free-text query
+     * @param offset      The number of top results to skip
+     * @param limit       The maximum number of results to return
+     * @param priors      The prior of each page indexed by document id, or null
+     * @param priorWeight The weight of the prior relative to the BM25 score
+     * @return The ranked hits between {@code offset} and {@code offset + limit}
+     */
+    public Hits search(String query, int offset, int limit, double[] priors, double priorWeight) {
+        // Resolve the distinct query terms that exist in the dictionary
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        int[] queryTerms = new int[terms.size()];
+        int termCount = 0;
+        for (String term : terms) {
+            Integer termId = termIds.get(term);
+            if (termId != null) {
+                queryTerms[termCount++] = termId;
+            }
+        }
+
+        double[] idf = new double[termCount];
+        int[] cursors = new int[termCount];
+        for (int t = 0; t < termCount; t++) {
+            int documentFrequency = postingDocs[queryTerms[t]].length;
+            idf[t] = Math.log(1 + (corpus.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        }
+
+        // Document-at-a-time union of the postings lists; no more pages than the corpus holds are kept
+        TopKHeap heap = new TopKHeap((int) Math.min((long) offset + limit, corpus.size()));
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int t = 0; t < termCount; t++) {
+                int[] docs = postingDocs[queryTerms[t]];
+                if (cursors[t] < docs.length && docs[cursors[t]] < doc) {
+                    doc = docs[cursors[t]];
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            double score = 0;
+            double lengthNorm = K1 * (1 - B + B * docLengths[doc] / averageDocLength);
+            for (int t = 0; t < termCount; t++) {
+                int termId = queryTerms[t];
+                if (cursors[t] < postingDocs[termId].length && postingDocs[termId][cursors[t]] == doc) {
+                    int tf = postingFreqs[termId][cursors[t]++];
+                    score += idf[t] * tf * (K1 + 1) / (tf + lengthNorm);
+                }
+            }
+            if (priors != null) {
+                score += priorWeight * priors[doc];
+            }
+            heap.offer(doc, score);
+        }
+
+        // Keep only the requested page of the ranking
+        double[] rankedScores = new double[heap.size()];
+        int[] ranked = heap.drain(rankedScores);
+        int from = Math.min(offset, ranked.length);
+        int[] docs = Arrays.copyOfRange(ranked, from, ranked.length);
+        double[] scores = Arrays.copyOfRange(rankedScores, from, ranked.length);
+        // Look up the term frequencies of the returned pages only
+        int[] pageFrequencies = new int[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            for (int t = 0; t < termCount; t++) {
+                int position = Arrays.binarySearch(postingDocs[queryTerms[t]], docs[i]);
+                if (position >= 0) {
+                    pageFrequencies[i] += postingFreqs[queryTerms[t]][position];
+                }
+            }
+        }
+        return new Hits(docs, scores, pageFrequencies);
+    }
+}
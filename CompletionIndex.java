@@ -0,0 +1,443 @@
+package com.example.model;
+
+import java.util.Arrays;
+
+/**
+ * Prefix and wildcard completion over the sorted terms of an index segment,
+ * ranked by how often each term occurs.
+ *
+ * The terms sharing a prefix form a contiguous range of the sorted term
+ * table, and the ranges that are nodes of the radix trie over the terms
+ * (prefixes where two terms branch apart) are stored in pre-order. Every node
+ * caches its {@link #CACHED_COMPLETIONS} most frequent terms, so completing a
+ * prefix walks down at most one node per character of the prefix and then
+ * returns the cached list, however many terms share the prefix. Leaves are
+ * single terms and are not stored.
+ *
+ * Wildcard patterns use the literal prefix before their first wildcard to
+ * narrow the range, then test the terms of the range one by one.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class CompletionIndex {
+
+    // Number of completions cached per trie node
+    public static final int CACHED_COMPLETIONS = 10;
+
+    /**
+     * Read access to a term table sorted in the order of String.compareTo.
+     */
+    public interface Terms {
+        int size();
+
+        int length(int term);
+
+        char charAt(int term, int index);
+
+        String key(int term);
+
+        long weight(int term);
+    }
+
+    private final Terms terms;
+
+    // Trie nodes in pre-order: term range [lo, hi), length of the common prefix,
+    // and the pre-order index after the node's subtree
+    private final int[] nodeLo;
+    private final int[] nodeHi;
+    private final int[] nodeDepth;
+    private final int[] nodeEnd;
+    private final int nodeCount;
+
+    // Cached completions of node i: topTerms[topStarts[i] .. topStarts[i + 1])
+    private final int[] topStarts;
+    private final int[] topTerms;
+
+    private CompletionIndex(Terms terms, int[] nodeLo, int[] nodeHi, int[] nodeDepth, int[] nodeEnd, int nodeCount,
+            int[] topStarts, int[] topTerms) {
+        this.terms = terms;
+        this.nodeLo = nodeLo;
+        this.nodeHi = nodeHi;
+        this.nodeDepth = nodeDepth;
+        this.nodeEnd = nodeEnd;
+        this.nodeCount = nodeCount;
+        this.topStarts = topStarts;
+        this.topTerms = topTerms;
+    }
+
+    /**
+     * Builds the trie nodes and their cached completions, in time linear in
+     * the total length of the terms.
+     *
+     * @param terms The sorted terms; must not change afterwards
+     * @return The completion index
+     */
+    public static CompletionIndex build(Terms terms) {
+        int size = terms.size();
+        int capacity = Math.max(1, size);
+        int[] nodeLo = new int[capacity];
+        int[] nodeHi = new int[capacity];
+        int[] nodeDepth = new int[capacity];
+        int[] nodeEnd = new int[capacity];
+        int nodeCount = 0;
+
+        // Depth-first over ranges of at least two terms; children are pushed in reverse for pre-order
+        int[] stackLo = new int[64];
+        int[] stackHi = new int[64];
+        int stackSize = 0;
+        int[] open = new int[64]; // Nodes whose subtree has not ended yet
+        int openCount = 0;
+        if (size >= 2) {
+            stackLo[0] = 0;
+            stackHi[0] = size;
+            stackSize = 1;
+        }
+        while (stackSize > 0) {
+            stackSize--;
+            int lo = stackLo[stackSize];
+            int hi = stackHi[stackSize];
+
+            // Close the nodes this range is not part of
+            while (openCount > 0 && nodeHi[open[openCount - 1]] <= lo) {
+                nodeEnd[open[--openCount]] = nodeCount;
+            }
+            int depth = commonPrefix(terms, lo, hi - 1);
+            int node = nodeCount++;
+            nodeLo[node] = lo;
+            nodeHi[node] = hi;
+            nodeDepth[node] = depth;
+            if (openCount == open.length) {
+                open = Arrays.copyOf(open, openCount * 2);
+            }
+            open[openCount++] = node;
+
+            // The term equal to the prefix sorts first; the rest branch on the next character
+            int start = terms.length(lo) == depth ? lo + 1 : lo;
+            int childCount = 0;
+            for (int childLo = start; childLo < hi; ) {
+                char c = terms.charAt(childLo, depth);
+                int childHi = childLo + 1;
+                while (childHi < hi && terms.charAt(childHi, depth) == c) {
+                    childHi++;
+                }
+                if (childHi - childLo >= 2) {
+                    if (stackSize == stackLo.length) {
+                        stackLo = Arrays.copyOf(stackLo, stackSize * 2);
+                        stackHi = Arrays.copyOf(stackHi, stackSize * 2);
+                    }
+                    stackLo[stackSize] = childLo;
+                    stackHi[stackSize++] = childHi;
+                    childCount++;
+                }
+                childLo = childHi;
+            }
+            reverse(stackLo, stackSize - childCount, stackSize);
+            reverse(stackHi, stackSize - childCount, stackSize);
+        }
+        while (openCount > 0) {
+            nodeEnd[open[--openCount]] = nodeCount;
+        }
+
+        // Every node keeps min(K, range size) completions
+        int[] topStarts = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            topStarts[node + 1] = topStarts[node] + Math.min(CACHED_COMPLETIONS, nodeHi[node] - nodeLo[node]);
+        }
+        int[] topTerms = new int[topStarts[nodeCount]];
+
+        // Children come after their parent in pre-order, so going backwards merges finished lists
+        TopKHeap heap = new TopKHeap(CACHED_COMPLETIONS);
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int term = nodeLo[node];
+            int child = node + 1;
+            while (term < nodeHi[node]) {
+                if (child < nodeEnd[node] && nodeLo[child] == term) {
+                    // Take the child's cached list instead of its terms
+                    for (int i = topStarts[child]; i < topStarts[child + 1]; i++) {
+                        heap.offer(topTerms[i], terms.weight(topTerms[i]));
+                    }
+                    term = nodeHi[child];
+                    child = nodeEnd[child];
+                } else {
+                    heap.offer(term, terms.weight(term));
+                    term++;
+                }
+            }
+            int[] ranked = heap.drainDocs();
+            System.arraycopy(ranked, 0, topTerms, topStarts[node], ranked.length);
+        }
+        return new CompletionIndex(terms, nodeLo, nodeHi, nodeDepth, nodeEnd, nodeCount, topStarts, topTerms);
+    }
+
+    /**
+     * Finds the most frequent terms starting with a prefix. Up to
+     * {@link #CACHED_COMPLETIONS} completions are read from the cache; more
+     * are found by ranking the whole range.
+     *
+     * @param prefix The normalized prefix
+     * @param limit  The maximum number of terms to return
+     * @return The term indexes, most frequent first
+     */
+    public int[] complete(String prefix, int limit) {
+        int node = findNode(prefix);
+        if (node == NO_TERMS || limit <= 0) {
+            return new int[0];
+        }
+        if (node < 0) {
+            return new int[] { -node - 2 }; // A single term starts with the prefix
+        }
+        if (limit <= CACHED_COMPLETIONS) {
+            return Arrays.copyOfRange(topTerms, topStarts[node], Math.min(topStarts[node + 1], topStarts[node] + limit));
+        }
+        TopKHeap heap = new TopKHeap(limit);
+        for (int term = nodeLo[node]; term < nodeHi[node]; term++) {
+            heap.offer(term, terms.weight(term));
+        }
+        return heap.drainDocs();
+    }
+
+    /**
+     * Finds the most frequent terms matching a wildcard pattern, where '*'
+     * matches any sequence of characters and '?' matches one character.
+     *
+     * @param pattern The normalized pattern
+     * @param limit   The maximum number of terms to return
+     * @return The term indexes, most frequent first
+     */
+    public int[] match(String pattern, int limit) {
+        int wildcard = indexOfWildcard(pattern);
+        if (wildcard == pattern.length()) {
+            int term = find(pattern);
+            return term >= 0 && limit > 0 ? new int[] { term } : new int[0];
+        }
+        if (wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '*') {
+            return complete(pattern.substring(0, wildcard), limit); // A plain prefix query
+        }
+
+        int lo = 0;
+        int hi = terms.size();
+        int node = findNode(pattern.substring(0, wildcard));
+        if (node == NO_TERMS) {
+            return new int[0];
+        } else if (node < 0) {
+            lo = -node - 2;
+            hi = lo + 1;
+        } else {
+            lo = nodeLo[node];
+            hi = nodeHi[node];
+        }
+        TopKHeap heap = new TopKHeap(limit);
+        for (int term = lo; term < hi; term++) {
+            if (matches(pattern, terms.key(term))) {
+                heap.offer(term, terms.weight(term));
+            }
+        }
+        return heap.drainDocs();
+    }
+
+    // Returned by findNode when no term starts with the prefix
+    private static final int NO_TERMS = -1;
+
+    /**
+     * Walks down the trie to the node of the terms starting with a prefix.
+     *
+     * @return The node, NO_TERMS, or -2 - term if a single term starts with the prefix
+     */
+    private int findNode(String prefix) {
+        int size = terms.size();
+        if (size == 0) {
+            return NO_TERMS;
+        }
+        if (size == 1) {
+            return startsWith(0, prefix) ? -2 : NO_TERMS;
+        }
+        int node = 0;
+        while (true) {
+            int depth = nodeDepth[node];
+            if (prefix.length() <= depth) {
+                return startsWith(nodeLo[node], prefix) ? node : NO_TERMS;
+            }
+            if (!startsWith(nodeLo[node], prefix.substring(0, depth))) {
+                return NO_TERMS;
+            }
+
+            // Find the terms of the range that continue with the next character of the prefix
+            char c = prefix.charAt(depth);
+            int lo = terms.length(nodeLo[node]) == depth ? nodeLo[node] + 1 : nodeLo[node];
+            int childLo = lowerBound(lo, nodeHi[node], depth, c);
+            int childHi = lowerBound(childLo, nodeHi[node], depth, (char) (c + 1));
+            if (c == Character.MAX_VALUE) {
+                childHi = nodeHi[node];
+            }
+            if (childLo == childHi) {
+                return NO_TERMS;
+            }
+            if (childHi - childLo == 1) {
+                return startsWith(childLo, prefix) ? -2 - childLo : NO_TERMS;
+            }
+            int child = node + 1;
+            while (nodeLo[child] != childLo) {
+                child = nodeEnd[child];
+            }
+            node = child;
+        }
+    }
+
+    // First term of [lo, hi) whose character at depth is at least c; all terms are longer than depth
+    private int lowerBound(int lo, int hi, int depth, char c) {
+        while (lo < hi) {
+            int middle = (lo + hi) >>> 1;
+            if (terms.charAt(middle, depth) < c) {
+                lo = middle + 1;
+            } else {
+                hi = middle;
+            }
+        }
+        return lo;
+    }
+
+    // Binary search for an exact term
+    private int find(String key) {
+        int low = 0;
+        int high = terms.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = terms.key(middle).compareTo(key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int term, String prefix) {
+        if (terms.length(term) < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (terms.charAt(term, i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int commonPrefix(Terms terms, int first, int last) {
+        int length = Math.min(terms.length(first), terms.length(last));
+        int common = 0;
+        while (common < length && terms.charAt(first, common) == terms.charAt(last, common)) {
+            common++;
+        }
+        return common;
+    }
+
+    private static void reverse(int[] values, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    // Index of the first '*' or '?', or the length of a pattern without wildcards
+    static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) == '*' || pattern.charAt(i) == '?') {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /**
+     * Matches a term against a wildcard pattern, backtracking to the last
+     * '*' on a mismatch, in O(pattern x term) time at worst.
+     */
+    static boolean matches(String pattern, String term) {
+        int p = 0;
+        int t = 0;
+        int star = -1;
+        int starTerm = 0;
+        while (t < term.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == term.charAt(t))) {
+                p++;
+                t++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                starTerm = t;
+            } else if (star >= 0) {
+                p = star + 1;
+                t = ++starTerm;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    /**
+     * Gets a term found by {@link #complete} or {@link #match}.
+     *
+     * @param term The term index
+     * @return The normalized term
+     */
+    public String getTerm(int term) {
+        return terms.key(term);
+    }
+
+    /**
+     * Gets the number of occurrences of a term, which ranks its completions.
+     *
+     * @param term The term index
+     * @return The total frequency of the term
+     */
+    public long getWeight(int term) {
+        return terms.weight(term);
+    }
+
+    /**
+     * Normalizes a prefix or wildcard pattern the way terms are normalized,
+     * keeping the wildcards and collapsing repeated '*'.
+     *
+     * @param pattern The pattern as typed
+     * @return The pattern to pass to {@link #match}
+     */
+    public static String normalizePattern(String pattern) {
+        StringBuilder normalized = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); ) {
+            int codePoint = pattern.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Tokenizer.isWordCodePoint(codePoint)) {
+                normalized.appendCodePoint(Trie.foldCase(codePoint));
+            } else if (codePoint == '?' || (codePoint == '*' && (normalized.length() == 0
+                    || normalized.charAt(normalized.length() - 1) != '*'))) {
+                normalized.append((char) codePoint);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Gets the number of trie nodes with cached completions.
+     *
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Estimates the memory used by the nodes and cached completions.
+     *
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return 4L * Integer.BYTES * nodeLo.length + (long) Integer.BYTES * (topStarts.length + topTerms.length);
+    }
+}
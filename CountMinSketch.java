@@ -0,0 +1,246 @@
+package com.example.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-Min Sketch of word counts in fixed memory, with conservative update.
+ *
+ * The sketch is a table of {@code depth} rows of {@code width} counters. Each
+ * row hashes a word to one counter, and the estimate of a word is the smallest
+ * of its counters. For width ceil(e / epsilon) and depth ceil(ln(1 / delta)), an
+ * estimate is never below the true count, and with probability 1 - delta it is
+ * at most epsilon times the total count above it, however many distinct words
+ * are counted.
+ *
+ * Conservative update only raises a word's counters up to its new estimate,
+ * instead of incrementing all of them, which keeps collisions from inflating
+ * the other words as much. Counters are raised with compare-and-set. Two
+ * threads adding the same word must not both read the same estimate, so the
+ * words are spread over a few striped locks; different words rarely share one.
+ *
+ * Sketches with the same dimensions can be merged by adding their counters,
+ * so instances can count separately and combine their sketches.
+ */
+public final class CountMinSketch {
+
+    private static final int MAGIC = 0x434d5331; // "CMS1"
+    private static final int LOCK_STRIPES = 64;
+
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+    private final LongAdder total = new LongAdder();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * Creates a sketch sized for an error bound.
+     *
+     * @param epsilon The overestimate allowed, as a share of the total count
+     * @param delta   The probability of exceeding it
+     * @throws IllegalArgumentException if epsilon or delta is not between 0 and 1,
+     *                                  or the sketch would be too large
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        this(dimension(Math.E / epsilon, epsilon), dimension(Math.log(1 / delta), delta));
+    }
+
+    /**
+     * Creates a sketch with explicit dimensions.
+     *
+     * @param width The number of counters per row
+     * @param depth The number of rows
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0 || (long) width * depth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid sketch dimensions " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private static int dimension(double size, double parameter) {
+        if (!(parameter > 0 && parameter < 1) || Math.ceil(size) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Epsilon and delta must be between 0 and 1, and not too small");
+        }
+        return Math.max(1, (int) Math.ceil(size));
+    }
+
+    /**
+     * Counts occurrences of a word.
+     *
+     * @param word  The word
+     * @param count The number of occurrences, at least 1
+     * @return The new estimate of the word's count
+     */
+    public long add(String word, long count) {
+        long hash = hash(word);
+        synchronized (locks[(int) (hash >>> 58)]) {
+            long estimate = estimate(hash) + count;
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int row = 0; row < depth; row++) {
+                int index = index(row, h1, h2);
+                long value;
+                while ((value = counters.get(index)) < estimate && !counters.compareAndSet(index, value, estimate)) {
+                    // Another word sharing this counter raised it meanwhile; try again
+                }
+            }
+            total.add(count);
+            return estimate;
+        }
+    }
+
+    /**
+     * Estimates the count of a word.
+     *
+     * @param word The word
+     * @return An estimate that is never below the true count
+     */
+    public long estimate(String word) {
+        return estimate(hash(word));
+    }
+
+    private long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    // Row i uses h1 + i * h2 (double hashing), mapped onto the row without a division
+    private int index(int row, int h1, int h2) {
+        int rowHash = h1 + row * h2;
+        return row * width + (int) (((rowHash & 0xffffffffL) * width) >>> 32);
+    }
+
+    /**
+     * Hashes a word with 64-bit FNV-1a over its chars and a final mix. Unlike
+     * String.hashCode, words that collide in one row rarely collide in the
+     * others, and the hash is the same in every instance, which merging needs.
+     */
+    private static long hash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Adds the counts of another sketch to this one.
+     *
+     * @param other A sketch with the same dimensions
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge a " + other.width + "x" + other.depth
+                    + " sketch into a " + width + "x" + depth + " sketch");
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            long value = other.counters.get(i);
+            if (value != 0) {
+                counters.addAndGet(i, value);
+            }
+        }
+        total.add(other.total.sum());
+    }
+
+    /**
+     * Gets the largest overestimate expected with probability 1 - delta.
+     *
+     * @return e / width times the total count, rounded up
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total.sum());
+    }
+
+    /**
+     * Gets the number of occurrences counted.
+     *
+     * @return The total count
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the memory taken by the counters, which does not depend on the
+     * number of words counted.
+     *
+     * @return The size of the counters in bytes
+     */
+    public long getMemoryBytes() {
+        return 8L * width * depth;
+    }
+
+    /**
+     * Writes the sketch. Counters updated meanwhile may or may not be included.
+     *
+     * @param out The stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(total.sum());
+        for (int i = 0; i < counters.length(); i++) {
+            out.writeLong(counters.get(i));
+        }
+    }
+
+    /**
+     * Adds the counts of a sketch written by {@link #write(DataOutputStream)}
+     * to this one, without loading it into a second sketch.
+     *
+     * @param in The stream to read from
+     * @throws IOException if reading fails, or the data is not a sketch with the same dimensions
+     */
+    public void mergeFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a count-min sketch");
+        }
+        int otherWidth = in.readInt();
+        int otherDepth = in.readInt();
+        if (otherWidth != width || otherDepth != depth) {
+            throw new IOException("Cannot merge a " + otherWidth + "x" + otherDepth
+                    + " sketch into a " + width + "x" + depth + " sketch");
+        }
+        // Read everything first, so a truncated stream leaves this sketch unchanged
+        long otherTotal = in.readLong();
+        long[] values = new long[counters.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                counters.addAndGet(i, values[i]);
+            }
+        }
+        total.add(otherTotal);
+    }
+}
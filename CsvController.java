@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.model.StreamingServicePlan;
 import com.example.service.CsvService;
+import com.example.service.SearchHistoryService;
 
 @RestController
 @RequestMapping("/api")
@@ -18,14 +19,23 @@ public class CsvController {
     @Autowired
     private CsvService csvService;
 
+    // Past searches rank the autocomplete suggestions
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+
     // API endpoint to get plans filtered by platform
     @GetMapping("/plans")
     public List<StreamingServicePlan> getPlans(@RequestParam String platform) {
         return csvService.getPlans(platform); // Call service to get plans for the specified platform
     }
 
+    // The optional session id keeps a per-session history, suggested first to the same session
     @GetMapping("/search")
-    public List<StreamingServicePlan> searchPlans(@RequestParam String query) {
+    public List<StreamingServicePlan> searchPlans(@RequestParam String query,
+            @RequestParam(required = false) String sessionId) {
+        if (!query.isBlank()) {
+            searchHistoryService.addSearchHistory(sessionId, query.trim());
+        }
         return csvService.searchPlans(query);
     }
 
@@ -1,37 +1,57 @@
 package com.example.service;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
+import com.example.model.AhoCorasickMatcher;
 import com.example.model.PageContent;
+import com.example.model.PageCorpus;
+import com.example.model.PlanCatalog;
 import com.example.model.StreamingServicePlan;
+import com.example.model.SuffixArrayIndex;
+import com.example.model.TopKHeap;
 
 @Service
 public class CsvService {
 
     private static final String CSV_FILE_PATH = "src/main/resources/StreamingServices.csv";
-    private List<StreamingServicePlan> plans;
+    // The plans, parsed once on startup; immutable, so requests share it without copying
+    private final PlanCatalog catalog;
 
-    public CsvService() {
+    // Source of the crawled pages used for page ranking
+    private final PageCorpusService pageCorpusService;
+
+    // Suffix array used to count keyword occurrences without scanning every page
+    private final SubstringIndexService substringIndexService;
+
+    // Maximum number of compiled keyword automata kept in memory
+    private static final int MATCHER_CACHE_SIZE = 256;
+
+    // Compiled keyword automata by normalized query, least recently used first
+    private final Map<String, AhoCorasickMatcher> matcherCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AhoCorasickMatcher> eldest) {
+            return size() > MATCHER_CACHE_SIZE;
+        }
+    };
+
+    public CsvService(PageCorpusService pageCorpusService, SubstringIndexService substringIndexService) {
+        this.pageCorpusService = pageCorpusService;
+        this.substringIndexService = substringIndexService;
         // Load the plans on startup
-        this.plans = readCsv();
+        this.catalog = new PlanCatalog(readCsv());
     }
 
     // Read the CSV and return a list of StreamingServicePlan objects
-    List<StreamingServicePlan> readCsv() {
+    private List<StreamingServicePlan> readCsv() {
         List<StreamingServicePlan> plans = new ArrayList<>();
 
         try (BufferedReader br = new BufferedReader(new InputStreamReader(
@@ -58,27 +78,20 @@ public class CsvService {
                         continue;
                     }
 
-                    StreamingServicePlan plan = new StreamingServicePlan();
-
-                    plan.setServiceName(fields[0].trim());
-                    plan.setPlanName(fields[1].trim());
-                    plan.setPrice(removeDollarSymbol(fields[2].trim()));
-                    plan.setAnnualPrice(fields[3].trim());
-                    plan.setFeatures(fields[4].trim());
-
                     // Handle "N/A" or invalid numbers gracefully
+                    int simultaneousStream;
                     try {
-                        plan.setSimultaneousStream(
-                                fields[5].trim().equalsIgnoreCase("N/A") ? 0 : Integer.parseInt(fields[5].trim()));
+                        simultaneousStream = fields[5].trim().equalsIgnoreCase("N/A") ? 0
+                                : Integer.parseInt(fields[5].trim());
                     } catch (NumberFormatException e) {
-                        plan.setSimultaneousStream(0); // Default to 0 if parsing fails
+                        simultaneousStream = 0; // Default to 0 if parsing fails
                         System.err.println("Invalid number format for simultaneous streams in row: " + line);
                     }
 
-                    plan.setDownload(fields[6].trim());
-                    plan.setAdFreeStreaming(fields[7].trim());
-
-                    plans.add(plan);
+                    // Prices and flags are parsed into numbers and booleans here, once
+                    plans.add(new StreamingServicePlan(fields[0].trim(), fields[1].trim(),
+                            removeDollarSymbol(fields[2].trim()), fields[3].trim(), fields[4].trim(),
+                            simultaneousStream, fields[6].trim(), fields[7].trim()));
                 } catch (Exception e) {
                     System.err.println("Error processing row: " + line);
                     e.printStackTrace();
@@ -105,9 +118,7 @@ public class CsvService {
     // Get plans filtered by the platform (service name)
     public List<StreamingServicePlan> getPlans(String platform) {
         try {
-            return plans.stream()
-                    .filter(plan -> plan.getServiceName().equalsIgnoreCase(platform))
-                    .collect(Collectors.toList());
+            return catalog.getPlans(platform);
         } catch (Exception e) {
             System.err.println("Error filtering plans for platform: " + platform);
             e.printStackTrace();
@@ -115,31 +126,21 @@ public class CsvService {
         }
     }
 
-    // Get autocomplete suggestions for plan names based on a query
-    public List<String> getAutocompleteSuggestions(String query) {
-        try {
-            return plans.stream()
-                    .map(StreamingServicePlan::getPlanName)
-                    .filter(planName -> planName.toLowerCase().contains(query.toLowerCase()))
-                    .distinct()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("Error getting autocomplete suggestions for query: " + query);
-            e.printStackTrace();
-            return Collections.emptyList();
-        }
+    // Get every plan, for indexes built over the catalog
+    public List<StreamingServicePlan> getAllPlans() {
+        return catalog.getAllPlans();
+    }
+
+    // Get the catalog, with its precomputed price orders
+    public PlanCatalog getCatalog() {
+        return catalog;
     }
 
     // Search plans based on a query (case-insensitive search in serviceName,
     // planName, and features)
     public List<StreamingServicePlan> searchPlans(String query) {
         try {
-            String lowerCaseQuery = query != null ? query.toLowerCase() : "";
-            return plans.stream()
-                    .filter(plan -> plan.getServiceName().toLowerCase().contains(lowerCaseQuery) ||
-                            plan.getPlanName().toLowerCase().contains(lowerCaseQuery) ||
-                            plan.getFeatures().toLowerCase().contains(lowerCaseQuery))
-                    .collect(Collectors.toList());
+            return catalog.search(query != null ? query : "");
         } catch (Exception e) {
             System.err.println("Error searching plans for query: " + query);
             e.printStackTrace();
@@ -147,56 +148,43 @@ public class CsvService {
         }
     }
 
-    // Get top 10 suggestions based on the query for autocomplete
-    public List<String> getSuggestions(String query) {
+    // Rank pages based on the frequency of keywords, returning one page of results
+    public List<PageContent> rankPages(String query, int offset, int limit) {
         try {
-            return plans.stream()
-                    .map(StreamingServicePlan::getPlanName)
-                    .filter(planName -> planName.toLowerCase().contains(query.toLowerCase()))
-                    .distinct()
-                    .limit(10) // Limit to 10 suggestions
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("Error getting suggestions for query: " + query);
-            e.printStackTrace();
-            return Collections.emptyList();
-        }
-    }
-
-    // Add word completion logic based on user input
-    public List<String> completeWord(String query) {
-        try {
-            return plans.stream()
-                    .map(StreamingServicePlan::getPlanName)
-                    .filter(planName -> planName.toLowerCase().startsWith(query.toLowerCase())) // Start with the query
-                    .distinct()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("Error completing word for query: " + query);
-            e.printStackTrace();
-            return Collections.emptyList();
-        }
-    }
-
-    // Rank pages based on the frequency of keywords
-    public List<PageContent> rankPages(String query) {
-        try {
-            List<PageContent> webPages = loadPageContentFromCsv();
-            String[] keywords = query.toLowerCase().split("\\s+");
-
-            // Calculate frequency for each page based on keywords
-            for (PageContent page : webPages) {
-                String normalizedContent = page.getContent().toLowerCase();
-                for (String keyword : keywords) {
-                    page.setFrequency(page.getFrequency() + countOccurrences(normalizedContent, keyword));
+            // Work on a single snapshot so a concurrent reload cannot change the pages mid-query
+            PageCorpus corpus = pageCorpusService.getCorpus();
+            String[] keywords = normalizeKeywords(query);
+            offset = Math.max(0, offset);
+            limit = RankingService.clampLimit(limit);
+
+            // Only the best offset + limit pages are kept, and never more than the corpus holds
+            TopKHeap heap = new TopKHeap((int) Math.min((long) offset + limit, corpus.size()));
+            SuffixArrayIndex index = substringIndexService.getIndex(corpus);
+            if (index != null && supportsAll(keywords)) {
+                // Count through the suffix array, touching only pages that contain a keyword
+                int[] frequencies = new int[corpus.size()];
+                for (int doc : index.addOccurrences(keywords, frequencies)) {
+                    heap.offer(doc, frequencies[doc]);
+                }
+            } else {
+                // Index not built yet: one pass per page covers every keyword
+                AhoCorasickMatcher matcher = getMatcher(keywords);
+                for (int doc = 0; doc < corpus.size(); doc++) {
+                    int frequency = matcher.countTotal(corpus.getFoldedContent(doc));
+                    if (frequency > 0) {
+                        heap.offer(doc, frequency);
+                    }
                 }
             }
 
-            // Filter and sort pages by frequency in descending order
-            return webPages.stream()
-                    .filter(page -> page.getFrequency() > 0) // Keep pages with frequency > 0
-                    .sorted(Comparator.comparingInt(PageContent::getFrequency).reversed())
-                    .collect(Collectors.toList());
+            // Return pages by frequency in descending order, skipping the first offset pages
+            double[] frequencies = new double[heap.size()];
+            int[] ranked = heap.drain(frequencies);
+            List<PageContent> rankedPages = new ArrayList<>();
+            for (int rank = offset; rank < ranked.length; rank++) {
+                rankedPages.add(corpus.toPageContent(ranked[rank], (int) frequencies[rank]));
+            }
+            return rankedPages;
         } catch (Exception e) {
             System.err.println("Error ranking pages for query: " + query);
             e.printStackTrace();
@@ -204,79 +192,35 @@ public class CsvService {
         }
     }
 
-    // Load page content from CSV file
-    private List<PageContent> loadPageContentFromCsv() {
-        List<PageContent> webPages = new ArrayList<>();
-        Set<String> uniqueUrls = new HashSet<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader("src/main/resources/Crawled_Website_Data.csv"))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                try {
-                    String[] values = line.split(",", 2);
-                    if (values.length == 2) {
-                        String title = values[0].trim();
-                        String content = values[1].trim();
-
-                        if (uniqueUrls.add(title)) {
-                            webPages.add(new PageContent(title, content));
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing row: " + line);
-                    e.printStackTrace();
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading Crawled_Website_Data.csv");
-            e.printStackTrace();
-        }
-
-        return webPages;
+    // Split a query into lowercase keywords
+    private String[] normalizeKeywords(String query) {
+        String trimmed = query.toLowerCase().trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
     }
 
-    // Boyer-Moore algorithm for counting occurrences of a keyword in a text
-    private int countOccurrences(String text, String pattern) {
-        try {
-            Map<Character, Integer> badCharTable = buildBadCharTable(pattern);
-            int occurrences = 0;
-            int m = pattern.length();
-            int n = text.length();
-
-            int shift = 0;
-            while (shift <= (n - m)) {
-                int j = m - 1;
-                while (j >= 0 && pattern.charAt(j) == text.charAt(shift + j)) {
-                    j--;
-                }
-
-                if (j < 0) {
-                    occurrences++;
-                    shift += (shift + m < n) ? m - badCharTable.getOrDefault(text.charAt(shift + m), -1) : 1;
-                } else {
-                    shift += Math.max(1, j - badCharTable.getOrDefault(text.charAt(shift + j), -1));
-                }
+    // Check that the suffix array can count every keyword exactly
+    private boolean supportsAll(String[] keywords) {
+        for (String keyword : keywords) {
+            if (!SuffixArrayIndex.supports(keyword)) {
+                return false;
             }
-
-            return occurrences;
-        } catch (Exception e) {
-            System.err.println("Error counting occurrences of pattern: " + pattern);
-            e.printStackTrace();
-            return 0;
         }
+        return true;
     }
 
-    // Helper method to build the bad character table for the Boyer-Moore algorithm
-    private Map<Character, Integer> buildBadCharTable(String pattern) {
-        Map<Character, Integer> badCharTable = new HashMap<>();
-        try {
-            for (int i = 0; i < pattern.length(); i++) {
-                badCharTable.put(pattern.charAt(i), i);
+    // Get the compiled keyword automaton for a query, compiling it on first use
+    private AhoCorasickMatcher getMatcher(String[] keywords) {
+        String normalizedQuery = String.join(" ", keywords);
+        synchronized (matcherCache) {
+            AhoCorasickMatcher matcher = matcherCache.get(normalizedQuery);
+            if (matcher != null) {
+                return matcher;
             }
-        } catch (Exception e) {
-            System.err.println("Error building bad character table for pattern: " + pattern);
-            e.printStackTrace();
         }
-        return badCharTable;
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(keywords);
+        synchronized (matcherCache) {
+            matcherCache.put(normalizedQuery, matcher);
+        }
+        return matcher;
     }
 }
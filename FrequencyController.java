@@ -2,10 +2,13 @@ package com.example.controller;
 
 import com.example.service.FrequencyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-import java.util.Map.Entry;
+import java.util.HashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/frequency")
@@ -14,11 +17,18 @@ public class FrequencyController {
     @Autowired
     private FrequencyService frequencyService;
 
+    // mode=approximate counts in memory bounded by epsilon instead of by the vocabulary
     @GetMapping("/count")
-    public List<Entry<String, Integer>> getFrequencyCount(
+    public ResponseEntity<?> getFrequencyCount(
             @RequestParam String filePath,
-            @RequestParam(defaultValue = "10") int topN) {
-        return frequencyService.calculateFrequency(filePath, topN);
+            @RequestParam(defaultValue = "10") int topN,
+            @RequestParam(defaultValue = FrequencyService.EXACT) String mode,
+            @RequestParam(defaultValue = "0.001") double epsilon) {
+        try {
+            return ResponseEntity.ok(frequencyService.calculateFrequency(filePath, topN, mode, epsilon));
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
     }
 
     @PostMapping("/track")
@@ -26,8 +36,52 @@ public class FrequencyController {
         return frequencyService.trackSearchFrequency(searchTerm);
     }
 
+    // window=minute|hour|day gives the terms trending now
     @GetMapping("/search-frequency")
-    public List<Entry<String, Integer>> getSearchFrequencies() {
-        return frequencyService.getSearchFrequencies();
+    public ResponseEntity<?> getSearchFrequencies(
+            @RequestParam(defaultValue = FrequencyService.ALL_TIME) String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            int clamped = Math.max(1, Math.min(limit, FrequencyService.MAX_SEARCH_TERMS));
+            return ResponseEntity.ok(frequencyService.getSearchFrequencies(window, clamped));
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    // Sketch mode only: the sketch can be exported by one instance and merged into another
+    @GetMapping("/sketch")
+    public ResponseEntity<?> getSearchSketchInfo() {
+        try {
+            return ResponseEntity.ok(frequencyService.getSearchSketchInfo());
+        } catch (IllegalStateException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    // The content type is only set on success, so an error is still sent as JSON
+    @GetMapping("/sketch/export")
+    public ResponseEntity<?> exportSearchSketch() {
+        try {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(frequencyService.exportSearchSketch());
+        } catch (IllegalStateException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/sketch/merge", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> mergeSearchSketch(@RequestBody byte[] sketch) {
+        try {
+            return ResponseEntity.ok(frequencyService.mergeSearchSketch(sketch));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<?> error(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", message);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 }
@@ -1,74 +1,324 @@
 package com.example.service;
 
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
+import com.example.model.HeavyHitterSketch;
+import com.example.model.SlidingWindowCounter;
+import com.example.model.SpaceSaving;
+import com.example.model.Tokenizer;
+import com.example.model.WordCounter;
+import com.example.model.WriteBehindLog;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class FrequencyService {
 
-    // Track search query frequencies
-    private final Map<String, Integer> searchFrequencyMap = new HashMap<>();
+    public static final String EXACT = "exact";
+    public static final String APPROXIMATE = "approximate";
 
-    public List<Entry<String, Integer>> calculateFrequency(String filePath, int topN) {
-        Map<String, Integer> frequencyMap = new HashMap<>();
+    public static final String ALL_TIME = "all";
 
-        // Read the CSV file and process the text
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] rowData;
-
-            while ((rowData = reader.readNext()) != null) {
-                if (rowData.length < 2)
-                    continue; // Skip invalid lines
-                String textContent = rowData[0]; // Assuming text content is in the first column
-                countWords(textContent, frequencyMap);
-            }
+    // Number of search terms kept ranked in each window
+    public static final int MAX_SEARCH_TERMS = 100;
 
-        } catch (IOException | CsvValidationException e) {
-            e.printStackTrace(); // Handle file read errors
+    // Search terms are counted exactly, or in a fixed-size sketch when they come from arbitrary input
+    public static final String SKETCH = "sketch";
+
+    // Words counted exactly next to the sketch, with slack so the returned terms are not the ones being evicted
+    private static final int SKETCH_TABLE_SIZE = 4 * MAX_SEARCH_TERMS;
+
+    // Track search query frequencies, concurrently and without locks, since the start and in sliding windows
+    private final SlidingWindowCounter searchFrequencies;
+    private final HeavyHitterSketch searchSketch;
+    private final Map<String, SlidingWindowCounter> searchWindows = new LinkedHashMap<>();
+
+    // Logs search counts to disk, so popularity survives restarts; null if the store could not be opened
+    private WriteBehindLog searchLog;
+
+    /**
+     * Creates the service with the counting mode of search terms, and
+     * restores the counts from the store.
+     *
+     * @param searchMode     {@link #EXACT}, or {@link #SKETCH} to count search terms in fixed memory
+     * @param searchEpsilon  The overestimate allowed in sketch mode, as a share of all searches
+     * @param searchDelta    The probability of exceeding it
+     * @param storeDirectory The directory of the search count log
+     */
+    @Autowired
+    public FrequencyService(@Value("${frequency.search.mode:exact}") String searchMode,
+            @Value("${frequency.search.epsilon:0.00001}") double searchEpsilon,
+            @Value("${frequency.search.delta:0.01}") double searchDelta,
+            @Value("${frequency.store.dir:src/main/store}") String storeDirectory) {
+        WriteBehindLog.State liveState;
+        Supplier<WriteBehindLog.SnapshotState> scratchState;
+        if (SKETCH.equals(searchMode)) {
+            searchFrequencies = null;
+            searchSketch = new HeavyHitterSketch(searchEpsilon, searchDelta, SKETCH_TABLE_SIZE);
+            liveState = new SketchState(searchSketch);
+            scratchState = () -> new SketchState(new HeavyHitterSketch(searchEpsilon, searchDelta, SKETCH_TABLE_SIZE));
+            System.out.println("Counting search terms in a " + searchSketch.getMemoryBytes() / 1024 + " KB sketch");
+        } else if (EXACT.equals(searchMode)) {
+            searchFrequencies = new SlidingWindowCounter(Long.MAX_VALUE, 1, MAX_SEARCH_TERMS);
+            searchSketch = null;
+            liveState = new WriteBehindLog.State() {
+                @Override
+                public void load(DataInputStream in) throws IOException {
+                    WriteBehindLog.CountState.read(in, searchFrequencies::add);
+                }
+
+                @Override
+                public void apply(String key, long delta) {
+                    searchFrequencies.add(key, delta);
+                }
+            };
+            scratchState = WriteBehindLog.CountState::new;
+        } else {
+            throw new IllegalArgumentException("Search mode must be " + EXACT + " or " + SKETCH);
+        }
+        searchWindows.put("minute", new SlidingWindowCounter(1000, 60, MAX_SEARCH_TERMS)); // 60 one-second buckets
+        searchWindows.put("hour", new SlidingWindowCounter(60_000, 60, MAX_SEARCH_TERMS)); // 60 one-minute buckets
+        searchWindows.put("day", new SlidingWindowCounter(3_600_000, 24, MAX_SEARCH_TERMS)); // 24 one-hour buckets
+
+        // The modes keep separate logs, since their snapshots differ; the windows start empty
+        try {
+            searchLog = new WriteBehindLog(Path.of(storeDirectory), "search-frequencies-" + searchMode, liveState,
+                    scratchState);
+        } catch (IOException e) {
+            System.err.println("Error opening the search frequency store; counts will not be kept");
+            e.printStackTrace();
+        }
+    }
+
+    // Snapshots a sketch in its own format, so a sketch store stays fixed in size too
+    private static final class SketchState implements WriteBehindLog.SnapshotState {
+        private final HeavyHitterSketch sketch;
+
+        SketchState(HeavyHitterSketch sketch) {
+            this.sketch = sketch;
         }
 
-        // Sort the words by frequency
-        List<Entry<String, Integer>> sortedList = new ArrayList<>(frequencyMap.entrySet());
-        sortedList.sort((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue())); // Sort by descending
-                                                                                             // frequency
+        @Override
+        public void load(DataInputStream in) throws IOException {
+            sketch.mergeFrom(in);
+        }
+
+        @Override
+        public void apply(String key, long delta) {
+            sketch.add(key, delta);
+        }
 
-        // Get the top N words
-        return sortedList.subList(0, Math.min(topN, sortedList.size()));
+        @Override
+        public void save(DataOutputStream out) throws IOException {
+            sketch.write(out);
+        }
     }
 
-    private void countWords(String text, Map<String, Integer> frequencyMap) {
-        String[] words = text.split("\\s+");
-        for (String word : words) {
-            word = word.trim().toLowerCase(); // Normalize the word
-            if (!word.isEmpty()) {
-                frequencyMap.put(word, frequencyMap.getOrDefault(word, 0) + 1);
+    /**
+     * Finds the most frequent words of a CSV file, either exactly or in
+     * bounded memory.
+     *
+     * The exact mode counts every distinct word, so its memory grows with the
+     * vocabulary. The approximate mode keeps a Space-Saving summary of
+     * ceil(1 / epsilon) counters: every word occurring more than epsilon times
+     * the number of words is found, and its count is at most maxError too high.
+     *
+     * @param filePath The CSV file, with the text in the first column
+     * @param topN     The number of words to return
+     * @param mode     {@link #EXACT} or {@link #APPROXIMATE}
+     * @param epsilon  The error bound of the approximate mode
+     * @return The mode used, the word counts and, when approximate, the error bound
+     * @throws IllegalArgumentException if the mode or epsilon is invalid
+     */
+    public Map<String, Object> calculateFrequency(String filePath, int topN, String mode, double epsilon) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode);
+        if (EXACT.equals(mode)) {
+            WordCounter counter = new WordCounter();
+            readWords(filePath, tokenizer -> counter.add(tokenizer.buffer(), tokenizer.offset(), tokenizer.length()));
+            result.put("totalWords", counter.getTotal());
+            result.put("distinctWords", counter.size());
+            result.put("words", exactTop(counter, topN));
+        } else if (APPROXIMATE.equals(mode)) {
+            SpaceSaving summary = new SpaceSaving(epsilon);
+            readWords(filePath, tokenizer -> summary.add(tokenizer.buffer(), tokenizer.offset(), tokenizer.length()));
+            List<Entry<String, Long>> words = new ArrayList<>();
+            for (int id : summary.top(topN)) {
+                words.add(new SimpleImmutableEntry<>(summary.getWord(id), summary.getCount(id)));
             }
+            result.put("totalWords", summary.getTotal());
+            result.put("epsilon", epsilon);
+            result.put("counters", summary.getCapacity());
+            result.put("maxError", summary.getMaxError());
+            result.put("words", words);
+        } else {
+            throw new IllegalArgumentException("Mode must be " + EXACT + " or " + APPROXIMATE);
+        }
+        return result;
+    }
+
+    // Streams the words of the first column of each row to a consumer, split with the same rules as the index
+    private void readWords(String filePath, Consumer<Tokenizer> consumer) {
+        Tokenizer tokenizer = new Tokenizer(); // Reused for every row
+
+        // Read the CSV file and process the text
+        try {
+            MappedCsvReader.read(Paths.get(filePath), row -> {
+                if (row.getFieldCount() >= 2) { // Skip invalid lines
+                    tokenizer.reset(row.getString(0)); // Assuming text content is in the first column
+                    while (tokenizer.next()) {
+                        consumer.accept(tokenizer);
+                    }
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            e.printStackTrace(); // Handle file read errors
+        }
+    }
+
+    // Select the top N words with a bounded heap instead of sorting the whole vocabulary
+    private static List<Entry<String, Integer>> exactTop(WordCounter counter, int topN) {
+        List<Entry<String, Integer>> words = new ArrayList<>();
+        for (int id : counter.top(topN)) {
+            words.add(new SimpleImmutableEntry<>(counter.getWord(id), counter.getCount(id)));
         }
+        return words;
     }
 
     // Track and update search query frequencies
     public int trackSearchFrequency(String searchTerm) {
         searchTerm = searchTerm.toLowerCase(); // Normalize for case-insensitivity
-        int updatedCount = searchFrequencyMap.getOrDefault(searchTerm, 0) + 1;
-        searchFrequencyMap.put(searchTerm, updatedCount);
-        return updatedCount;
+        if (searchLog != null) {
+            searchLog.append(searchTerm, 1); // Written behind, never waits for the disk
+        }
+        long count;
+        if (searchSketch != null) {
+            count = searchSketch.add(searchTerm);
+            if (!searchSketch.isHeavyHitter(searchTerm)) {
+                return (int) Math.min(Integer.MAX_VALUE, count); // Keep the windows bounded to the frequent terms
+            }
+        } else {
+            count = searchFrequencies.add(searchTerm);
+        }
+        for (SlidingWindowCounter window : searchWindows.values()) {
+            window.add(searchTerm);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    /**
+     * Retrieves the most frequent search terms, from the ranking each window
+     * keeps up to date, in O(limit). In sketch mode, the windows only count
+     * the terms frequent enough to be counted exactly.
+     *
+     * @param window {@link #ALL_TIME}, or "minute", "hour" or "day" for the terms trending now
+     * @param limit  The number of terms to return, at most {@link #MAX_SEARCH_TERMS}
+     * @return The terms and their counts in the window, most frequent first
+     * @throws IllegalArgumentException if the window is unknown
+     */
+    public List<Entry<String, Long>> getSearchFrequencies(String window, int limit) {
+        if (ALL_TIME.equals(window) && searchSketch != null) {
+            return searchSketch.top(limit);
+        }
+        SlidingWindowCounter counter = ALL_TIME.equals(window) ? searchFrequencies : searchWindows.get(window);
+        if (counter == null) {
+            throw new IllegalArgumentException("Window must be " + ALL_TIME + " or one of " + searchWindows.keySet());
+        }
+        return counter.top(limit);
     }
 
-    // Retrieve search frequencies
-    public List<Entry<String, Integer>> getSearchFrequencies() {
-        List<Entry<String, Integer>> sortedList = new ArrayList<>(searchFrequencyMap.entrySet());
-        sortedList.sort((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue())); // Sort by descending
-                                                                                             // frequency
-        return sortedList;
+    /**
+     * Exports the search term sketch, for another instance to merge.
+     *
+     * @return The serialized sketch and exact counts
+     * @throws IllegalStateException if search terms are counted exactly
+     */
+    public byte[] exportSearchSketch() {
+        HeavyHitterSketch sketch = requireSearchSketch();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            sketch.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Merges the search term sketch of another instance into this one.
+     *
+     * @param data A sketch exported by {@link #exportSearchSketch()}
+     * @return The size and error bound of the merged sketch
+     * @throws IllegalStateException    if search terms are counted exactly
+     * @throws IllegalArgumentException if the data is not a sketch with the same dimensions
+     */
+    public Map<String, Object> mergeSearchSketch(byte[] data) {
+        HeavyHitterSketch sketch = requireSearchSketch();
+        try {
+            sketch.mergeFrom(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Invalid sketch: data is truncated", e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid sketch: " + e.getMessage(), e);
+        }
+        return getSearchSketchInfo();
+    }
+
+    /**
+     * Describes the search term sketch.
+     *
+     * @return The searches counted, the error bound, the dimensions and the memory used
+     * @throws IllegalStateException if search terms are counted exactly
+     */
+    public Map<String, Object> getSearchSketchInfo() {
+        HeavyHitterSketch sketch = requireSearchSketch();
+        int[] dimensions = sketch.getSketchDimensions();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("mode", SKETCH);
+        info.put("totalSearches", sketch.getTotal());
+        info.put("errorBound", sketch.getErrorBound());
+        info.put("width", dimensions[0]);
+        info.put("depth", dimensions[1]);
+        info.put("exactTerms", sketch.getTableSize());
+        info.put("memoryBytes", sketch.getMemoryBytes());
+        return info;
+    }
+
+    private HeavyHitterSketch requireSearchSketch() {
+        if (searchSketch == null) {
+            throw new IllegalStateException("Search terms are counted exactly; set frequency.search.mode=sketch");
+        }
+        return searchSketch;
+    }
+
+    /**
+     * Writes the pending search counts and closes the store.
+     */
+    @PreDestroy
+    public void close() {
+        if (searchLog != null) {
+            searchLog.close();
+        }
     }
 }
@@ -0,0 +1,284 @@
+package com.example.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Word counts in fixed memory: a {@link CountMinSketch} for every word, plus a
+ * small table that counts the most frequent words exactly.
+ *
+ * A word enters the table when its estimate passes the smallest count in the
+ * table, evicting that word. From then on its occurrences are counted in the
+ * table instead of the sketch, so the most frequent words stop adding
+ * collisions to the sketch and their counts stop drifting. The count of a table
+ * word is its sketch estimate from before it entered plus its exact count
+ * since. When a word is evicted, its exact count is added back to the sketch.
+ * Counts are never below the true counts.
+ *
+ * Memory is the sketch plus the table, however many distinct words are
+ * counted. The most frequent words are read from the table, in O(table size).
+ * Summaries from several instances can be merged through
+ * {@link #write(DataOutputStream)} and {@link #mergeFrom(DataInputStream)}.
+ */
+public final class HeavyHitterSketch {
+
+    private static final int MAGIC = 0x48485331; // "HHS1"
+
+    // Limits on merged data, which comes from outside
+    private static final int MAX_MERGED_WORDS = 1 << 20;
+    private static final int MAX_WORD_BYTES = 1 << 16;
+
+    // Marks the count of an evicted word, so late increments go to the sketch instead
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private static final Comparator<Entry<String, Long>> RANKING_ORDER = (entry1, entry2) -> {
+        int compare = Long.compare(entry2.getValue(), entry1.getValue());
+        return compare != 0 ? compare : entry1.getKey().compareTo(entry2.getKey());
+    };
+
+    private final CountMinSketch sketch;
+    private final int tableSize;
+    private final ConcurrentHashMap<String, AtomicLong> table = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+
+    // A lower bound of the smallest count in the table once it is full
+    private volatile long threshold;
+
+    /**
+     * Creates a summary.
+     *
+     * @param epsilon   The overestimate allowed, as a share of the total count
+     * @param delta     The probability of exceeding it
+     * @param tableSize The number of words counted exactly
+     */
+    public HeavyHitterSketch(double epsilon, double delta, int tableSize) {
+        if (tableSize <= 0) {
+            throw new IllegalArgumentException("Table size must be positive");
+        }
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.tableSize = tableSize;
+    }
+
+    /**
+     * Counts one occurrence of a word.
+     *
+     * @param word The word
+     * @return The estimated count of the word, including this one
+     */
+    public long add(String word) {
+        return add(word, 1);
+    }
+
+    /**
+     * Counts occurrences of a word.
+     *
+     * @param word  The word
+     * @param count The number of occurrences, at least 1
+     * @return The estimated count of the word, including these
+     */
+    public long add(String word, long count) {
+        total.add(count);
+        AtomicLong counted = table.get(word);
+        if (counted != null) {
+            long value;
+            while ((value = counted.get()) != EVICTED) {
+                if (counted.compareAndSet(value, value + count)) {
+                    return sketch.estimate(word) + value + count;
+                }
+            }
+        }
+        long estimate = sketch.add(word, count);
+        if (table.size() < tableSize || estimate > threshold) {
+            admit(word);
+        }
+        return estimate;
+    }
+
+    /**
+     * Moves a word into the table if it is not full, or if its estimate beats
+     * the smallest count in it.
+     */
+    private synchronized void admit(String word) {
+        if (table.containsKey(word)) {
+            return;
+        }
+        if (table.size() >= tableSize) {
+            String smallest = null;
+            long smallestCount = Long.MAX_VALUE;
+            for (Entry<String, AtomicLong> entry : table.entrySet()) {
+                long count = count(entry.getKey(), entry.getValue());
+                if (count < smallestCount) {
+                    smallest = entry.getKey();
+                    smallestCount = count;
+                }
+            }
+            threshold = smallestCount;
+            if (sketch.estimate(word) <= smallestCount) {
+                return;
+            }
+            long evicted = table.remove(smallest).getAndSet(EVICTED);
+            if (evicted > 0) {
+                sketch.add(smallest, evicted);
+            }
+        }
+        table.put(word, new AtomicLong());
+    }
+
+    private long count(String word, AtomicLong counted) {
+        long value = counted == null ? 0 : counted.get();
+        return sketch.estimate(word) + Math.max(0, value);
+    }
+
+    /**
+     * Estimates the count of a word.
+     *
+     * @param word The word
+     * @return A count that is never below the true count
+     */
+    public long getCount(String word) {
+        return count(word, table.get(word));
+    }
+
+    /**
+     * Tells whether a word is one of the most frequent, counted exactly.
+     *
+     * @param word The word
+     * @return true if the word is in the table
+     */
+    public boolean isHeavyHitter(String word) {
+        return table.containsKey(word);
+    }
+
+    /**
+     * Gets the most frequent words, most frequent first and then in
+     * alphabetical order.
+     *
+     * @param limit The number of words to return, at most the table size
+     * @return The words and their estimated counts
+     */
+    public List<Entry<String, Long>> top(int limit) {
+        List<Entry<String, Long>> words = new ArrayList<>(table.size());
+        table.forEach((word, counted) -> words.add(new SimpleImmutableEntry<>(word, count(word, counted))));
+        words.sort(RANKING_ORDER);
+        return words.subList(0, Math.max(0, Math.min(limit, words.size())));
+    }
+
+    /**
+     * Gets the number of occurrences counted.
+     *
+     * @return The total count
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Gets the largest overestimate expected of a word outside the table.
+     *
+     * @return The error bound of the sketch
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / sketch.getWidth() * total.sum());
+    }
+
+    /**
+     * Gets the memory taken by the sketch and a rough size of the table.
+     *
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return sketch.getMemoryBytes() + 128L * tableSize;
+    }
+
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    /**
+     * Gets the counters per row and the rows of the sketch.
+     *
+     * @return The width and the depth
+     */
+    public int[] getSketchDimensions() {
+        return new int[] { sketch.getWidth(), sketch.getDepth() };
+    }
+
+    /**
+     * Writes the summary, for another instance to merge.
+     *
+     * @param out The stream to write to
+     * @throws IOException if writing fails
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        List<Entry<String, Long>> words = new ArrayList<>(table.size());
+        table.forEach((word, counted) -> words.add(new SimpleImmutableEntry<>(word, Math.max(0, counted.get()))));
+        out.writeInt(MAGIC);
+        out.writeLong(total.sum());
+        out.writeInt(words.size());
+        for (Entry<String, Long> word : words) {
+            byte[] bytes = word.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeLong(word.getValue());
+        }
+        sketch.write(out);
+    }
+
+    /**
+     * Adds the counts of a summary written by another instance to this one.
+     * The summaries must have sketches of the same dimensions. Nothing is
+     * merged if the data is invalid.
+     *
+     * @param in The stream to read from
+     * @throws IOException if reading fails or the data is not a matching summary
+     */
+    public synchronized void mergeFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a heavy hitter summary");
+        }
+        long otherTotal = in.readLong();
+        int wordCount = in.readInt();
+        if (wordCount < 0 || wordCount > MAX_MERGED_WORDS) {
+            throw new IOException("Invalid number of words " + wordCount);
+        }
+        List<Entry<String, Long>> words = new ArrayList<>(Math.min(wordCount, tableSize));
+        for (int i = 0; i < wordCount; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_WORD_BYTES) {
+                throw new IOException("Invalid word length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            long count = in.readLong();
+            if (count < 0) {
+                throw new IOException("Invalid word count " + count);
+            }
+            words.add(new SimpleImmutableEntry<>(new String(bytes, StandardCharsets.UTF_8), count));
+        }
+        sketch.mergeFrom(in);
+        total.add(otherTotal);
+
+        // The other instance's exact counts go to our table if the word is there, else to the sketch
+        for (Entry<String, Long> word : words) {
+            AtomicLong counted = table.get(word.getKey());
+            if (counted != null) {
+                counted.addAndGet(word.getValue()); // Table words are only evicted under this lock
+            } else if (word.getValue() > 0) {
+                sketch.add(word.getKey(), word.getValue());
+            }
+        }
+        for (Entry<String, Long> word : words) {
+            admit(word.getKey());
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Read-only segment of the inverted index stored in one file and
+ * memory-mapped, so it can be queried right after opening without rebuilding
+ * anything. Processes that map the same file share its pages through the OS
+ * page cache.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header    magic, version, counts and section offsets (64 bytes)
+ * documents docCount  x (doc id, name offset, name length, vector offset, vector length),
+ *                       sorted by doc id
+ * terms     termCount x (key offset, key length, postings offset, postings length,
+ *                        doc count, skip count, total frequency), sorted by key
+ * words     wordCount x (word offset, word length, frequency), sorted by word
+ * chars     UTF-16 chars of all names, keys and words
+ * vectors   per document: varint entry count, then varint word index delta and count
+ * postings  skip entries and encoded documents of each term, see {@link PostingsList}
+ * </pre>
+ * Terms are the normalized Trie keys; words are the AVL tree keys with their
+ * frequencies. The fixed-size tables are searched by binary search. Offsets
+ * are ints, so a segment is limited to 2 GB.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class IndexSegment implements SegmentReader {
+
+    private static final int MAGIC = 0x49445831; // "IDX1"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int DOC_ENTRY_SIZE = 20;
+    private static final int TERM_ENTRY_SIZE = 32;
+    private static final int WORD_ENTRY_SIZE = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final int wordCount;
+    private final int docsOffset;
+    private final int termsOffset;
+    private final int wordsOffset;
+
+    // Built on first use from the term table
+    private volatile CompletionIndex completionIndex;
+
+    private IndexSegment(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an index segment of version " + VERSION);
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.wordCount = buffer.getInt(16);
+        this.docsOffset = buffer.getInt(20);
+        this.termsOffset = buffer.getInt(24);
+        this.wordsOffset = buffer.getInt(28);
+    }
+
+    /**
+     * Maps a segment file.
+     *
+     * @param path The segment file
+     * @return The opened segment
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    public static IndexSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment larger than 2 GB: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new IndexSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a segment to a file. The file is written next to the target and
+     * moved into place, so readers never see a partial segment. Documents keep
+     * their ids and local indexes.
+     *
+     * @param path   The segment file to create or replace
+     * @param source The segment to write, which must not change meanwhile
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, SegmentReader source) throws IOException {
+        // Collect the terms in key order; segments may visit them unordered
+        List<String> termKeys = new ArrayList<>();
+        List<PostingsList> termPostings = new ArrayList<>();
+        source.forEachTerm((key, postings) -> {
+            if (postings.getDocCount() > 0) { // Terms whose documents were all dropped by a merge
+                termKeys.add(key);
+                termPostings.add(postings);
+            }
+        });
+        Integer[] termOrder = new Integer[termKeys.size()];
+        for (int i = 0; i < termOrder.length; i++) {
+            termOrder[i] = i;
+        }
+        Arrays.sort(termOrder, (a, b) -> termKeys.get(a).compareTo(termKeys.get(b)));
+
+        List<String> wordKeys = new ArrayList<>();
+        List<Integer> wordCounts = new ArrayList<>();
+        Map<String, Integer> wordIndexes = new HashMap<>();
+        source.forEachWord((word, count) -> {
+            wordIndexes.put(word, wordKeys.size());
+            wordKeys.add(word);
+            wordCounts.add(count);
+        });
+
+        // Encode the word counts of every document against the word table
+        int docs = source.getDocCount();
+        ByteArrayOutputStream vectors = new ByteArrayOutputStream();
+        int[] vectorOffsets = new int[docs + 1];
+        for (int index = 0; index < docs; index++) {
+            List<long[]> entries = new ArrayList<>();
+            source.forEachDocWord(index, (word, count) -> entries.add(new long[] { wordIndexes.get(word), count }));
+            entries.sort((a, b) -> Long.compare(a[0], b[0]));
+            writeVarint(vectors, entries.size());
+            long previous = 0;
+            for (long[] entry : entries) {
+                writeVarint(vectors, (int) (entry[0] - previous));
+                writeVarint(vectors, (int) entry[1]);
+                previous = entry[0];
+            }
+            vectorOffsets[index + 1] = vectors.size();
+        }
+
+        // Section offsets
+        long termsOffset = HEADER_SIZE + (long) DOC_ENTRY_SIZE * docs;
+        long wordsOffset = termsOffset + (long) TERM_ENTRY_SIZE * termKeys.size();
+        long charsOffset = wordsOffset + (long) WORD_ENTRY_SIZE * wordKeys.size();
+        long charCount = 0;
+        for (int index = 0; index < docs; index++) {
+            charCount += source.getDocFilename(index).length();
+        }
+        for (String key : termKeys) {
+            charCount += key.length();
+        }
+        for (String word : wordKeys) {
+            charCount += word.length();
+        }
+        long vectorsOffset = charsOffset + Character.BYTES * charCount;
+        long postingsOffset = vectorsOffset + vectors.size();
+        long size = postingsOffset;
+        for (PostingsList postings : termPostings) {
+            size += postings.getEncodedLength();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Index segment would be larger than 2 GB: " + size + " bytes");
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docs);
+            out.writeInt(termKeys.size());
+            out.writeInt(wordKeys.size());
+            out.writeInt(HEADER_SIZE);
+            out.writeInt((int) termsOffset);
+            out.writeInt((int) wordsOffset);
+            out.write(new byte[HEADER_SIZE - 32]);
+
+            // Fixed-size tables; strings are laid out in the chars section in the same order
+            int charOffset = (int) charsOffset;
+            for (int index = 0; index < docs; index++) {
+                int length = source.getDocFilename(index).length();
+                out.writeInt(source.getDocId(index));
+                out.writeInt(charOffset);
+                out.writeInt(length);
+                out.writeInt((int) vectorsOffset + vectorOffsets[index]);
+                out.writeInt(vectorOffsets[index + 1] - vectorOffsets[index]);
+                charOffset += Character.BYTES * length;
+            }
+            int postingsPosition = (int) postingsOffset;
+            for (int term : termOrder) {
+                PostingsList postings = termPostings.get(term);
+                out.writeInt(charOffset);
+                out.writeInt(termKeys.get(term).length());
+                out.writeInt(postingsPosition);
+                out.writeInt(postings.getEncodedLength());
+                out.writeInt(postings.getDocCount());
+                out.writeInt(postings.getSkipCount());
+                out.writeLong(postings.getTotalFrequency());
+                charOffset += Character.BYTES * termKeys.get(term).length();
+                postingsPosition += postings.getEncodedLength();
+            }
+            for (int i = 0; i < wordKeys.size(); i++) {
+                out.writeInt(charOffset);
+                out.writeInt(wordKeys.get(i).length());
+                out.writeInt(wordCounts.get(i));
+                charOffset += Character.BYTES * wordKeys.get(i).length();
+            }
+
+            for (int index = 0; index < docs; index++) {
+                out.writeChars(source.getDocFilename(index));
+            }
+            for (int term : termOrder) {
+                out.writeChars(termKeys.get(term));
+            }
+            for (String word : wordKeys) {
+                out.writeChars(word);
+            }
+            vectors.writeTo(out);
+            for (int term : termOrder) {
+                termPostings.get(term).writeTo(out);
+            }
+            // On disk before the move, so a manifest never lists a segment whose data was lost
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Gets the size of the mapped file.
+     *
+     * @return The size in bytes
+     */
+    @Override
+    public long getSizeBytes() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public int getDocId(int index) {
+        return buffer.getInt(docsOffset + DOC_ENTRY_SIZE * index);
+    }
+
+    @Override
+    public String getDocFilename(int index) {
+        int entry = docsOffset + DOC_ENTRY_SIZE * index;
+        return readString(buffer.getInt(entry + 4), buffer.getInt(entry + 8));
+    }
+
+    @Override
+    public int findDoc(int docId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = getDocId(middle);
+            if (middleId < docId) {
+                low = middle + 1;
+            } else if (middleId > docId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for a word and returns its postings, read in place from the
+     * mapped file.
+     *
+     * @param word The word to search for; it is normalized like {@link Trie} keys
+     * @return The postings of the word, or an empty list if it is not indexed
+     */
+    @Override
+    public PostingsList search(String word) {
+        int entry = find(termsOffset, TERM_ENTRY_SIZE, termCount, Trie.normalize(word));
+        return entry < 0 ? PostingsList.EMPTY : readPostings(entry);
+    }
+
+    @Override
+    public void forEachDocWord(int index, ObjIntConsumer<String> visitor) {
+        int[] offset = { buffer.getInt(docsOffset + DOC_ENTRY_SIZE * index + 12) };
+        int entries = readVarint(offset);
+        int word = 0;
+        for (int i = 0; i < entries; i++) {
+            word += readVarint(offset);
+            int entry = wordsOffset + WORD_ENTRY_SIZE * word;
+            visitor.accept(readString(buffer.getInt(entry), buffer.getInt(entry + 4)), readVarint(offset));
+        }
+    }
+
+    @Override
+    public void forEachTerm(BiConsumer<String, PostingsList> visitor) {
+        for (int i = 0; i < termCount; i++) {
+            int entry = termsOffset + TERM_ENTRY_SIZE * i;
+            visitor.accept(readString(buffer.getInt(entry), buffer.getInt(entry + 4)), readPostings(entry));
+        }
+    }
+
+    /**
+     * Gets the completions over the terms of the segment. The terms are read
+     * in place from the mapped term table, so only the trie nodes and their
+     * cached completions are kept in memory.
+     *
+     * @return The completion index
+     */
+    public CompletionIndex getCompletionIndex() {
+        CompletionIndex index = completionIndex;
+        if (index == null) {
+            // Racing threads build equal indexes, so either may win
+            index = CompletionIndex.build(new CompletionIndex.Terms() {
+                @Override
+                public int size() {
+                    return termCount;
+                }
+
+                @Override
+                public int length(int term) {
+                    return buffer.getInt(termsOffset + TERM_ENTRY_SIZE * term + 4);
+                }
+
+                @Override
+                public char charAt(int term, int index) {
+                    int keyOffset = buffer.getInt(termsOffset + TERM_ENTRY_SIZE * term);
+                    return buffer.getChar(keyOffset + Character.BYTES * index);
+                }
+
+                @Override
+                public String key(int term) {
+                    int entry = termsOffset + TERM_ENTRY_SIZE * term;
+                    return readString(buffer.getInt(entry), buffer.getInt(entry + 4));
+                }
+
+                @Override
+                public long weight(int term) {
+                    return buffer.getLong(termsOffset + TERM_ENTRY_SIZE * term + 24);
+                }
+            });
+            completionIndex = index;
+        }
+        return index;
+    }
+
+    @Override
+    public void forEachCompletion(String pattern, int limit, Consumer<String> visitor) {
+        CompletionIndex completions = getCompletionIndex();
+        for (int term : completions.match(pattern, limit)) {
+            visitor.accept(completions.getTerm(term));
+        }
+    }
+
+    @Override
+    public void forEachWord(ObjIntConsumer<String> visitor) {
+        for (int i = 0; i < wordCount; i++) {
+            int entry = wordsOffset + WORD_ENTRY_SIZE * i;
+            visitor.accept(readString(buffer.getInt(entry), buffer.getInt(entry + 4)), buffer.getInt(entry + 8));
+        }
+    }
+
+    private PostingsList readPostings(int entry) {
+        return PostingsList.read(buffer, buffer.getInt(entry + 8), buffer.getInt(entry + 12),
+                buffer.getInt(entry + 16), buffer.getLong(entry + 24), buffer.getInt(entry + 20));
+    }
+
+    /**
+     * Binary search over a table whose entries start with a key offset and
+     * key length.
+     *
+     * @return The offset of the matching entry, or -1 if there is none
+     */
+    private int find(int tableOffset, int entrySize, int entryCount, char[] key) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = tableOffset + entrySize * middle;
+            int comparison = compare(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    // Compares a stored string with a key in the order of String.compareTo
+    private int compare(int offset, int length, char[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            char c = buffer.getChar(offset + Character.BYTES * i);
+            if (c != key[i]) {
+                return c - key[i];
+            }
+        }
+        return length - key.length;
+    }
+
+    private String readString(int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(offset + Character.BYTES * i);
+        }
+        return new String(chars);
+    }
+
+    // Reads a varint at offset[0] and advances it
+    private int readVarint(int[] offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(offset[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
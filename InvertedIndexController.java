@@ -1,31 +1,71 @@
 package com.example.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.model.Occurrence;
+import com.example.model.SpellingCorrector;
 import com.example.service.InvertedIndexService;
+import com.example.service.RequestLogService;
+import com.example.service.SpellingService;
 
 @RestController
 @RequestMapping("/api/inverted-index")
 public class InvertedIndexController {
 
+    // Most occurrences returned in one page
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Most spelling corrections returned with an empty result
+    private static final int MAX_CORRECTIONS = 5;
+
     private final InvertedIndexService invertedIndexService;
+    private final RequestLogService requestLogService;
+    private final SpellingService spellingService;
 
     @Autowired
-    public InvertedIndexController(InvertedIndexService invertedIndexService) {
+    public InvertedIndexController(InvertedIndexService invertedIndexService, RequestLogService requestLogService,
+            SpellingService spellingService) {
         this.invertedIndexService = invertedIndexService;
+        this.requestLogService = requestLogService;
+        this.spellingService = spellingService;
     }
 
+    /**
+     * Searches for a word and returns one page of its occurrences. Pass the
+     * returned {@code nextCursor} back as {@code cursor} to get the next page;
+     * it is absent on the last page. A word that is not found comes back, on
+     * the first page, with {@code didYouMean}, the closest indexed word, and
+     * its other corrections.
+     *
+     * @param word   the word to search for
+     * @param cursor the cursor of the previous page, if any
+     * @param limit  the maximum number of occurrences to return
+     * @return the occurrences, the cursor to the next page and the word's frequency
+     */
     @GetMapping("/search")
-    public Map<String, Object> search(@RequestParam String word) {
+    public Map<String, Object> search(@RequestParam String word, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        long start = System.nanoTime();
         Map<String, Object> response = new HashMap<>();
         
         if (word == null || word.trim().isEmpty()) {
@@ -36,19 +76,266 @@ public class InvertedIndexController {
         word = word.toLowerCase(); // Normalize the search word
 
         // Search the word in the Inverted Index Service
-        List<Occurrence> invertedIndexResult = invertedIndexService.searchInvertedIndex(word);
-        if (invertedIndexResult == null || invertedIndexResult.isEmpty()) {
+        InvertedIndexService.OccurrencePage page;
+        try {
+            page = invertedIndexService.searchInvertedIndex(word, cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return response;
+        }
+        List<Occurrence> invertedIndexResult = page.getOccurrences();
+        if (invertedIndexResult.isEmpty()) {
             response.put("invertedIndex", "No results found for the word: " + word);
+            // A later page can be empty for a word that exists, so only correct the first one
+            if (cursor == null) {
+                List<SpellingCorrector.Correction> corrections = spellingService.suggest(word, MAX_CORRECTIONS);
+                if (!corrections.isEmpty()) {
+                    response.put("didYouMean", corrections.get(0).getWord());
+                    response.put("corrections", corrections);
+                }
+            }
         } else {
             response.put("invertedIndex", invertedIndexResult);
         }
+        if (page.getNextCursor() != null) {
+            response.put("nextCursor", page.getNextCursor());
+        }
 
         // Get frequency of the word from AVL Tree
         int frequency = invertedIndexService.getFrequency(word);
         response.put("frequency count", frequency);
 
-        // Log and return the response
-        System.out.println("Response: " + response);
+        requestLogService.log("/search", System.nanoTime() - start, "word", word, "cursor", cursor != null,
+                "results", invertedIndexResult.size(), "more", page.getNextCursor() != null);
+        return response;
+    }
+
+    /**
+     * Streams every occurrence of a word, from an optional cursor on, as
+     * newline-delimited JSON. Occurrences are written as the postings are
+     * decoded, so the response starts at once and is never held in memory.
+     *
+     * @param word   the word to search for
+     * @param cursor a cursor returned by {@link #search}, to resume after it
+     * @return one JSON object per line with pageIndex, position and filename
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearch(@RequestParam String word,
+            @RequestParam(required = false) String cursor) {
+        String normalizedWord = word.trim().toLowerCase();
+        try {
+            // Reject a bad cursor before the response is committed
+            invertedIndexService.streamOccurrences(normalizedWord, cursor, (pageIndex, position, filename) -> false);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(out -> out.write(
+                    ("{\"error\":" + jsonString(e.getMessage()) + "}\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        return ResponseEntity.ok(out -> {
+            long start = System.nanoTime();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            int[] written = new int[1];
+            IOException[] failure = new IOException[1];
+            invertedIndexService.streamOccurrences(normalizedWord, cursor, (pageIndex, position, filename) -> {
+                try {
+                    writer.write("{\"pageIndex\":");
+                    writer.write(Integer.toString(pageIndex));
+                    writer.write(",\"position\":");
+                    writer.write(Integer.toString(position));
+                    writer.write(",\"filename\":");
+                    writer.write(jsonString(filename));
+                    writer.write("}\n");
+                    written[0]++;
+                    return true;
+                } catch (IOException e) {
+                    failure[0] = e; // The client went away; stop decoding
+                    return false;
+                }
+            });
+            requestLogService.log("/search/stream", System.nanoTime() - start, "word", normalizedWord,
+                    "cursor", cursor != null, "results", written[0], "aborted", failure[0] != null);
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            writer.flush();
+        });
+    }
+
+    // Quotes a string as a JSON string literal
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Evaluates a boolean query with AND, OR, NOT, parentheses, quoted phrases
+     * and proximity phrases such as {@code "streaming service"~3}, and returns
+     * one page of the occurrences. Pages are walked with {@code nextCursor}
+     * like the pages of {@link #search}.
+     *
+     * @param q      the query
+     * @param cursor the cursor of the previous page, if any
+     * @param limit  the maximum number of occurrences to return
+     * @return the occurrences of the matched words and phrases, the cursor to
+     *         the next page and the number of matching documents, or an error
+     */
+    @GetMapping("/query")
+    public Map<String, Object> query(@RequestParam String q, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("query", q);
+
+        InvertedIndexService.QueryPage page;
+        try {
+            page = invertedIndexService.searchQuery(q, cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return response;
+        }
+
+        response.put("documents", page.getDocuments());
+        if (page.getOccurrences().isEmpty()) {
+            response.put("invertedIndex", "No results found for the query: " + q);
+        } else {
+            response.put("invertedIndex", page.getOccurrences());
+        }
+        if (page.getNextCursor() != null) {
+            response.put("nextCursor", page.getNextCursor());
+        }
+        return response;
+    }
+
+    /**
+     * Suggests the most frequent indexed words for a prefix as it is typed,
+     * or for a wildcard pattern such as {@code str?am*}.
+     *
+     * @param prefix the prefix or pattern
+     * @param limit  the maximum number of words to return, at most {@link InvertedIndexService#MAX_COMPLETIONS}
+     * @return the words with their frequencies, or an error
+     */
+    @GetMapping("/complete")
+    public Map<String, Object> complete(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("prefix", prefix);
+        try {
+            response.put("completions", invertedIndexService.getCompletions(prefix,
+                    Math.max(1, Math.min(limit, InvertedIndexService.MAX_COMPLETIONS))));
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+        }
         return response;
     }
+
+    /**
+     * Lists the most frequent words of the indexed documents.
+     *
+     * @param limit the maximum number of words to return
+     * @return the words with their frequencies, most frequent first
+     */
+    @GetMapping("/vocabulary/top")
+    public List<Map<String, Object>> getTopWords(@RequestParam(defaultValue = "10") int limit) {
+        return invertedIndexService.getMostFrequentWords(Math.max(0, Math.min(limit, 1000)));
+    }
+
+    /**
+     * Counts the words between two words and sums their frequencies, for
+     * example every word from "a" up to "c".
+     *
+     * @param from  the lowest word of the range
+     * @param to    the word the range ends before
+     * @param limit the maximum number of words to list
+     * @return the number of words, their total frequency and the first words
+     */
+    @GetMapping("/vocabulary/range")
+    public Map<String, Object> getWordRange(@RequestParam String from, @RequestParam String to,
+            @RequestParam(defaultValue = "20") int limit) {
+        return invertedIndexService.getWordRange(from, to, Math.max(0, Math.min(limit, 1000)));
+    }
+
+    /**
+     * Gets the position of a word in the sorted vocabulary.
+     *
+     * @param word the word
+     * @return its rank and frequency
+     */
+    @GetMapping("/vocabulary/rank")
+    public Map<String, Object> getWordRank(@RequestParam String word) {
+        return invertedIndexService.getWordRank(word);
+    }
+
+    /**
+     * Gets the word at a position in the sorted vocabulary.
+     *
+     * @param rank the 0-based position
+     * @return the word and its frequency, or an error
+     */
+    @GetMapping("/vocabulary/select")
+    public Map<String, Object> getWordAtRank(@RequestParam int rank) {
+        try {
+            return invertedIndexService.getWordAtRank(rank);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return response;
+        }
+    }
+
+    /**
+     * Adds a document to the index, or replaces the document with the same name.
+     *
+     * @param name    the name of the document, such as a file name or URL
+     * @param content the text of the document
+     * @return the id assigned to the document
+     */
+    @PutMapping("/documents")
+    public Map<String, Object> addDocument(@RequestParam String name, @RequestBody String content) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("name", name);
+        response.put("docId", invertedIndexService.addDocument(name, content));
+        return response;
+    }
+
+    /**
+     * Deletes a document from the index.
+     *
+     * @param name the name the document was added under
+     * @return whether the document existed
+     */
+    @DeleteMapping("/documents")
+    public Map<String, Object> deleteDocument(@RequestParam String name) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("name", name);
+        response.put("deleted", invertedIndexService.deleteDocument(name));
+        return response;
+    }
+
+    /**
+     * Lists the segments of the index with their sizes and deleted documents.
+     *
+     * @return one entry per segment
+     */
+    @GetMapping("/segments")
+    public List<Map<String, Object>> getSegments() {
+        return invertedIndexService.getSegmentStats();
+    }
+
+    /**
+     * Describes the spelling corrector: its settings, the words and deletes it
+     * indexes, its memory and its build time.
+     *
+     * @return the statistics of the spelling corrector
+     */
+    @GetMapping("/spelling-stats")
+    public Map<String, Object> getSpellingStats() {
+        return spellingService.getStats();
+    }
 }
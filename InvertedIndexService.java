@@ -1,122 +1,1292 @@
 package com.example.service;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
 
 import org.springframework.stereotype.Service;
 
 import com.example.model.AVLTree;
+import com.example.model.CompletionIndex;
+import com.example.model.IndexSegment;
+import com.example.model.MemorySegment;
 import com.example.model.Occurrence;
-import com.example.model.Trie;
+import com.example.model.PostingsList;
+import com.example.model.Query;
+import com.example.model.QueryParser;
+import com.example.model.SegmentReader;
+import com.example.model.Tokenizer;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service class for managing an inverted index using a Trie and AVL Tree.
  * The inverted index allows efficient storage and retrieval of word occurrences
- * in text files located in a specific directory.
+ * in text files located in a specific directory, and of documents added at
+ * runtime.
+ *
+ * The index is a list of segments in ascending document id order. New
+ * documents go into an in-memory segment (Trie and AVL Tree), which is flushed
+ * to a memory-mapped {@link IndexSegment} file once it grows large enough or
+ * every {@link #FLUSH_INTERVAL_SECONDS} seconds. Small segments on disk are
+ * merged in the background, LSM style. Deleted and replaced documents are
+ * marked in a tombstone bitset per segment and dropped for good when their
+ * segment is merged. Queries fan out over all segments.
+ *
+ * The segment files and their tombstones are listed in a manifest, so a
+ * restart maps the existing segments instead of rebuilding. If the files in
+ * "text_pages" change, the index is rebuilt from them and documents added at
+ * runtime are discarded. Documents still in the in-memory segment are lost if
+ * the JVM dies before the next flush.
+ *
+ * Queries never take a lock. Every change builds a new immutable
+ * {@link IndexState} (the segment list, snapshots of the in-memory segment
+ * and of the deleted word counts, and copied tombstones) and publishes it
+ * through a volatile field, so a query sees one consistent version from start
+ * to end and sees every change that completed before it started. Changes are
+ * serialized by a single writer lock.
  */
 @Service
 public class InvertedIndexService {
-    // Trie for storing word occurrences (word -> list of occurrences in files)
-    private final Trie trie = new Trie();
 
-    // AVL Tree for efficiently tracking word frequencies
-    private final AVLTree avlTree = new AVLTree();
+    // Directory holding the segment files and the manifest
+    private static final Path INDEX_DIR = Path.of("src/main/index");
+    private static final Path MANIFEST_PATH = INDEX_DIR.resolve("segments.manifest");
+
+    private static final int MANIFEST_MAGIC = 0x49444d31; // "IDM1"
+    private static final int MANIFEST_VERSION = 2;
+
+    // The most completions returned, all read from the caches of the completion indexes
+    public static final int MAX_COMPLETIONS = CompletionIndex.CACHED_COMPLETIONS;
+
+    // Format of the search cursors, so that old cursors can be rejected if it changes
+    private static final byte CURSOR_VERSION = 1;
+
+    // The in-memory segment is flushed when it reaches either limit, or periodically
+    private static final int FLUSH_DOCS = 1000;
+    private static final long FLUSH_BYTES = 32L * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+
+    // Adjacent segments are merged MERGE_FACTOR at a time while there are more than MAX_SEGMENTS on disk
+    private static final int MAX_SEGMENTS = 8;
+    private static final int MERGE_FACTOR = 4;
+
+    // A segment is rewritten on its own once this share of its documents is deleted
+    private static final double MAX_DELETED_RATIO = 0.5;
+
+    /**
+     * One segment of the index with its tombstones. Document ids of the
+     * segment start at baseDocId and end before the base of the next segment.
+     * A segment is immutable once published; deleting a document replaces it
+     * with a copy whose tombstones include the document.
+     */
+    private static final class Segment {
+        final SegmentReader reader;
+        final String fileName; // Null while the segment only exists in memory
+        final int baseDocId;
+        final BitSet deleted;  // Deleted documents, by doc id - baseDocId
+        final int deletedCount;
+
+        Segment(SegmentReader reader, String fileName, int baseDocId, BitSet deleted, int deletedCount) {
+            this.reader = reader;
+            this.fileName = fileName;
+            this.baseDocId = baseDocId;
+            this.deleted = deleted;
+            this.deletedCount = deletedCount;
+        }
+
+        boolean isDeleted(int docId) {
+            return deleted.get(docId - baseDocId);
+        }
+
+        Segment withReader(SegmentReader reader, String fileName) {
+            return new Segment(reader, fileName, baseDocId, deleted, deletedCount);
+        }
+
+        Segment withDeleted(int docId) {
+            BitSet copy = (BitSet) deleted.clone();
+            copy.set(docId - baseDocId);
+            return new Segment(reader, fileName, baseDocId, copy, deletedCount + 1);
+        }
+    }
+
+    /**
+     * One published version of the index, read by queries without locking.
+     */
+    private static final class IndexState {
+        final List<Segment> segments;        // In ascending document id order
+        final AVLTree wordCounts;            // Frequency of every word over the live documents
+
+        IndexState(List<Segment> segments, AVLTree wordCounts) {
+            this.segments = segments;
+            this.wordCounts = wordCounts;
+        }
+    }
+
+    /**
+     * One page of the occurrences of a word, with the cursor to the next page.
+     */
+    public static class OccurrencePage {
+        private final List<Occurrence> occurrences;
+        private final String nextCursor;
+
+        OccurrencePage(List<Occurrence> occurrences, String nextCursor) {
+            this.occurrences = occurrences;
+            this.nextCursor = nextCursor;
+        }
+
+        /**
+         * Gets the occurrences of this page, by page index then position.
+         *
+         * @return the occurrences
+         */
+        public List<Occurrence> getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * Gets the cursor that continues after this page.
+         *
+         * @return the cursor, or null if this is the last page
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * One page of the occurrences matching a query, with the number of
+     * documents matching it in all.
+     */
+    public static final class QueryPage extends OccurrencePage {
+        private final int documents;
+
+        QueryPage(List<Occurrence> occurrences, String nextCursor, int documents) {
+            super(occurrences, nextCursor);
+            this.documents = documents;
+        }
+
+        /**
+         * Gets the number of live documents matching the query, on every page.
+         *
+         * @return the number of documents
+         */
+        public int getDocuments() {
+            return documents;
+        }
+    }
+
+    /**
+     * Receives the occurrences of a word as they are decoded from the postings.
+     */
+    public interface OccurrenceVisitor {
+        /**
+         * Receives one occurrence.
+         *
+         * @param pageIndex the 1-based page index
+         * @param position  the position of the word in the page
+         * @param filename  the name of the page's file
+         * @return false to stop the search
+         */
+        boolean visit(int pageIndex, int position, String filename);
+    }
+
+    // The version of the index that queries read
+    private volatile IndexState state = new IndexState(List.of(), new AVLTree());
+
+    // Number of versions published, so readers can tell when the index changed
+    private volatile long version;
+
+    // Serializes all changes; everything below is only used with it held
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Segments in ascending document id order; the last one is the active in-memory segment
+    private final List<Segment> segments = new ArrayList<>();
+
+    // Segment receiving new documents
+    private MemorySegment memory;
+
+    private int nextDocId;
+    private int nextGeneration = 1;
+    private long sourceFingerprint;
+
+    // Name -> id of every live document, built on the first update
+    private Map<String, Integer> liveDocIds;
+
+    // New doc id -> id of the version it replaced on disk, while the new version is only in memory.
+    // The tombstone of the replaced version stays out of the manifest until the new one is written,
+    // so a crash before the flush keeps the old version instead of losing both.
+    private final Map<Integer, Integer> pendingReplacements = new HashMap<>();
+
+    // Frequency of every word over the live documents of all segments
+    private AVLTree wordCounts = new AVLTree();
+
+    // Runs flushes and merges one at a time, off the request threads
+    private final ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "inverted-index-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Set while a flush is queued
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
 
     /**
-     * Constructor for the InvertedIndexService. 
+     * Constructor for the InvertedIndexService.
      * Initializes the inverted index upon service creation.
      */
     public InvertedIndexService() {
         initializeInvertedIndex();
+        maintenanceExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
     }
 
     /**
-     * Initializes the inverted index by reading text files from the "text_pages" directory.
-     * Each word is processed and added to both the Trie and the AVL Tree.
+     * Initializes the inverted index from the "text_pages" directory. If the
+     * manifest was written for the same files, its segments are mapped and used
+     * as is. Otherwise the index directory is cleared and the files are indexed
+     * again: they are sorted by name and split into contiguous ranges, worker
+     * threads tokenize each range into a partial in-memory segment, and the
+     * partials are merged in file order and written as the first segment.
+     * Page indexes follow the sorted file names, so they do not depend on the
+     * number of threads.
      */
     private void initializeInvertedIndex() {
         // Specify the directory containing text files
         File dir = new File("src/main/text_pages"); // Use relative path based on the app root
 
         // Check if the directory exists and is accessible
+        File[] files = null;
         if (!dir.exists() || !dir.isDirectory()) {
             System.err.println("Directory 'text_pages' does not exist or is not accessible.");
-            return; // Exit if the directory is invalid
+        } else {
+            // Filter to only include .txt files
+            files = dir.listFiles((d, name) -> name.endsWith(".txt"));
         }
-
-        // Filter to only include .txt files
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
         if (files == null || files.length == 0) {
             System.err.println("No .txt files found in the 'text_pages' directory.");
-            return; // Exit if no .txt files are found
+            files = new File[0];
         }
 
-        // Iterate through each file and process its content
-        for (int pageIndex = 0; pageIndex < files.length; pageIndex++) {
-            File file = files[pageIndex];
-            try {
-                // Read the content of the file
-                String content = readFile(file.getAbsolutePath());
-                // Split the content into words using non-word characters as delimiters
-                String[] words = content.split("\\W+");
-
-                // Add each word to the Trie and AVL Tree
-                for (int position = 0; position < words.length; position++) {
-                    String word = words[position].toLowerCase(); // Normalize word to lowercase
-                    if (!word.isEmpty()) { // Ignore empty words
-                        // Insert word with its occurrence details into the Trie
-                        trie.insert(word, file.getName(), pageIndex + 1, position);
-                        // Insert word into the AVL Tree for frequency tracking
-                        avlTree.insert(word);
-                    }
-                }
-            } catch (IOException e) {
+        // Assign document ids in file name order
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        // Skip the build if the segments on disk were built from exactly these files
+        sourceFingerprint = computeFingerprint(files);
+        if (!loadManifest()) {
+            rebuild(files);
+        }
+        memory = new MemorySegment();
+        segments.add(new Segment(memory, null, nextDocId, new BitSet(), 0));
+        publish();
+    }
+
+    /**
+     * Publishes the current segments for queries, with snapshots of the
+     * in-memory segment and of the word counts. Must be called with
+     * the write lock held, after every change.
+     */
+    private void publish() {
+        List<Segment> published = new ArrayList<>(segments);
+        int last = published.size() - 1;
+        published.set(last, published.get(last).withReader(memory.snapshot(), null));
+        state = new IndexState(Collections.unmodifiableList(published), wordCounts.snapshot());
+        version++; // Only written with the write lock held
+    }
+
+    /**
+     * Gets the number of versions of the index published so far, which
+     * changes whenever documents are added, replaced or deleted.
+     *
+     * @return the version of the index
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Computes a CRC32C fingerprint of the name, size and modification time of
+     * every source file. Any added, removed, renamed or rewritten file changes it.
+     *
+     * @param files the source files in document id order
+     * @return the fingerprint
+     */
+    private static long computeFingerprint(File[] files) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer metadata = ByteBuffer.allocate(2 * Long.BYTES);
+        for (File file : files) {
+            crc.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            metadata.clear();
+            metadata.putLong(file.length()).putLong(file.lastModified()).flip();
+            crc.update(metadata);
+        }
+        return (long) files.length << 32 | crc.getValue();
+    }
+
+    /**
+     * Indexes the source files from scratch into a single segment on disk.
+     *
+     * @param files the source files sorted by name
+     */
+    private void rebuild(File[] files) {
+        long start = System.nanoTime();
+        clearIndexDirectory();
+        nextDocId = files.length;
+        if (files.length == 0) {
+            return;
+        }
+
+        MemorySegment built = new MemorySegment();
+        int workers = Math.min(files.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "inverted-index-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Each worker indexes one contiguous range of documents
+            List<Future<MemorySegment>> partials = new ArrayList<>(workers);
+            for (int worker = 0; worker < workers; worker++) {
+                int from = (int) ((long) files.length * worker / workers);
+                int to = (int) ((long) files.length * (worker + 1) / workers);
+                partials.add(executor.submit(() -> buildPartialIndex(files, from, to)));
+            }
+
+            // Merge the partials in document order so postings stay sorted
+            for (Future<MemorySegment> future : partials) {
+                built.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while building the inverted index");
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Error building the inverted index");
+            e.getCause().printStackTrace();
+            return;
+        } finally {
+            executor.shutdown();
+        }
+
+        // Report the size of the trie so memory can be projected for larger vocabularies
+        int termCount = Math.max(1, built.getTrie().getTermCount());
+        System.out.println("Inverted index: " + files.length + " files on " + workers + " threads in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, " + built.getTrie().getTermCount() + " terms, "
+                + built.getTrie().getNodeCount() + " trie nodes, " + built.getTrie().estimateNodeMemoryBytes()
+                + " bytes of trie nodes (" + built.getTrie().estimateNodeMemoryBytes() / termCount
+                + " bytes per term), " + built.getTrie().getPostingsMemoryBytes() + " bytes of postings");
+
+        segments.add(new Segment(built, null, 0, new BitSet(), 0));
+        built.forEachWord(wordCounts::insert);
+        try {
+            segments.set(0, writeSegment(segments.get(0)));
+            writeManifest();
+        } catch (IOException e) {
+            // Queries keep using the in-memory segment; the next flush retries
+            System.err.println("Error writing inverted index segment");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tokenizes the files with document ids from..to-1 into a new partial index.
+     *
+     * @param files the files sorted by name; the index of a file is its document id
+     * @param from  the first document id of the range
+     * @param to    the document id after the range
+     * @return the partial index of the range
+     */
+    private MemorySegment buildPartialIndex(File[] files, int from, int to) {
+        MemorySegment partial = new MemorySegment();
+        Tokenizer tokenizer = new Tokenizer(); // One buffer for every file of the range
+        for (int docId = from; docId < to; docId++) {
+            File file = files[docId];
+            // Stream the words of the file and add them under the file's document id
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                partial.addDocument(docId, file.getName(), tokenize(tokenizer.reset(reader)));
+            } catch (IOException | UncheckedIOException e) {
                 // Handle errors that occur while reading the file
                 System.err.println("Error reading file: " + file.getName());
                 e.printStackTrace();
             }
         }
+        return partial;
+    }
+
+    /**
+     * Splits text into lowercased words with the shared {@link Tokenizer}.
+     * The index of a word in the array is its position.
+     *
+     * @param content the text to split
+     * @return the words, possibly including empty strings
+     */
+    private static String[] tokenize(String content) {
+        return tokenize(new Tokenizer().reset(content));
     }
 
     /**
-     * Reads the content of a file and returns it as a single string.
+     * Collects the remaining words of a tokenizer. A text that starts with a
+     * separator gets an empty word at position 0, as the regex split used to
+     * produce, so positions stay the same as in segments written before.
      *
-     * @param filePath the path to the file
-     * @return the content of the file
-     * @throws IOException if an error occurs while reading the file
+     * @param tokenizer the tokenizer, reset to the text
+     * @return the words, possibly including empty strings
      */
-    private String readFile(String filePath) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            // Read each line and append it to the content string
-            while ((line = br.readLine()) != null) {
-                content.append(line).append(" ");
+    private static String[] tokenize(Tokenizer tokenizer) {
+        List<String> words = new ArrayList<>();
+        while (tokenizer.next()) {
+            if (words.isEmpty() && tokenizer.startOffset() > 0) {
+                words.add("");
             }
+            words.add(tokenizer.token());
         }
-        return content.toString();
+        return words.toArray(new String[0]);
     }
 
     /**
-     * Searches for occurrences of a word in the inverted index.
+     * Adds a document to the index, or replaces the document with the same
+     * name. The document is searchable as soon as this method returns, and
+     * written to disk by the next flush; until then, a replaced version stays
+     * in the manifest, so a crash loses the change but not the document.
      *
-     * @param word the word to search for
-     * @return a list of occurrences of the word in the indexed files
+     * @param name    the name of the document, such as a file name or URL
+     * @param content the text of the document
+     * @return the id assigned to the document
      */
-    public List<Occurrence> searchInvertedIndex(String word) {
-        return trie.search(word);
+    public int addDocument(String name, String content) {
+        String[] words = tokenize(content);
+        int docId;
+        boolean flushNeeded;
+        writeLock.lock();
+        try {
+            Integer previous = getLiveDocIds().get(name);
+            docId = nextDocId++;
+            if (previous != null) {
+                // A version still in memory passes on the version on disk it replaced
+                Integer replacedOnDisk = pendingReplacements.remove(previous);
+                if (markDeleted(previous)) {
+                    replacedOnDisk = previous;
+                }
+                if (replacedOnDisk != null) {
+                    pendingReplacements.put(docId, replacedOnDisk);
+                }
+            }
+            memory.addDocument(docId, name, words);
+            memory.forEachDocWord(memory.getDocCount() - 1, wordCounts::insert);
+            liveDocIds.put(name, docId);
+            publish();
+            flushNeeded = memory.getDocCount() >= FLUSH_DOCS || memory.getSizeBytes() >= FLUSH_BYTES;
+        } finally {
+            writeLock.unlock();
+        }
+        if (flushNeeded && flushQueued.compareAndSet(false, true)) {
+            maintenanceExecutor.execute(this::flush);
+        }
+        return docId;
     }
 
     /**
-     * Retrieves the frequency of a word from the AVL Tree.
+     * Deletes a document from the index.
+     *
+     * @param name the name the document was added under
+     * @return true if the document existed
+     */
+    public boolean deleteDocument(String name) {
+        writeLock.lock();
+        try {
+            Integer docId = getLiveDocIds().remove(name);
+            if (docId == null) {
+                return false;
+            }
+            // A replaced version waiting for this one to be written is now deleted for good
+            Integer replacedOnDisk = pendingReplacements.remove(docId);
+            if (markDeleted(docId) || replacedOnDisk != null) {
+                writeManifestQuietly();
+            }
+            publish();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the map of live document names to ids, building it on first use.
+     * Must be called with the write lock held.
+     */
+    private Map<String, Integer> getLiveDocIds() {
+        if (liveDocIds == null) {
+            liveDocIds = new HashMap<>();
+            for (Segment segment : segments) {
+                for (int index = 0; index < segment.reader.getDocCount(); index++) {
+                    int docId = segment.reader.getDocId(index);
+                    if (!segment.isDeleted(docId)) {
+                        liveDocIds.put(segment.reader.getDocFilename(index), docId);
+                    }
+                }
+            }
+        }
+        return liveDocIds;
+    }
+
+    /**
+     * Marks a document as deleted in its segment and records its word counts
+     * so they no longer count towards frequencies. Must be called with the
+     * write lock held; the change is visible to queries after the next
+     * {@link #publish()}.
+     *
+     * @return true if the document was in a segment on disk
+     */
+    private boolean markDeleted(int docId) {
+        int position = findSegment(segments, docId);
+        Segment segment = segments.get(position);
+        int index = segment.reader.findDoc(docId);
+        if (index < 0 || segment.isDeleted(docId)) {
+            return false;
+        }
+        segments.set(position, segment.withDeleted(docId));
+        segment.reader.forEachDocWord(index, (word, count) -> wordCounts.insert(word, -count));
+        return segment.fileName != null;
+    }
+
+    // Finds the position of the segment whose document id range contains a document
+    private static int findSegment(List<Segment> segments, int docId) {
+        for (int i = segments.size() - 1; i > 0; i--) {
+            if (segments.get(i).baseDocId <= docId) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the in-memory segment to disk, then merges segments if needed.
+     * Runs on the maintenance thread only.
+     */
+    private void flush() {
+        flushQueued.set(false);
+        try {
+            writeLock.lock();
+            try {
+                // Freeze the active segment; new documents go to a fresh one
+                if (memory.getDocCount() > 0) {
+                    int last = segments.size() - 1;
+                    segments.set(last, segments.get(last).withReader(memory.snapshot(), null));
+                    memory = new MemorySegment();
+                    segments.add(new Segment(memory, null, nextDocId, new BitSet(), 0));
+                    publish();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            // Write every frozen segment; they stay searchable in memory meanwhile.
+            // Only this thread changes the segment list, so positions stay valid.
+            List<Segment> published = state.segments;
+            for (int i = 0; i < published.size() - 1; i++) {
+                if (published.get(i).fileName == null) {
+                    Segment written = writeSegment(published.get(i));
+                    writeLock.lock();
+                    try {
+                        // Keep the documents deleted while the segment was written
+                        segments.set(i, segments.get(i).withReader(written.reader, written.fileName));
+                        publish();
+                        writeManifest();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+            }
+            while (mergeOnce()) {
+                // Keep merging until the policy is satisfied
+            }
+        } catch (IOException e) {
+            System.err.println("Error flushing the inverted index");
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // Keep the scheduled task alive
+            System.err.println("Error maintaining the inverted index");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a segment to a new file and maps it.
+     *
+     * @return the segment reading from the file, with the same tombstones
+     */
+    private Segment writeSegment(Segment segment) throws IOException {
+        Files.createDirectories(INDEX_DIR);
+        String fileName = "segment-" + nextGeneration++ + ".seg";
+        IndexSegment.write(INDEX_DIR.resolve(fileName), segment.reader);
+        IndexSegment written = IndexSegment.open(INDEX_DIR.resolve(fileName));
+        written.getCompletionIndex(); // Build completions here rather than on the first keystroke
+        System.out.println("Inverted index: wrote " + fileName + " with " + written.getDocCount() + " documents, "
+                + written.getSizeBytes() + " bytes");
+        return segment.withReader(written, fileName);
+    }
+
+    /**
+     * Merges one run of segments on disk if the merge policy asks for it.
+     * Runs on the maintenance thread only.
+     *
+     * @return true if a merge was done
+     */
+    private boolean mergeOnce() throws IOException {
+        // The published segments and their tombstones do not change while the merge runs
+        List<Segment> published;
+        Set<Integer> awaitingFlush;
+        writeLock.lock();
+        try {
+            published = state.segments;
+            awaitingFlush = new HashSet<>(pendingReplacements.values());
+        } finally {
+            writeLock.unlock();
+        }
+        List<Segment> window = selectMerge(published, awaitingFlush);
+        if (window == null) {
+            return false;
+        }
+
+        // Replaced documents whose replacement is not on disk yet are copied, and stay deleted
+        BitSet[] dropped = new BitSet[window.size()];
+        for (int i = 0; i < window.size(); i++) {
+            dropped[i] = tombstonesExcept(window.get(i), awaitingFlush);
+        }
+
+        // Copy the live documents, then the postings of every term, segment by segment
+        long start = System.nanoTime();
+        MemorySegment merged = new MemorySegment();
+        for (int i = 0; i < window.size(); i++) {
+            SegmentReader reader = window.get(i).reader;
+            int base = window.get(i).baseDocId;
+            BitSet deleted = dropped[i];
+            for (int index = 0; index < reader.getDocCount(); index++) {
+                int docId = reader.getDocId(index);
+                if (deleted.get(docId - base)) {
+                    continue;
+                }
+                List<String> words = new ArrayList<>();
+                List<Integer> counts = new ArrayList<>();
+                reader.forEachDocWord(index, (word, count) -> {
+                    words.add(word);
+                    counts.add(count);
+                });
+                merged.addDocumentWords(docId, reader.getDocFilename(index), words.toArray(new String[0]),
+                        counts.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        for (int i = 0; i < window.size(); i++) {
+            int base = window.get(i).baseDocId;
+            BitSet deleted = dropped[i];
+            window.get(i).reader.forEachTerm(
+                    (term, postings) -> merged.addPostings(term, postings, docId -> !deleted.get(docId - base)));
+        }
+        Segment written = writeSegment(new Segment(merged, null, window.get(0).baseDocId, new BitSet(), 0));
+
+        Segment result;
+        writeLock.lock();
+        try {
+            // Carry over the tombstones of the copied documents, including those deleted while the merge ran
+            int first = published.indexOf(window.get(0));
+            BitSet deleted = new BitSet();
+            int deletedCount = 0;
+            for (int i = 0; i < window.size(); i++) {
+                Segment source = segments.get(first + i);
+                BitSet carried = (BitSet) source.deleted.clone();
+                carried.andNot(dropped[i]);
+                for (int bit = carried.nextSetBit(0); bit >= 0; bit = carried.nextSetBit(bit + 1)) {
+                    deleted.set(source.baseDocId + bit - written.baseDocId);
+                    deletedCount++;
+                }
+            }
+            result = new Segment(written.reader, written.fileName, written.baseDocId, deleted, deletedCount);
+            segments.subList(first, first + window.size()).clear();
+            segments.add(first, result);
+            publish();
+            writeManifest();
+        } finally {
+            writeLock.unlock();
+        }
+
+        // Readers still holding the old segments keep their mappings after the files are gone
+        for (Segment source : window) {
+            Files.deleteIfExists(INDEX_DIR.resolve(source.fileName));
+        }
+        System.out.println("Inverted index: merged " + window.size() + " segments into " + result.fileName + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+
+    /**
+     * Picks the segments to merge next: a single segment with too many
+     * deleted documents, or the run of MERGE_FACTOR adjacent segments on disk
+     * with the smallest total size when there are too many segments. Deleted
+     * documents that a merge would have to keep do not count.
+     *
+     * @param awaitingFlush the replaced documents whose replacement is not on disk yet
+     * @return the segments to merge in order, or null if no merge is needed
+     */
+    private static List<Segment> selectMerge(List<Segment> segments, Set<Integer> awaitingFlush) {
+        int onDisk = 0;
+        for (Segment segment : segments) {
+            if (segment.fileName == null) {
+                continue;
+            }
+            onDisk++;
+            int droppable = awaitingFlush.isEmpty() ? segment.deletedCount
+                    : tombstonesExcept(segment, awaitingFlush).cardinality();
+            if (droppable > segment.reader.getDocCount() * MAX_DELETED_RATIO) {
+                return List.of(segment);
+            }
+        }
+        if (onDisk <= MAX_SEGMENTS) {
+            return null;
+        }
+
+        List<Segment> best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (int first = 0; first + MERGE_FACTOR <= segments.size(); first++) {
+            long size = 0;
+            for (Segment segment : segments.subList(first, first + MERGE_FACTOR)) {
+                if (segment.fileName == null) {
+                    size = Long.MAX_VALUE; // Only segments on disk are merged
+                    break;
+                }
+                size += segment.reader.getSizeBytes();
+            }
+            if (size < bestSize) {
+                bestSize = size;
+                best = new ArrayList<>(segments.subList(first, first + MERGE_FACTOR));
+            }
+        }
+        return best;
+    }
+
+    // A copy of the tombstones of a segment without some documents, which may be in any segment
+    private static BitSet tombstonesExcept(Segment segment, Set<Integer> docIds) {
+        BitSet deleted = (BitSet) segment.deleted.clone();
+        for (int docId : docIds) {
+            if (docId >= segment.baseDocId) {
+                deleted.clear(docId - segment.baseDocId); // Bits past the segment are never set
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes the manifest listing the segment files and their deleted
+     * documents. Must be called with the write lock held. Segments that are
+     * still in memory are not listed, and neither are the tombstones of
+     * documents whose replacement is still in memory. Both the manifest and
+     * the segments are forced to disk before the manifest replaces the old one.
+     */
+    private void writeManifest() throws IOException {
+        Files.createDirectories(INDEX_DIR);
+        Set<Integer> unwritten = new HashSet<>();
+        for (Map.Entry<Integer, Integer> replacement : pendingReplacements.entrySet()) {
+            if (segments.get(findSegment(segments, replacement.getKey())).fileName == null) {
+                unwritten.add(replacement.getValue());
+            }
+        }
+        Path temporary = MANIFEST_PATH.resolveSibling(MANIFEST_PATH.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(sourceFingerprint);
+            out.writeInt(nextDocId);
+            out.writeInt(nextGeneration);
+            List<Segment> onDisk = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.fileName != null) {
+                    onDisk.add(segment);
+                }
+            }
+            out.writeInt(onDisk.size());
+            for (Segment segment : onDisk) {
+                BitSet deleted = unwritten.isEmpty() ? segment.deleted : tombstonesExcept(segment, unwritten);
+                out.writeUTF(segment.fileName);
+                out.writeInt(segment.baseDocId);
+                out.writeInt(deleted.cardinality());
+                for (int bit = deleted.nextSetBit(0); bit >= 0; bit = deleted.nextSetBit(bit + 1)) {
+                    out.writeInt(segment.baseDocId + bit);
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, MANIFEST_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Replacements now on disk were listed with the tombstones of the versions they replaced
+        pendingReplacements.keySet().removeIf(docId -> segments.get(findSegment(segments, docId)).fileName != null);
+    }
+
+    private void writeManifestQuietly() {
+        try {
+            writeManifest();
+        } catch (IOException e) {
+            System.err.println("Error writing inverted index manifest: " + MANIFEST_PATH);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Maps the segments listed in the manifest if it was written for the
+     * current source files.
+     *
+     * @return true if the segments are now answering queries
+     */
+    private boolean loadManifest() {
+        if (!Files.exists(MANIFEST_PATH)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(MANIFEST_PATH)))) {
+            if (in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+                System.out.println("Inverted index manifest has an unknown format; rebuilding");
+                return false;
+            }
+            if (in.readLong() != sourceFingerprint) {
+                System.out.println("Inverted index is out of date; rebuilding");
+                return false;
+            }
+            nextDocId = in.readInt();
+            nextGeneration = in.readInt();
+            int segmentCount = in.readInt();
+            long bytes = 0;
+            int docs = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                String fileName = in.readUTF();
+                IndexSegment reader = IndexSegment.open(INDEX_DIR.resolve(fileName));
+                Segment segment = new Segment(reader, fileName, in.readInt(), new BitSet(), in.readInt());
+                reader.forEachWord(wordCounts::insert);
+                for (int d = 0; d < segment.deletedCount; d++) {
+                    int docId = in.readInt();
+                    segment.deleted.set(docId - segment.baseDocId); // Not published yet
+                    reader.forEachDocWord(reader.findDoc(docId), (word, count) -> wordCounts.insert(word, -count));
+                }
+                segments.add(segment);
+                bytes += reader.getSizeBytes();
+                docs += reader.getDocCount() - segment.deletedCount;
+            }
+            System.out.println("Inverted index: mapped " + segmentCount + " segments, " + docs + " documents, "
+                    + bytes + " bytes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error opening inverted index segments; rebuilding");
+            e.printStackTrace();
+            segments.clear();
+            wordCounts = new AVLTree();
+            return false;
+        }
+    }
+
+    // Removes the segment files and manifest of a previous index
+    private void clearIndexDirectory() {
+        if (!Files.isDirectory(INDEX_DIR)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(INDEX_DIR, "{segment-*,segments.manifest*}")) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error clearing the inverted index directory: " + INDEX_DIR);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes the in-memory segment and stops the maintenance thread.
+     */
+    @PreDestroy
+    public void close() {
+        try {
+            maintenanceExecutor.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } finally {
+            maintenanceExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Gets one page of the occurrences of a word. The cursor records the
+     * last occurrence returned, by document id and position, so it stays
+     * valid while documents are added and segments are merged; occurrences
+     * in documents deleted meanwhile are skipped.
+     *
+     * @param word   the word to search for
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param limit  the maximum number of occurrences to return
+     * @return the occurrences and the cursor to the next page
+     * @throws IllegalArgumentException if the cursor is not one returned by this method
+     */
+    public OccurrencePage searchInvertedIndex(String word, String cursor, int limit) {
+        long after = decodeCursor(cursor);
+        List<Occurrence> occurrences = new ArrayList<>(Math.min(limit, 1024));
+        boolean[] more = new boolean[1];
+        forEachOccurrence(word, (int) (after >> 32), (int) after, (pageIndex, position, filename) -> {
+            if (occurrences.size() == limit) {
+                more[0] = true; // Look one occurrence ahead so the last page has no cursor
+                return false;
+            }
+            return occurrences.add(new Occurrence(pageIndex, position, filename));
+        });
+        String nextCursor = null;
+        if (more[0] && !occurrences.isEmpty()) {
+            Occurrence last = occurrences.get(occurrences.size() - 1);
+            nextCursor = encodeCursor(last.getPageIndex() - 1, last.getPosition());
+        }
+        return new OccurrencePage(occurrences, nextCursor);
+    }
+
+    /**
+     * Streams the occurrences of a word, from a cursor on, to a visitor while
+     * the postings are decoded, without collecting them.
+     *
+     * @param word    the word to search for
+     * @param cursor  a cursor returned with a page, or null to start at the first occurrence
+     * @param visitor receives each occurrence; returns false to stop
+     * @throws IllegalArgumentException if the cursor is not one returned by this service
+     */
+    public void streamOccurrences(String word, String cursor, OccurrenceVisitor visitor) {
+        long after = decodeCursor(cursor);
+        forEachOccurrence(word, (int) (after >> 32), (int) after, visitor);
+    }
+
+    /**
+     * Visits the occurrences of a word after a document and position, in
+     * document then position order, skipping deleted documents.
+     */
+    private void forEachOccurrence(String word, int afterDocId, int afterPosition, OccurrenceVisitor visitor) {
+        for (Segment segment : state.segments) {
+            PostingsList.Cursor postings = segment.reader.search(word).cursor();
+            // Jump to the cursor's document with the skip entries
+            int doc = afterDocId >= 0 ? postings.advance(afterDocId) : postings.nextDoc();
+            for (; doc != PostingsList.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (segment.isDeleted(doc)) {
+                    continue;
+                }
+                String filename = segment.reader.getDocFilename(segment.reader.findDoc(doc));
+                for (int i = 0; i < postings.freq(); i++) {
+                    int position = postings.nextPosition();
+                    if (doc == afterDocId && position <= afterPosition) {
+                        continue;
+                    }
+                    // Page indexes are 1-based in responses
+                    if (!visitor.visit(doc + 1, position, filename)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Encodes a document id and position as an opaque, URL-safe cursor
+    private static String encodeCursor(int docId, int position) {
+        ByteBuffer bytes = ByteBuffer.allocate(9);
+        bytes.put(CURSOR_VERSION).putInt(docId).putInt(position);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    // Decodes a cursor into docId << 32 | position; null starts before the first occurrence
+    private static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return -1L;
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (bytes.remaining() == 9 && bytes.get() == CURSOR_VERSION) {
+                int docId = bytes.getInt();
+                int position = bytes.getInt();
+                if (docId >= 0 && position >= 0) {
+                    return (long) docId << 32 | position;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64; reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Evaluates a boolean query with phrases over all segments, for example
+     * {@code "streaming service" AND (netflix OR hulu) NOT "free trial"~2}.
+     * See {@link QueryParser} for the syntax. Every matching document is
+     * reported with the positions of the words and phrases that matched in it,
+     * one page at a time with the same cursors as {@link #searchInvertedIndex}.
+     * All matching documents are counted, but only the positions of the
+     * documents on the page are collected.
+     *
+     * @param queryText the query to evaluate
+     * @param cursor    the cursor of the previous page, or null for the first page
+     * @param limit     the maximum number of occurrences to return
+     * @return the occurrences, by document then position, the cursor to the next page and the number of documents
+     * @throws IllegalArgumentException if the query cannot be parsed or the cursor is not one returned by this service
+     */
+    public QueryPage searchQuery(String queryText, String cursor, int limit) {
+        long after = decodeCursor(cursor);
+        int afterDocId = (int) (after >> 32);
+        int afterPosition = (int) after;
+        Query query = QueryParser.parse(queryText, InvertedIndexService::tokenize);
+        List<Occurrence> occurrences = new ArrayList<>(Math.min(limit, 1024));
+        boolean more = false;
+        int documents = 0;
+        for (Segment segment : state.segments) {
+            Query.Matcher matcher = query.matcher(segment.reader);
+            for (int doc = matcher.nextDoc(); doc != PostingsList.NO_MORE_DOCS; doc = matcher.nextDoc()) {
+                if (segment.isDeleted(doc)) {
+                    continue;
+                }
+                documents++;
+                if (doc < afterDocId || more) {
+                    continue; // Only counted; the postings skip the unread positions
+                }
+                String filename = segment.reader.getDocFilename(segment.reader.findDoc(doc));
+                IntStream.Builder positions = IntStream.builder();
+                matcher.collectPositions(positions);
+                int pageIndex = doc + 1; // Page indexes are 1-based in responses
+                for (int position : positions.build().sorted().distinct().toArray()) {
+                    if (doc == afterDocId && position <= afterPosition) {
+                        continue;
+                    }
+                    if (occurrences.size() == limit) {
+                        more = true; // Look one occurrence ahead so the last page has no cursor
+                        break;
+                    }
+                    occurrences.add(new Occurrence(pageIndex, position, filename));
+                }
+            }
+        }
+        String nextCursor = null;
+        if (more && !occurrences.isEmpty()) {
+            Occurrence last = occurrences.get(occurrences.size() - 1);
+            nextCursor = encodeCursor(last.getPageIndex() - 1, last.getPosition());
+        }
+        return new QueryPage(occurrences, nextCursor, documents);
+    }
+
+    /**
+     * Completes a prefix such as {@code stream*}, or matches a wildcard
+     * pattern such as {@code str?am*} or {@code *ing}, with the most frequent
+     * indexed words. Each segment on disk answers from the top completions
+     * cached in its trie nodes, and the in-memory segment from its word counts,
+     * so no write makes the next keystroke rebuild anything. The candidates are
+     * ranked by their frequency over the live documents. A word that is not
+     * among the top completions of any single segment can therefore be missed.
+     *
+     * @param pattern the prefix, with or without a trailing '*', or a wildcard pattern
+     * @param limit   the maximum number of words to return, at most {@link #MAX_COMPLETIONS}
+     * @return the words with their frequencies, most frequent first
+     */
+    public List<Map<String, Object>> getCompletions(String pattern, int limit) {
+        String normalized = CompletionIndex.normalizePattern(pattern);
+        if (normalized.isEmpty() || normalized.equals("*")) {
+            throw new IllegalArgumentException("Pattern needs at least one letter or digit");
+        }
+        if (normalized.indexOf('*') < 0 && normalized.indexOf('?') < 0) {
+            normalized += "*"; // A bare word is a prefix
+        }
+        IndexState current = state;
+        Set<String> candidates = new HashSet<>();
+        for (Segment segment : current.segments) {
+            segment.reader.forEachCompletion(normalized, limit, candidates::add);
+        }
+        // Rank by frequency over the live documents; words left only in deleted documents drop out
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String candidate : candidates) {
+            int frequency = current.wordCounts.getFrequency(candidate);
+            if (frequency > 0) {
+                frequencies.put(candidate, frequency);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(frequencies.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("word", entry.getKey());
+            result.put("frequency", entry.getValue());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the frequency of a word over the live documents.
      *
      * @param word the word whose frequency is to be retrieved
      * @return the frequency of the word
      */
     public int getFrequency(String word) {
-        return avlTree.getFrequency(word);
+        return state.wordCounts.getFrequency(word);
+    }
+
+    /**
+     * Gets the most frequent words over the live documents, found best first
+     * in the word counts without visiting the whole vocabulary.
+     *
+     * @param limit the maximum number of words to return
+     * @return the words with their frequencies, most frequent first
+     */
+    public List<Map<String, Object>> getMostFrequentWords(int limit) {
+        List<Map<String, Object>> words = new ArrayList<>();
+        state.wordCounts.forEachMostFrequent(limit, (word, frequency) -> words.add(wordEntry(word, frequency)));
+        return words;
+    }
+
+    /**
+     * Visits the words over the live documents in ascending order, keeping
+     * only the most frequent ones if there are more than a limit. A vocabulary
+     * within the limit is read in order from the word counts, without sorting.
+     *
+     * @param limit   the maximum number of words to visit
+     * @param visitor receives each word and its frequency
+     */
+    public void forEachWord(int limit, ObjIntConsumer<String> visitor) {
+        AVLTree counts = state.wordCounts;
+        if (counts.size() <= limit) {
+            counts.forEach(visitor);
+            return;
+        }
+        TreeMap<String, Integer> mostFrequent = new TreeMap<>();
+        counts.forEachMostFrequent(limit, mostFrequent::put);
+        mostFrequent.forEach(visitor::accept);
+    }
+
+    /**
+     * Describes the words from one word (inclusive) to another (exclusive):
+     * how many there are, their total frequency and the first few of them.
+     * The counts are read from subtree sums, so they cost O(log n) however
+     * wide the range is.
+     *
+     * @param from  the lowest word of the range
+     * @param to    the word the range ends before
+     * @param limit the maximum number of words to list
+     * @return the number of words, their total frequency and the listed words
+     */
+    public Map<String, Object> getWordRange(String from, String to, int limit) {
+        AVLTree counts = state.wordCounts; // Count and list from the same version
+        Map<String, Object> range = new LinkedHashMap<>();
+        range.put("from", from);
+        range.put("to", to);
+        range.put("words", counts.countRange(from, to));
+        range.put("frequency", counts.getRangeFrequency(from, to));
+        List<Map<String, Object>> listed = new ArrayList<>();
+        if (from.compareTo(to) < 0 && limit > 0) {
+            int first = counts.rank(from);
+            int end = Math.min(counts.rank(to), first + limit);
+            for (int rank = first; rank < end; rank++) {
+                String word = counts.select(rank);
+                listed.add(wordEntry(word, counts.getFrequency(word)));
+            }
+        }
+        range.put("list", listed);
+        return range;
+    }
+
+    /**
+     * Gets the position of a word in the sorted vocabulary.
+     *
+     * @param word the word, which does not need to be indexed
+     * @return the number of smaller words, the frequency of the word and the vocabulary size
+     */
+    public Map<String, Object> getWordRank(String word) {
+        AVLTree counts = state.wordCounts;
+        Map<String, Object> rank = new LinkedHashMap<>();
+        rank.put("word", word);
+        rank.put("rank", counts.rank(word));
+        rank.put("frequency", counts.getFrequency(word));
+        rank.put("vocabularySize", counts.size());
+        return rank;
+    }
+
+    /**
+     * Gets the word at a position in the sorted vocabulary.
+     *
+     * @param rank the 0-based position
+     * @return the word and its frequency
+     * @throws IllegalArgumentException if the rank is outside the vocabulary
+     */
+    public Map<String, Object> getWordAtRank(int rank) {
+        AVLTree counts = state.wordCounts;
+        if (rank < 0 || rank >= counts.size()) {
+            throw new IllegalArgumentException("Rank must be between 0 and " + (counts.size() - 1));
+        }
+        String word = counts.select(rank);
+        Map<String, Object> entry = wordEntry(word, counts.getFrequency(word));
+        entry.put("rank", rank);
+        return entry;
+    }
+
+    private static Map<String, Object> wordEntry(String word, int frequency) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("word", word);
+        entry.put("frequency", frequency);
+        return entry;
+    }
+
+    /**
+     * Describes the current segments, for monitoring flushes and merges.
+     *
+     * @return one entry per segment with its file, document counts and size
+     */
+    public List<Map<String, Object>> getSegmentStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Segment segment : state.segments) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("file", segment.fileName != null ? segment.fileName : "(memory)");
+            entry.put("documents", segment.reader.getDocCount());
+            entry.put("deleted", segment.deletedCount);
+            entry.put("bytes", segment.reader.getSizeBytes());
+            stats.add(entry);
+        }
+        return stats;
     }
 }
@@ -0,0 +1,277 @@
+package com.example.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sparse directed link graph stored in compressed sparse row (CSR) form.
+ * Nodes are dense int ids. Incoming edges of node v are the sources
+ * {@code inSources[inOffsets[v] .. inOffsets[v + 1])}, and the out-degree of
+ * every node is kept separately, so the graph uses 4 bytes per edge plus
+ * 8 bytes per node and no boxed objects.
+ *
+ * PageRank is computed by damped power iteration in "pull" form: every node
+ * sums the contributions of its in-neighbours, so the nodes can be split into
+ * ranges and updated in parallel on a fork-join pool without any locking.
+ */
+public final class LinkGraph {
+
+    // Node ranges at or below this size are processed without further splitting
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private final int nodeCount;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] outDegrees;
+
+    /**
+     * Result of a PageRank computation, including the statistics needed to
+     * size the computation for larger graphs.
+     */
+    public static final class PageRankResult {
+        private final double[] ranks;
+        private final int iterations;
+        private final boolean converged;
+        private final double residual;
+        private final long elapsedNanos;
+        private final long nodeCount;
+        private final long edgeCount;
+        private final long memoryBytes;
+
+        PageRankResult(double[] ranks, int iterations, boolean converged, double residual, long elapsedNanos,
+                long nodeCount, long edgeCount, long memoryBytes) {
+            this.ranks = ranks;
+            this.iterations = iterations;
+            this.converged = converged;
+            this.residual = residual;
+            this.elapsedNanos = elapsedNanos;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+            this.memoryBytes = memoryBytes;
+        }
+
+        /**
+         * Gets the PageRank of a node. Ranks of all nodes sum to 1.
+         *
+         * @param node The node id
+         * @return The PageRank of the node
+         */
+        public double getRank(int node) {
+            return ranks[node];
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public boolean isConverged() {
+            return converged;
+        }
+
+        /**
+         * Gets the L1 distance between the last two iterations.
+         *
+         * @return The final residual
+         */
+        public double getResidual() {
+            return residual;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public long getNodeCount() {
+            return nodeCount;
+        }
+
+        public long getEdgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * Gets the memory used by the graph and the rank vectors.
+         *
+         * @return The memory in bytes
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        /**
+         * Gets the memory used per million edges, for sizing larger graphs.
+         *
+         * @return The bytes per million edges, or 0 for a graph without edges
+         */
+        public long getBytesPerMillionEdges() {
+            return edgeCount == 0 ? 0 : memoryBytes * 1_000_000L / edgeCount;
+        }
+
+        /**
+         * Gets the convergence time per million edges, for sizing larger graphs.
+         *
+         * @return The milliseconds per million edges, or 0 for a graph without edges
+         */
+        public double getMillisPerMillionEdges() {
+            return edgeCount == 0 ? 0 : elapsedNanos / 1e6 * 1_000_000.0 / edgeCount;
+        }
+    }
+
+    private LinkGraph(int nodeCount, int[] inOffsets, int[] inSources, int[] outDegrees) {
+        this.nodeCount = nodeCount;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.outDegrees = outDegrees;
+    }
+
+    /**
+     * Builds a graph from an edge list given as two parallel arrays. Duplicate
+     * edges and self-loops are removed.
+     *
+     * @param nodeCount The number of nodes
+     * @param sources   The source node of each edge
+     * @param targets   The target node of each edge
+     * @param edgeCount The number of edges in the arrays
+     * @return The graph in CSR form
+     */
+    public static LinkGraph fromEdges(int nodeCount, int[] sources, int[] targets, int edgeCount) {
+        // Sort the edges by (target, source) using packed longs, then drop duplicates
+        long[] packed = new long[edgeCount];
+        int kept = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (sources[e] != targets[e]) {
+                packed[kept++] = ((long) targets[e] << 32) | (sources[e] & 0xffffffffL);
+            }
+        }
+        Arrays.sort(packed, 0, kept);
+
+        int[] inOffsets = new int[nodeCount + 1];
+        int[] inSources = new int[kept];
+        int[] outDegrees = new int[nodeCount];
+        int edges = 0;
+        for (int e = 0; e < kept; e++) {
+            if (e > 0 && packed[e] == packed[e - 1]) {
+                continue;
+            }
+            int target = (int) (packed[e] >>> 32);
+            int source = (int) packed[e];
+            inSources[edges++] = source;
+            inOffsets[target + 1]++;
+            outDegrees[source]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        return new LinkGraph(nodeCount, inOffsets, Arrays.copyOf(inSources, edges), outDegrees);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return inSources.length;
+    }
+
+    /**
+     * Gets the memory used by the CSR arrays.
+     *
+     * @return The memory in bytes
+     */
+    public long getMemoryBytes() {
+        return 4L * (inOffsets.length + inSources.length + outDegrees.length);
+    }
+
+    /**
+     * Computes PageRank by damped power iteration on the given fork-join pool.
+     * Rank held by nodes without outlinks is spread evenly over all nodes.
+     *
+     * @param damping       The damping factor, usually 0.85
+     * @param tolerance     The L1 distance between iterations at which to stop
+     * @param maxIterations The maximum number of iterations
+     * @param pool          The pool to run the iterations on
+     * @return The ranks together with convergence statistics
+     */
+    public PageRankResult pageRank(double damping, double tolerance, int maxIterations, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        double[] ranks = new double[nodeCount];
+        double[] next = new double[nodeCount];
+        // Rank divided by out-degree, so the inner loop is a plain sum
+        double[] contributions = new double[nodeCount];
+        Arrays.fill(ranks, nodeCount == 0 ? 0 : 1.0 / nodeCount);
+
+        int iterations = 0;
+        double residual = Double.MAX_VALUE;
+        while (nodeCount > 0 && iterations < maxIterations && residual > tolerance) {
+            double danglingRank = 0;
+            for (int v = 0; v < nodeCount; v++) {
+                if (outDegrees[v] == 0) {
+                    danglingRank += ranks[v];
+                    contributions[v] = 0;
+                } else {
+                    contributions[v] = ranks[v] / outDegrees[v];
+                }
+            }
+            double base = (1 - damping) / nodeCount + damping * danglingRank / nodeCount;
+
+            residual = pool.invoke(new IterationTask(ranks, next, contributions, damping, base, 0, nodeCount));
+            double[] swap = ranks;
+            ranks = next;
+            next = swap;
+            iterations++;
+        }
+
+        long memoryBytes = getMemoryBytes() + 3L * Double.BYTES * nodeCount;
+        return new PageRankResult(ranks, iterations, residual <= tolerance, nodeCount == 0 ? 0 : residual,
+                System.nanoTime() - start, nodeCount, getEdgeCount(), memoryBytes);
+    }
+
+    /**
+     * Computes one iteration for a range of nodes and returns the L1 change
+     * of that range.
+     */
+    private final class IterationTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] ranks;
+        private final double[] next;
+        private final double[] contributions;
+        private final double damping;
+        private final double base;
+        private final int from;
+        private final int to;
+
+        IterationTask(double[] ranks, double[] next, double[] contributions, double damping, double base,
+                int from, int to) {
+            this.ranks = ranks;
+            this.next = next;
+            this.contributions = contributions;
+            this.damping = damping;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                double change = 0;
+                for (int v = from; v < to; v++) {
+                    double sum = 0;
+                    for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+                        sum += contributions[inSources[e]];
+                    }
+                    next[v] = base + damping * sum;
+                    change += Math.abs(next[v] - ranks[v]);
+                }
+                return change;
+            }
+            int middle = (from + to) >>> 1;
+            IterationTask left = new IterationTask(ranks, next, contributions, damping, base, from, middle);
+            left.fork();
+            double right = new IterationTask(ranks, next, contributions, damping, base, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.stereotype.Service;
+
+import com.example.model.LinkGraph;
+import com.example.model.PageCorpus;
+
+/**
+ * Service that computes link authority (PageRank) for the crawled pages.
+ * The link graph is built from the outlinks stored in the page corpus plus
+ * any links recorded by the web crawler at runtime. Pages of the corpus keep
+ * their document id as node id, other linked URLs are appended after them.
+ */
+@Service
+public class LinkGraphService {
+
+    private static final double DAMPING = 0.85;
+    private static final double TOLERANCE = 1e-9;
+    private static final int MAX_ITERATIONS = 100;
+
+    private final PageCorpusService pageCorpusService;
+
+    // Links recorded by the crawler at runtime: page URL -> linked URLs
+    private final Map<String, List<String>> crawledLinks = new ConcurrentHashMap<>();
+
+    // Set when crawled links changed since the last computation
+    private final AtomicBoolean crawledLinksChanged = new AtomicBoolean();
+
+    // Recomputes the ranks in the background after new links were crawled
+    private final ExecutorService recomputeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "link-graph-recompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Most recent computation
+    private volatile Authority authority;
+
+    /**
+     * Link authority of the pages of one corpus snapshot.
+     */
+    public static final class Authority {
+        private final PageCorpus corpus;
+        private final double[] priors;
+        private final LinkGraph.PageRankResult result;
+
+        Authority(PageCorpus corpus, double[] priors, LinkGraph.PageRankResult result) {
+            this.corpus = corpus;
+            this.priors = priors;
+            this.result = result;
+        }
+
+        /**
+         * Gets the corpus snapshot whose document ids index {@link #getPriors()}.
+         *
+         * @return the corpus snapshot
+         */
+        public PageCorpus getCorpus() {
+            return corpus;
+        }
+
+        /**
+         * Gets the authority of each page, scaled so that a page with average
+         * PageRank scores log(2) and a page without rank scores 0.
+         *
+         * @return the authority prior of each page, indexed by document id
+         */
+        public double[] getPriors() {
+            return priors;
+        }
+
+        /**
+         * Gets the PageRank computation with its convergence and memory statistics.
+         *
+         * @return the PageRank result
+         */
+        public LinkGraph.PageRankResult getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Constructor for injecting the PageCorpusService dependency.
+     *
+     * @param pageCorpusService the service providing the page corpus
+     */
+    public LinkGraphService(PageCorpusService pageCorpusService) {
+        this.pageCorpusService = pageCorpusService;
+    }
+
+    /**
+     * Records the links found on a crawled page. The ranks are recomputed in
+     * the background; until then the previous ranks stay in use.
+     *
+     * @param pageUrl the URL of the crawled page
+     * @param links   the absolute URLs linked from the page
+     */
+    public void recordOutlinks(String pageUrl, List<String> links) {
+        crawledLinks.put(normalizeUrl(pageUrl), List.copyOf(links));
+        crawledLinksChanged.set(true);
+        if (authority != null) {
+            recomputeExecutor.execute(() -> {
+                try {
+                    compute(pageCorpusService.getCorpus());
+                } catch (Exception e) {
+                    System.err.println("Error recomputing link authority");
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the link authority for the current corpus snapshot, computing it
+     * first if the snapshot changed.
+     *
+     * @return the link authority of the current corpus
+     */
+    public Authority getAuthority() {
+        PageCorpus corpus = pageCorpusService.getCorpus();
+        Authority current = authority;
+        if (current != null && current.getCorpus() == corpus) {
+            return current;
+        }
+        return compute(corpus);
+    }
+
+    /**
+     * Builds the graph and runs PageRank, unless an up-to-date result for the
+     * snapshot was published while waiting for the lock.
+     */
+    private synchronized Authority compute(PageCorpus corpus) {
+        Authority current = authority;
+        if (current != null && current.getCorpus() == corpus && !crawledLinksChanged.get()) {
+            return current;
+        }
+        crawledLinksChanged.set(false);
+
+        // Pages of the corpus keep their document id as node id
+        NodeIds nodeIds = new NodeIds(corpus.size());
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            nodeIds.ids.putIfAbsent(normalizeUrl(corpus.getTitle(doc)), doc);
+        }
+
+        EdgeList edges = new EdgeList();
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            for (String link : corpus.getOutlinks(doc)) {
+                edges.add(doc, nodeIds.get(link));
+            }
+        }
+        for (Map.Entry<String, List<String>> page : crawledLinks.entrySet()) {
+            int source = nodeIds.get(page.getKey());
+            for (String link : page.getValue()) {
+                edges.add(source, nodeIds.get(link));
+            }
+        }
+
+        int nodeCount = nodeIds.next;
+        LinkGraph graph = LinkGraph.fromEdges(nodeCount, edges.sources, edges.targets, edges.size);
+        LinkGraph.PageRankResult result = graph.pageRank(DAMPING, TOLERANCE, MAX_ITERATIONS, ForkJoinPool.commonPool());
+
+        double[] priors = new double[corpus.size()];
+        for (int doc = 0; doc < priors.length; doc++) {
+            priors[doc] = Math.log1p(result.getRank(doc) * nodeCount);
+        }
+
+        current = new Authority(corpus, priors, result);
+        authority = current;
+        return current;
+    }
+
+    // Drops the fragment and trailing slashes so equivalent URLs share a node
+    private static String normalizeUrl(String url) {
+        int fragment = url.indexOf('#');
+        String normalized = fragment >= 0 ? url.substring(0, fragment) : url;
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    /**
+     * Dictionary from normalized URL to node id. URLs that are not pages of
+     * the corpus get ids after the last document id.
+     */
+    private static final class NodeIds {
+        final Map<String, Integer> ids = new HashMap<>();
+        int next;
+
+        NodeIds(int firstFreeId) {
+            this.next = firstFreeId;
+        }
+
+        int get(String url) {
+            return ids.computeIfAbsent(normalizeUrl(url), u -> next++);
+        }
+    }
+
+    /**
+     * Growable edge list backed by two int arrays.
+     */
+    private static final class EdgeList {
+        int[] sources = new int[64];
+        int[] targets = new int[64];
+        int size;
+
+        void add(int source, int target) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Zero-copy reader for UTF-8 CSV files following RFC 4180. The file is
+ * memory-mapped through a {@link FileChannel} in windows of at most
+ * {@link #WINDOW_SIZE} bytes, so files larger than 2 GB can be read, and
+ * every record is handed to a {@link RowHandler} as a {@link Row} of field
+ * slices (offset and length into the mapped buffer). No String is created
+ * unless the handler asks for one.
+ *
+ * Quoted fields may contain commas, line breaks and doubled quotes. Records
+ * end with LF or CRLF. The delimiter, quote and line break characters are
+ * ASCII, so they can be found byte by byte without decoding UTF-8.
+ */
+public final class MappedCsvReader {
+
+    // Maximum number of bytes mapped at once
+    static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    /**
+     * Receives the records of a CSV file one at a time.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Handles one record. The row and its buffer are only valid during the call.
+         *
+         * @param row the record
+         * @return true to continue reading, false to stop
+         */
+        boolean onRow(Row row);
+    }
+
+    /**
+     * One record of the file, exposed as slices of the mapped buffer.
+     * The same instance is reused for every record.
+     */
+    public static final class Row {
+        private ByteBuffer buffer;
+        private int[] fieldStarts = new int[16];
+        private int[] fieldEnds = new int[16];
+        private boolean[] fieldQuoted = new boolean[16];
+        private boolean[] fieldEscaped = new boolean[16];
+        private int fieldCount;
+        private int recordEnd;
+
+        /**
+         * Gets the buffer the field offsets refer to.
+         *
+         * @return the mapped buffer holding the record
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        /**
+         * Gets the offset of a field's content in the buffer, after the
+         * opening quote for quoted fields.
+         *
+         * @param field the field index
+         * @return the offset of the field's first byte
+         */
+        public int getFieldOffset(int field) {
+            return fieldStarts[field];
+        }
+
+        /**
+         * Gets the length in bytes of a field's content, without quotes.
+         *
+         * @param field the field index
+         * @return the length of the field in bytes
+         */
+        public int getFieldLength(int field) {
+            return fieldEnds[field] - fieldStarts[field];
+        }
+
+        public boolean isQuoted(int field) {
+            return fieldQuoted[field];
+        }
+
+        /**
+         * Decodes a field into a String, removing the quotes and undoubling
+         * escaped quotes.
+         *
+         * @param field the field index
+         * @return the value of the field
+         */
+        public String getString(int field) {
+            String value = decode(fieldStarts[field], fieldEnds[field]);
+            return fieldEscaped[field] ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Decodes the raw text of the record from the start of a field to the
+         * end of the record, including delimiters and quotes but not the line
+         * break.
+         *
+         * @param field the index of the first field to include
+         * @return the raw remainder of the record
+         */
+        public String getRawFrom(int field) {
+            int start = fieldQuoted[field] ? fieldStarts[field] - 1 : fieldStarts[field];
+            return decode(start, recordEnd);
+        }
+
+        /**
+         * Tells whether the raw text of the record from the start of a field
+         * contains an ASCII marker, without decoding the record.
+         *
+         * @param field  the index of the first field to search
+         * @param marker the ASCII bytes to look for
+         * @return true if the marker occurs in the remainder of the record
+         */
+        public boolean rawContains(int field, byte[] marker) {
+            int start = fieldQuoted[field] ? fieldStarts[field] - 1 : fieldStarts[field];
+            int last = recordEnd - marker.length;
+            for (int i = start; i <= last; i++) {
+                int j = 0;
+                while (j < marker.length && buffer.get(i + j) == marker[j]) {
+                    j++;
+                }
+                if (j == marker.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String decode(int start, int end) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void addField(int start, int end, boolean quoted, boolean escaped) {
+            if (fieldCount == fieldStarts.length) {
+                int capacity = fieldCount * 2;
+                fieldStarts = Arrays.copyOf(fieldStarts, capacity);
+                fieldEnds = Arrays.copyOf(fieldEnds, capacity);
+                fieldQuoted = Arrays.copyOf(fieldQuoted, capacity);
+                fieldEscaped = Arrays.copyOf(fieldEscaped, capacity);
+            }
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            fieldQuoted[fieldCount] = quoted;
+            fieldEscaped[fieldCount] = escaped;
+            fieldCount++;
+        }
+    }
+
+    private MappedCsvReader() {
+    }
+
+    /**
+     * Reads every record of a CSV file.
+     *
+     * @param path    the file to read
+     * @param handler receives the records in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static void read(Path path, RowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            int windowSize = WINDOW_SIZE;
+            Row row = new Row();
+
+            while (windowStart < size) {
+                int length = (int) Math.min(windowSize, size - windowStart);
+                boolean lastWindow = windowStart + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                row.buffer = buffer;
+
+                int position = 0;
+                while (position < length) {
+                    int next = parseRecord(buffer, position, length, lastWindow, row);
+                    if (next < 0) {
+                        break; // The record continues past the window
+                    }
+                    if (!handler.onRow(row)) {
+                        return;
+                    }
+                    position = next;
+                }
+
+                if (position == 0 && !lastWindow) {
+                    // A single record is larger than the window; map a bigger one
+                    if (windowSize > Integer.MAX_VALUE / 2) {
+                        throw new IOException("CSV record larger than 1 GB at offset " + windowStart);
+                    }
+                    windowSize *= 2;
+                } else {
+                    windowStart += position;
+                    windowSize = WINDOW_SIZE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the record starting at a position into the row.
+     *
+     * @return the position after the record's line break, or -1 if the record
+     *         is cut off by the end of a window that is not the last one
+     */
+    private static int parseRecord(ByteBuffer buffer, int start, int limit, boolean lastWindow, Row row) {
+        row.fieldCount = 0;
+        int position = start;
+        while (true) {
+            int fieldStart;
+            int fieldEnd;
+            boolean quoted = position < limit && buffer.get(position) == QUOTE;
+            boolean escaped = false;
+
+            if (quoted) {
+                fieldStart = ++position;
+                while (true) {
+                    if (position >= limit) {
+                        if (!lastWindow) {
+                            return -1;
+                        }
+                        fieldEnd = limit; // Unterminated quote at end of file
+                        break;
+                    }
+                    if (buffer.get(position) == QUOTE) {
+                        if (position + 1 < limit && buffer.get(position + 1) == QUOTE) {
+                            escaped = true;
+                            position += 2;
+                            continue;
+                        }
+                        if (position + 1 >= limit && !lastWindow) {
+                            return -1; // Cannot tell a closing quote from an escaped one yet
+                        }
+                        fieldEnd = position++;
+                        break;
+                    }
+                    position++;
+                }
+                // Tolerate stray characters between the closing quote and the delimiter
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+            } else {
+                fieldStart = position;
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+                fieldEnd = position;
+            }
+            row.addField(fieldStart, fieldEnd, quoted, escaped);
+
+            if (position >= limit) {
+                if (!lastWindow) {
+                    return -1;
+                }
+                row.recordEnd = limit;
+                return limit;
+            }
+            byte delimiter = buffer.get(position);
+            if (delimiter == COMMA) {
+                position++;
+                continue;
+            }
+            row.recordEnd = position;
+            if (delimiter == CR) {
+                if (position + 1 >= limit && !lastWindow) {
+                    return -1;
+                }
+                position++;
+                if (position < limit && buffer.get(position) == LF) {
+                    position++;
+                }
+                return position;
+            }
+            return position + 1; // LF
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == COMMA || b == LF || b == CR;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Mutable in-memory segment of the inverted index. Documents are appended in
+ * ascending document id order: their terms go into a {@link Trie}, their word
+ * counts into an {@link AVLTree}, and the per-document word counts are kept so
+ * that deletions and merges can adjust frequencies later.
+ *
+ * A memory segment is written by one thread at a time. Other threads read
+ * it through {@link #snapshot() snapshots}, which see the documents added
+ * before the snapshot was taken and are never blocked by the writer.
+ */
+public class MemorySegment implements SegmentReader {
+
+    private final Trie trie;
+    private final AVLTree words;
+    private final boolean readOnly;
+
+    // Document table, indexed by local index. Entries are only appended and
+    // the arrays grow into copies, so snapshots can share them.
+    private int[] docIds = new int[16];
+    private String[] filenames = new String[16];
+    private String[][] docWords = new String[16][];
+    private int[][] docWordCounts = new int[16][];
+    private int docCount;
+
+    // Rough size of the document table and word counts
+    private long docBytes;
+
+    /**
+     * Constructor for an empty, writable segment.
+     */
+    public MemorySegment() {
+        trie = new Trie();
+        words = new AVLTree();
+        readOnly = false;
+    }
+
+    /**
+     * Constructor for a read-only snapshot of a segment.
+     */
+    private MemorySegment(MemorySegment source) {
+        trie = source.trie.snapshot();
+        words = source.words.snapshot();
+        readOnly = true;
+        docIds = source.docIds;
+        filenames = source.filenames;
+        docWords = source.docWords;
+        docWordCounts = source.docWordCounts;
+        docCount = source.docCount;
+        docBytes = source.docBytes;
+    }
+
+    /**
+     * Takes an immutable snapshot of the segment that can be read from any
+     * thread while this segment keeps receiving documents. Must be called by
+     * the writer. The cost depends on what changed since the previous
+     * snapshot, not on the size of the segment.
+     *
+     * @return A read-only segment with the documents added so far
+     */
+    public MemorySegment snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        return new MemorySegment(this);
+    }
+
+    /**
+     * Adds a document, indexing every word at its position in the array.
+     * Empty words are skipped but keep their position.
+     *
+     * @param docId    The global document id, greater than any added before
+     * @param filename The name of the document
+     * @param words    The lowercased words of the document in text order
+     */
+    public void addDocument(int docId, String filename, String[] words) {
+        Map<String, int[]> counts = new HashMap<>();
+        for (String word : words) {
+            if (!word.isEmpty()) { // Ignore empty words
+                counts.computeIfAbsent(word, w -> new int[1])[0]++;
+            }
+        }
+        String[] distinctWords = counts.keySet().toArray(new String[0]);
+        Arrays.sort(distinctWords);
+        int[] wordCounts = new int[distinctWords.length];
+        for (int i = 0; i < distinctWords.length; i++) {
+            wordCounts[i] = counts.get(distinctWords[i])[0];
+        }
+
+        addDocumentWords(docId, filename, distinctWords, wordCounts);
+        trie.insertDocument(docId, words);
+    }
+
+    /**
+     * Adds a document's entry and word counts without indexing any terms. Used
+     * when merging segments, together with {@link #addPostings}.
+     *
+     * @param docId      The global document id, greater than any added before
+     * @param filename   The name of the document
+     * @param words      The distinct words of the document
+     * @param wordCounts The number of occurrences of each word
+     */
+    public void addDocumentWords(int docId, String filename, String[] words, int[] wordCounts) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Memory segment snapshots are read-only");
+        }
+        if (docCount > 0 && docId <= docIds[docCount - 1]) {
+            throw new IllegalArgumentException("Document " + docId + " added after " + docIds[docCount - 1]);
+        }
+        if (docCount == docIds.length) {
+            docIds = Arrays.copyOf(docIds, docCount * 2);
+            filenames = Arrays.copyOf(filenames, docCount * 2);
+            docWords = Arrays.copyOf(docWords, docCount * 2);
+            docWordCounts = Arrays.copyOf(docWordCounts, docCount * 2);
+        }
+        docIds[docCount] = docId;
+        filenames[docCount] = filename;
+        docWords[docCount] = words;
+        docWordCounts[docCount] = wordCounts;
+        docCount++;
+        for (int i = 0; i < words.length; i++) {
+            this.words.insert(words[i], wordCounts[i]);
+        }
+        docBytes += 64 + 2L * filename.length() + 12L * words.length;
+    }
+
+    /**
+     * Appends the postings of a term from another segment, keeping only the
+     * documents that pass a filter.
+     *
+     * @param term     The normalized term
+     * @param postings The postings to copy
+     * @param keep     Tells whether a document id is copied
+     */
+    public void addPostings(String term, PostingsList postings, IntPredicate keep) {
+        trie.addPostings(term, postings, keep);
+    }
+
+    /**
+     * Appends all documents of another memory segment, whose document ids
+     * must all be greater than the ones in this segment.
+     *
+     * @param other The segment to append
+     */
+    public void addAll(MemorySegment other) {
+        for (int index = 0; index < other.getDocCount(); index++) {
+            addDocumentWords(other.docIds[index], other.filenames[index], other.docWords[index],
+                    other.docWordCounts[index]);
+        }
+        trie.addAll(other.trie);
+    }
+
+    /**
+     * Gets the Trie holding the terms of this segment.
+     *
+     * @return The Trie
+     */
+    public Trie getTrie() {
+        return trie;
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount;
+    }
+
+    @Override
+    public int getDocId(int index) {
+        return docIds[index];
+    }
+
+    @Override
+    public String getDocFilename(int index) {
+        return filenames[index];
+    }
+
+    @Override
+    public int findDoc(int docId) {
+        int index = Arrays.binarySearch(docIds, 0, docCount, docId);
+        return index >= 0 ? index : -1;
+    }
+
+    @Override
+    public PostingsList search(String word) {
+        return trie.search(word);
+    }
+
+    @Override
+    public void forEachDocWord(int index, ObjIntConsumer<String> visitor) {
+        String[] wordsOfDoc = docWords[index];
+        int[] counts = docWordCounts[index];
+        for (int i = 0; i < wordsOfDoc.length; i++) {
+            visitor.accept(wordsOfDoc[i], counts[i]);
+        }
+    }
+
+    @Override
+    public void forEachTerm(BiConsumer<String, PostingsList> visitor) {
+        trie.forEachTerm(visitor);
+    }
+
+    @Override
+    public void forEachWord(ObjIntConsumer<String> visitor) {
+        words.forEach(visitor);
+    }
+
+    /**
+     * Finds completions in the word counts instead of a completion index,
+     * since the segment changes with every document and a new snapshot would
+     * need a new index. A prefix is answered by a best-first walk of the words
+     * in its range, in O(limit log n); a wildcard pattern tests the words that
+     * start with its literal prefix.
+     */
+    @Override
+    public void forEachCompletion(String pattern, int limit, Consumer<String> visitor) {
+        int wildcard = CompletionIndex.indexOfWildcard(pattern);
+        if (wildcard == pattern.length()) {
+            if (limit > 0 && words.getFrequency(pattern) > 0) {
+                visitor.accept(pattern);
+            }
+            return;
+        }
+        String prefix = pattern.substring(0, wildcard);
+        String end = prefix.isEmpty() ? null : prefix + Character.MAX_VALUE; // Never a word character
+        if (wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '*') {
+            words.forEachMostFrequentInRange(prefix, end, limit, (word, count) -> visitor.accept(word));
+            return;
+        }
+        List<String> matched = new ArrayList<>();
+        TopKHeap heap = new TopKHeap(limit);
+        words.forEachInRange(prefix, end, (word, count) -> {
+            if (CompletionIndex.matches(pattern, word)) {
+                heap.offer(matched.size(), count); // Ties keep word order, like the completion index
+                matched.add(word);
+            }
+        });
+        for (int index : heap.drainDocs()) {
+            visitor.accept(matched.get(index));
+        }
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return trie.estimateNodeMemoryBytes() + trie.getPostingsMemoryBytes() + docBytes;
+    }
+}
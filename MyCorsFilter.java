@@ -36,6 +36,9 @@ public class MyCorsFilter {
         // Allow all headers in requests
         corsConfiguration.addAllowedHeader("*"); // Accept any header sent by the client
 
+        // Let the frontend read the spelling suggestion of an empty ranking
+        corsConfiguration.addExposedHeader(PageRankController.DID_YOU_MEAN_HEADER);
+
         // Create a source to map the CORS configuration to all endpoints (/**)
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", corsConfiguration); // Apply CORS settings to all endpoints
@@ -15,6 +15,9 @@ public class PageContent {
     // Frequency of a specific keyword in the page content
     private int frequency;
 
+    // Relevance score assigned to the page by the ranking that produced it
+    private double score;
+
     /**
      * Constructor to initialize a PageContent object with a title and content.
      * The frequency is initialized to 0 by default.
@@ -81,4 +84,22 @@ public class PageContent {
     public void setFrequency(int frequency) {
         this.frequency = frequency;
     }
+
+    /**
+     * Getter method for the relevance score of the page.
+     *
+     * @return The relevance score of the page
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Setter method for the relevance score of the page.
+     *
+     * @param score The new relevance score to set
+     */
+    public void setScore(double score) {
+        this.score = score;
+    }
 }
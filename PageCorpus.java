@@ -0,0 +1,160 @@
+package com.example.model;
+
+import java.util.Locale;
+
+/**
+ * Immutable, in-memory snapshot of the crawled pages used for page ranking.
+ * Each page keeps its original title and content along with a case-folded copy
+ * of the content, so queries never have to lowercase page text themselves.
+ * A snapshot is never modified after construction and can be shared freely
+ * between concurrent requests.
+ */
+public final class PageCorpus {
+
+    // Titles (first CSV column) of the pages, indexed by document id
+    private final String[] titles;
+
+    // Original content of the pages, returned to clients as-is
+    private final String[] contents;
+
+    // Lowercased content of the pages, used for matching
+    private final String[] foldedContents;
+
+    // URLs linked from each page, as found in its rows of the source file
+    private final String[][] outlinks;
+
+    // Modification time of the source file this snapshot was loaded from
+    private final long lastModified;
+
+    /**
+     * Creates a snapshot from parallel arrays of titles and contents.
+     * The arrays are copied, so later changes by the caller are not visible.
+     *
+     * @param titles       The titles of the pages
+     * @param contents     The contents of the pages
+     * @param lastModified The modification time of the source file
+     */
+    public PageCorpus(String[] titles, String[] contents, long lastModified) {
+        this(titles, contents, new String[titles.length][0], lastModified);
+    }
+
+    /**
+     * Creates a snapshot from parallel arrays of titles, contents and outlinks.
+     * The arrays are copied, so later changes by the caller are not visible.
+     *
+     * @param titles       The titles of the pages
+     * @param contents     The contents of the pages
+     * @param outlinks     The URLs linked from each page
+     * @param lastModified The modification time of the source file
+     */
+    public PageCorpus(String[] titles, String[] contents, String[][] outlinks, long lastModified) {
+        if (titles.length != contents.length || titles.length != outlinks.length) {
+            throw new IllegalArgumentException("Titles and contents must have the same length");
+        }
+        this.titles = titles.clone();
+        this.contents = contents.clone();
+        this.foldedContents = new String[contents.length];
+        for (int doc = 0; doc < contents.length; doc++) {
+            this.foldedContents[doc] = contents[doc].toLowerCase(Locale.ROOT);
+        }
+        this.outlinks = new String[outlinks.length][];
+        for (int doc = 0; doc < outlinks.length; doc++) {
+            this.outlinks[doc] = outlinks[doc].clone();
+        }
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns an empty snapshot, used when the source file cannot be read.
+     *
+     * @return A snapshot without any pages
+     */
+    public static PageCorpus empty() {
+        return new PageCorpus(new String[0], new String[0], 0L);
+    }
+
+    /**
+     * Gets the number of pages in the snapshot.
+     *
+     * @return The number of pages
+     */
+    public int size() {
+        return titles.length;
+    }
+
+    /**
+     * Gets the title of a page.
+     *
+     * @param doc The document id of the page
+     * @return The title of the page
+     */
+    public String getTitle(int doc) {
+        return titles[doc];
+    }
+
+    /**
+     * Gets the original content of a page.
+     *
+     * @param doc The document id of the page
+     * @return The content of the page
+     */
+    public String getContent(int doc) {
+        return contents[doc];
+    }
+
+    /**
+     * Gets the lowercased content of a page.
+     *
+     * @param doc The document id of the page
+     * @return The case-folded content of the page
+     */
+    public String getFoldedContent(int doc) {
+        return foldedContents[doc];
+    }
+
+    /**
+     * Gets the URLs linked from a page.
+     *
+     * @param doc The document id of the page
+     * @return A copy of the page's outlinks
+     */
+    public String[] getOutlinks(int doc) {
+        return outlinks[doc].clone();
+    }
+
+    /**
+     * Gets the modification time of the file this snapshot was loaded from.
+     *
+     * @return The modification time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Builds a new PageContent result for a page. A fresh object is created
+     * for every call so that results of concurrent queries never share state.
+     *
+     * @param doc       The document id of the page
+     * @param frequency The keyword frequency computed for the page
+     * @return A PageContent object describing the page
+     */
+    public PageContent toPageContent(int doc, int frequency) {
+        return toPageContent(doc, frequency, frequency);
+    }
+
+    /**
+     * Builds a new PageContent result for a page with a separate relevance score.
+     *
+     * @param doc       The document id of the page
+     * @param frequency The keyword frequency computed for the page
+     * @param score     The relevance score computed for the page
+     * @return A PageContent object describing the page
+     */
+    public PageContent toPageContent(int doc, int frequency, double score) {
+        PageContent page = new PageContent(titles[doc], contents[doc]);
+        page.setFrequency(frequency);
+        page.setScore(score);
+        return page;
+    }
+}
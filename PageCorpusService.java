@@ -0,0 +1,150 @@
+package com.example.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Service;
+
+import com.example.model.PageCorpus;
+
+/**
+ * Service that owns the crawled page corpus used by page ranking.
+ * The corpus is loaded once into an immutable {@link PageCorpus} snapshot and
+ * replaced atomically when the modification time of the CSV file changes.
+ * Requests always work on a single snapshot, so a reload never affects a
+ * query that is already running.
+ */
+@Service
+public class PageCorpusService {
+
+    private static final String CRAWLED_DATA_PATH = "src/main/resources/Crawled_Website_Data.csv";
+
+    // URLs found anywhere in a row, used as the page's outlinks
+    private static final Pattern URL_PATTERN = Pattern.compile("https?://[^\\s,\"()]+");
+
+    // Prefix shared by every URL, used to skip rows without links cheaply
+    private static final byte[] URL_MARKER = "http".getBytes(StandardCharsets.US_ASCII);
+
+    // Minimum time between two checks of the file's modification time
+    private static final long RELOAD_CHECK_INTERVAL_MS = 1000;
+
+    // Currently published snapshot of the corpus
+    private final AtomicReference<PageCorpus> corpus = new AtomicReference<>();
+
+    // Time of the last modification time check
+    private volatile long lastCheckMillis;
+
+    private final File file;
+
+    /**
+     * Constructor for the PageCorpusService.
+     * Loads the corpus eagerly so the first query does not pay for it.
+     */
+    public PageCorpusService() {
+        this.file = new File(CRAWLED_DATA_PATH);
+        this.corpus.set(load());
+        this.lastCheckMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the current corpus snapshot, reloading it first if the CSV file
+     * has been modified since the snapshot was taken.
+     *
+     * @return The current, immutable corpus snapshot
+     */
+    public PageCorpus getCorpus() {
+        PageCorpus current = corpus.get();
+        long now = System.currentTimeMillis();
+        if (now - lastCheckMillis < RELOAD_CHECK_INTERVAL_MS) {
+            return current;
+        }
+        lastCheckMillis = now;
+
+        if (file.lastModified() == current.getLastModified()) {
+            return current;
+        }
+        return reload(current);
+    }
+
+    /**
+     * Loads a new snapshot and publishes it, unless another thread already
+     * replaced the snapshot in the meantime.
+     *
+     * @param stale The snapshot that was found to be out of date
+     * @return The snapshot that is current after the reload
+     */
+    private synchronized PageCorpus reload(PageCorpus stale) {
+        PageCorpus current = corpus.get();
+        if (current != stale) {
+            return current; // Another request already reloaded the corpus
+        }
+        PageCorpus fresh = load();
+        corpus.compareAndSet(stale, fresh);
+        return corpus.get();
+    }
+
+    /**
+     * Reads the CSV file into a new snapshot. Only the first row seen for each
+     * title is kept, and the content is the raw text of the row after the
+     * first field. URLs found in any row of a title are collected as that
+     * page's outlinks.
+     *
+     * @return The loaded snapshot, or an empty snapshot if the file cannot be read
+     */
+    private PageCorpus load() {
+        long lastModified = file.lastModified();
+        List<String> titles = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<Set<String>> outlinks = new ArrayList<>();
+        Map<String, Integer> docsByTitle = new HashMap<>();
+
+        try {
+            MappedCsvReader.read(file.toPath(), row -> {
+                if (row.getFieldCount() < 2) {
+                    return true; // Skip rows without content
+                }
+                String title = row.getString(0).trim();
+                Integer doc = docsByTitle.get(title);
+                String remainder = null;
+                if (doc == null) {
+                    doc = titles.size();
+                    docsByTitle.put(title, doc);
+                    titles.add(title);
+                    remainder = row.getRawFrom(1);
+                    contents.add(remainder.trim());
+                    outlinks.add(new LinkedHashSet<>());
+                }
+
+                // Only decode later rows of a page when they can contain a link
+                if (remainder != null || row.rawContains(1, URL_MARKER)) {
+                    Matcher urls = URL_PATTERN.matcher(remainder != null ? remainder : row.getRawFrom(1));
+                    while (urls.find()) {
+                        outlinks.get(doc).add(urls.group());
+                    }
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getName());
+            e.printStackTrace();
+            return PageCorpus.empty();
+        }
+
+        String[][] outlinkArrays = new String[outlinks.size()][];
+        for (int doc = 0; doc < outlinkArrays.length; doc++) {
+            outlinkArrays[doc] = outlinks.get(doc).toArray(new String[0]);
+        }
+        return new PageCorpus(titles.toArray(new String[0]), contents.toArray(new String[0]), outlinkArrays,
+                lastModified);
+    }
+}
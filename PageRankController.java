@@ -1,14 +1,24 @@
 package com.example.controller;
 
 // Import necessary classes and libraries
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.model.LinkGraph; // Link graph and PageRank statistics
 import com.example.model.PageContent; // Represents the structure of a page's content
 import com.example.service.CsvService; // Service layer handling CSV data operations
+import com.example.service.LinkGraphService; // Service layer computing link authority
+import com.example.service.RankingService; // Service layer handling BM25 ranking
+import com.example.service.SpellingService; // Service layer correcting misspelled queries
+import com.example.service.SubstringIndexService; // Service layer maintaining the substring index
 
 /**
  * REST Controller for handling page ranking-related API endpoints.
@@ -16,27 +26,111 @@ import com.example.service.CsvService; // Service layer handling CSV data operat
 @RestController
 public class PageRankController {
 
+    // Response header carrying the corrected query when a ranking finds nothing
+    public static final String DID_YOU_MEAN_HEADER = "X-Did-You-Mean";
+
     // Service layer dependency for processing CSV data
     private final CsvService csvService;
 
+    // Service layer dependency for BM25 ranking
+    private final RankingService rankingService;
+
+    // Service layer dependency for link authority
+    private final LinkGraphService linkGraphService;
+
+    // Service layer dependency for the substring index
+    private final SubstringIndexService substringIndexService;
+
+    // Service layer dependency for "did you mean" corrections
+    private final SpellingService spellingService;
+
     /**
-     * Constructor for injecting the CsvService dependency into the controller.
+     * Constructor for injecting the service dependencies into the controller.
      *
-     * @param csvService the service used to handle CSV-related operations
+     * @param csvService       the service used to handle CSV-related operations
+     * @param rankingService   the service used to rank pages with BM25
+     * @param linkGraphService the service used to compute link authority
+     * @param substringIndexService the service maintaining the substring index
+     * @param spellingService  the service correcting misspelled queries
      */
-    public PageRankController(CsvService csvService) {
+    public PageRankController(CsvService csvService, RankingService rankingService,
+            LinkGraphService linkGraphService, SubstringIndexService substringIndexService,
+            SpellingService spellingService) {
         this.csvService = csvService;
+        this.rankingService = rankingService;
+        this.linkGraphService = linkGraphService;
+        this.substringIndexService = substringIndexService;
+        this.spellingService = spellingService;
     }
 
     /**
      * API endpoint to rank pages based on a given search query.
      *
-     * @param query the search keyword or phrase used to rank pages
-     * @return a list of ranked PageContent objects based on the query
+     * @param query  the search keyword or phrase used to rank pages
+     * @param limit  the maximum number of pages to return
+     * @param offset the number of top-ranked pages to skip, for paging
+     * @param mode   "bm25" to rank by BM25 relevance, or "substring" to rank by
+     *               raw substring counts of the keywords
+     * @param authorityWeight the weight of link authority (PageRank) blended into
+     *               the BM25 score; 0 ranks by text relevance only
+     * @return a list of ranked PageContent objects based on the query; when
+     *         nothing matches, the corrected query, URL-encoded, in the
+     *         {@value #DID_YOU_MEAN_HEADER} header
      */
     @GetMapping("/api/rank")
-    public List<PageContent> rankPages(@RequestParam String query) {
-        // Delegate the task of ranking pages to the CsvService
-        return csvService.rankPages(query);
+    public ResponseEntity<List<PageContent>> rankPages(@RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "bm25") String mode,
+            @RequestParam(defaultValue = "0") double authorityWeight) {
+        List<PageContent> pages;
+        if ("substring".equalsIgnoreCase(mode)) {
+            // Delegate substring frequency ranking to the CsvService
+            pages = csvService.rankPages(query, offset, limit);
+        } else {
+            // Delegate BM25 ranking to the RankingService
+            pages = rankingService.rankPages(query, offset, limit, authorityWeight);
+        }
+        // The body stays a plain list; a suggestion for an empty first page goes in a header
+        String correctedQuery = pages.isEmpty() && offset <= 0
+                ? spellingService.correctQuery(query, rankingService.getIndex())
+                : null;
+        if (correctedQuery == null) {
+            return ResponseEntity.ok(pages);
+        }
+        String encoded = URLEncoder.encode(correctedQuery, StandardCharsets.UTF_8).replace("+", "%20");
+        return ResponseEntity.ok().header(DID_YOU_MEAN_HEADER, encoded).body(pages);
+    }
+
+    /**
+     * API endpoint reporting the size and convergence of the link graph PageRank.
+     *
+     * @return statistics of the most recent PageRank computation
+     */
+    @GetMapping("/api/rank/authority-stats")
+    public Map<String, Object> getAuthorityStats() {
+        LinkGraph.PageRankResult result = linkGraphService.getAuthority().getResult();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodes", result.getNodeCount());
+        stats.put("edges", result.getEdgeCount());
+        stats.put("iterations", result.getIterations());
+        stats.put("converged", result.isConverged());
+        stats.put("residual", result.getResidual());
+        stats.put("elapsedMillis", result.getElapsedMillis());
+        stats.put("memoryBytes", result.getMemoryBytes());
+        stats.put("bytesPerMillionEdges", result.getBytesPerMillionEdges());
+        stats.put("millisPerMillionEdges", result.getMillisPerMillionEdges());
+        return stats;
+    }
+
+    /**
+     * API endpoint reporting the size and build time of the substring index
+     * next to the cost of one linear scan of the corpus.
+     *
+     * @return statistics of the current substring index
+     */
+    @GetMapping("/api/rank/substring-index-stats")
+    public Map<String, Object> getSubstringIndexStats() {
+        return substringIndexService.getStats();
     }
 }
@@ -9,30 +9,56 @@ document.addEventListener("DOMContentLoaded", () => {
     }
 
     // Fetch results from the backend
-    fetch(`http://localhost:8080/api/rank?query=${encodeURIComponent(query)}`)
-      .then((response) => {
-        if (!response.ok) {
-          throw new Error(`Server error: ${response.status}`);
-        }
-        return response.json(); // Parse JSON response
-      })
-      .then((data) => {
-        displayResults(data); // Call function to display the results
-      })
-      .catch((error) => {
-        console.error("Error:", error);
-        alert("Something went wrong. Please try again later.");
-      });
+    searchPages(query);
   });
 });
 
+// Fetch the ranked pages for a query and display them
+function searchPages(query) {
+  fetch(`http://localhost:8080/api/rank?query=${encodeURIComponent(query)}`)
+    .then((response) => {
+      if (!response.ok) {
+        throw new Error(`Server error: ${response.status}`);
+      }
+      // Set when nothing matched and a corrected query exists
+      const didYouMean = response.headers.get("X-Did-You-Mean");
+      return response
+        .json() // Parse JSON response
+        .then((data) => ({
+          data,
+          didYouMean: didYouMean ? decodeURIComponent(didYouMean) : null,
+        }));
+    })
+    .then(({ data, didYouMean }) => {
+      displayResults(data, didYouMean); // Call function to display the results
+    })
+    .catch((error) => {
+      console.error("Error:", error);
+      alert("Something went wrong. Please try again later.");
+    });
+}
+
 // Function to display the results in the DOM
-function displayResults(data) {
+function displayResults(data, didYouMean) {
   const resultsContainer = document.getElementById("results-container"); // Container to hold results
   resultsContainer.innerHTML = ""; // Clear previous results
 
   if (data.length === 0) {
     resultsContainer.innerHTML = "<p>No results found.</p>";
+    if (didYouMean) {
+      // Offer the corrected query as a link that searches for it
+      const suggestion = document.createElement("p");
+      const link = document.createElement("a");
+      link.href = "#";
+      link.textContent = didYouMean;
+      link.addEventListener("click", (event) => {
+        event.preventDefault();
+        document.getElementById("search-input").value = didYouMean;
+        searchPages(didYouMean);
+      });
+      suggestion.append("Did you mean ", link, "?");
+      resultsContainer.appendChild(suggestion);
+    }
     return;
   }
 
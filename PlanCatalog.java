@@ -0,0 +1,153 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable catalog of streaming service plans, with the orders and lookups
+ * that queries need built once on construction.
+ *
+ * The plans are kept sorted by monthly and by annual price, so the cheapest
+ * plans are a slice of a precomputed list, and grouped by service name, so the
+ * plans of a service are a map lookup. Lowercased copies of the searchable
+ * text are kept for matching. A catalog is never modified after construction
+ * and can be shared freely between concurrent requests.
+ */
+public final class PlanCatalog {
+
+    // Cheapest first; plans without a price last, in catalog order among ties
+    private static final Comparator<StreamingServicePlan> MONTHLY_ORDER = priceOrder(
+            StreamingServicePlan::getPriceCents);
+    private static final Comparator<StreamingServicePlan> ANNUAL_ORDER = priceOrder(
+            StreamingServicePlan::getAnnualPriceCents);
+
+    // Plans in catalog order, and sorted by price
+    private final List<StreamingServicePlan> plans;
+    private final List<StreamingServicePlan> byMonthlyPrice;
+    private final List<StreamingServicePlan> byAnnualPrice;
+
+    // Plans of each service in catalog order, by lowercased service name
+    private final Map<String, List<StreamingServicePlan>> byService;
+
+    // Lowercased service names, plan names and features, indexed like the plans
+    private final String[] foldedServiceNames;
+    private final String[] foldedPlanNames;
+    private final String[] foldedFeatures;
+
+    /**
+     * Creates a catalog of plans. The list is copied, so later changes by the
+     * caller are not visible.
+     *
+     * @param plans The plans in catalog order
+     */
+    public PlanCatalog(List<StreamingServicePlan> plans) {
+        StreamingServicePlan[] array = plans.toArray(new StreamingServicePlan[0]);
+        this.plans = Collections.unmodifiableList(Arrays.asList(array));
+        this.byMonthlyPrice = sorted(array, MONTHLY_ORDER);
+        this.byAnnualPrice = sorted(array, ANNUAL_ORDER);
+
+        Map<String, List<StreamingServicePlan>> groups = new HashMap<>();
+        foldedServiceNames = new String[array.length];
+        foldedPlanNames = new String[array.length];
+        foldedFeatures = new String[array.length];
+        for (int i = 0; i < array.length; i++) {
+            StreamingServicePlan plan = array[i];
+            foldedServiceNames[i] = plan.getServiceName().toLowerCase(Locale.ROOT);
+            foldedPlanNames[i] = plan.getPlanName().toLowerCase(Locale.ROOT);
+            foldedFeatures[i] = plan.getFeatures().toLowerCase(Locale.ROOT);
+            groups.computeIfAbsent(foldedServiceNames[i], service -> new ArrayList<>()).add(plan);
+        }
+        groups.replaceAll((service, group) -> Collections.unmodifiableList(group));
+        this.byService = groups;
+    }
+
+    // Orders plans by a price in cents, with NO_PRICE after every real price
+    private static Comparator<StreamingServicePlan> priceOrder(ToLongFunction<StreamingServicePlan> cents) {
+        return Comparator.comparingLong(plan -> {
+            long price = cents.applyAsLong(plan);
+            return price == StreamingServicePlan.NO_PRICE ? Long.MAX_VALUE : price;
+        });
+    }
+
+    // A sorted, unmodifiable copy; the sort is stable, so ties keep catalog order
+    private static List<StreamingServicePlan> sorted(StreamingServicePlan[] plans,
+            Comparator<StreamingServicePlan> order) {
+        StreamingServicePlan[] copy = plans.clone();
+        Arrays.sort(copy, order);
+        return Collections.unmodifiableList(Arrays.asList(copy));
+    }
+
+    /**
+     * Gets the number of plans in the catalog.
+     *
+     * @return The number of plans
+     */
+    public int size() {
+        return plans.size();
+    }
+
+    /**
+     * Gets every plan, in catalog order.
+     *
+     * @return An unmodifiable list of the plans
+     */
+    public List<StreamingServicePlan> getAllPlans() {
+        return plans;
+    }
+
+    /**
+     * Gets the plans with the lowest monthly price, without sorting.
+     *
+     * @param limit The number of plans
+     * @return Up to limit plans, cheapest first; plans without a price come last
+     */
+    public List<StreamingServicePlan> getCheapest(int limit) {
+        return byMonthlyPrice.subList(0, Math.max(0, Math.min(limit, byMonthlyPrice.size())));
+    }
+
+    /**
+     * Gets the plans with the lowest annual price, without sorting.
+     *
+     * @param limit The number of plans
+     * @return Up to limit plans, cheapest first; plans without an annual price come last
+     */
+    public List<StreamingServicePlan> getCheapestAnnual(int limit) {
+        return byAnnualPrice.subList(0, Math.max(0, Math.min(limit, byAnnualPrice.size())));
+    }
+
+    /**
+     * Gets the plans of a service.
+     *
+     * @param serviceName The name of the service, in any case
+     * @return An unmodifiable list of its plans in catalog order, empty if there are none
+     */
+    public List<StreamingServicePlan> getPlans(String serviceName) {
+        return byService.getOrDefault(serviceName.toLowerCase(Locale.ROOT), Collections.emptyList());
+    }
+
+    /**
+     * Finds the plans whose service name, plan name or features contain a
+     * query, ignoring case.
+     *
+     * @param query The text to look for; empty matches every plan
+     * @return The matching plans in catalog order
+     */
+    public List<StreamingServicePlan> search(String query) {
+        String folded = query.toLowerCase(Locale.ROOT);
+        List<StreamingServicePlan> matches = new ArrayList<>();
+        for (int i = 0; i < foldedServiceNames.length; i++) {
+            if (foldedServiceNames[i].contains(folded) || foldedPlanNames[i].contains(folded)
+                    || foldedFeatures[i].contains(folded)) {
+                matches.add(plans.get(i));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Compressed postings list of one term: the documents containing the term, in
+ * ascending order, and the positions of the term in each of them.
+ *
+ * Every document is encoded as a varint document id delta, a varint
+ * frequency and one varint position delta per occurrence, so a typical
+ * occurrence costs one or two bytes instead of an object. Every
+ * {@link #SKIP_INTERVAL} documents a skip entry records the last document id
+ * and byte offset, which lets {@link Cursor#advance(int)} jump over blocks
+ * without decoding them.
+ *
+ * A list is an immutable view over a byte buffer, either a heap array filled
+ * by a {@link Builder} or a memory-mapped {@link IndexSegment}. The builder
+ * only ever appends past the end of a view, so views taken earlier stay valid
+ * while the term keeps growing.
+ */
+public final class PostingsList {
+
+    // Number of documents between two skip entries
+    public static final int SKIP_INTERVAL = 64;
+
+    // Returned by a cursor once all documents have been read
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    public static final PostingsList EMPTY = new PostingsList(ByteBuffer.allocate(0), 0, 0, 0, 0,
+            new int[0], new int[0], 0);
+
+    // Encoded documents are bytes[start, start + length)
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int length;
+    private final int docCount;
+    private final long totalFrequency;
+
+    // Last document id before each skip point and the byte offset of the skip point from start
+    private final int[] skipDocs;
+    private final int[] skipOffsets;
+    private final int skipCount;
+
+    private PostingsList(ByteBuffer bytes, int start, int length, int docCount, long totalFrequency,
+            int[] skipDocs, int[] skipOffsets, int skipCount) {
+        this.bytes = bytes;
+        this.start = start;
+        this.length = length;
+        this.docCount = docCount;
+        this.totalFrequency = totalFrequency;
+        this.skipDocs = skipDocs;
+        this.skipOffsets = skipOffsets;
+        this.skipCount = skipCount;
+    }
+
+    /**
+     * Gets the number of documents containing the term.
+     *
+     * @return The document frequency
+     */
+    public int getDocCount() {
+        return docCount;
+    }
+
+    /**
+     * Gets the number of occurrences of the term over all documents.
+     *
+     * @return The collection frequency
+     */
+    public long getTotalFrequency() {
+        return totalFrequency;
+    }
+
+    /**
+     * Gets the encoded size of the list.
+     *
+     * @return The size in bytes, including skip entries
+     */
+    public long getMemoryBytes() {
+        return getEncodedLength();
+    }
+
+    int getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * Gets the number of bytes written by {@link #writeTo(DataOutput)}.
+     */
+    int getEncodedLength() {
+        return 2 * Integer.BYTES * skipCount + length;
+    }
+
+    /**
+     * Writes the skip entries followed by the encoded documents, in the form
+     * read back by {@link #read}.
+     *
+     * @param out The output to write to
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        for (int i = 0; i < skipCount; i++) {
+            out.writeInt(skipDocs[i]);
+            out.writeInt(skipOffsets[i]);
+        }
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset() + start, length);
+        } else {
+            for (int i = start; i < start + length; i++) {
+                out.write(bytes.get(i));
+            }
+        }
+    }
+
+    /**
+     * Opens a list written by {@link #writeTo(DataOutput)} without copying the
+     * encoded documents; only the skip entries are read into arrays.
+     *
+     * @param buffer         The buffer holding the list
+     * @param offset         The offset of the list in the buffer
+     * @param encodedLength  The number of bytes written for the list
+     * @param docCount       The number of documents in the list
+     * @param totalFrequency The number of occurrences in the list
+     * @param skipCount      The number of skip entries
+     * @return A view over the buffer
+     */
+    static PostingsList read(ByteBuffer buffer, int offset, int encodedLength, int docCount, long totalFrequency,
+            int skipCount) {
+        int[] skipDocs = new int[skipCount];
+        int[] skipOffsets = new int[skipCount];
+        for (int i = 0; i < skipCount; i++) {
+            skipDocs[i] = buffer.getInt(offset + 8 * i);
+            skipOffsets[i] = buffer.getInt(offset + 8 * i + 4);
+        }
+        int skipBytes = 2 * Integer.BYTES * skipCount;
+        return new PostingsList(buffer, offset + skipBytes, encodedLength - skipBytes, docCount, totalFrequency,
+                skipDocs, skipOffsets, skipCount);
+    }
+
+    /**
+     * Opens a cursor positioned before the first document.
+     *
+     * @return A new cursor over this list
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates documents and positions of a postings list without allocating.
+     * Not thread-safe; every thread opens its own cursor.
+     */
+    public final class Cursor {
+        private int offset = start;
+        private int doc = -1;
+        private int freq;
+        private int docsRead;
+
+        // Positions of the current document not yet read, and the last one read
+        private int pendingPositions;
+        private int position;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves to the next document.
+         *
+         * @return The document id, or {@link #NO_MORE_DOCS} at the end
+         */
+        public int nextDoc() {
+            skipPendingPositions();
+            if (docsRead == docCount) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            doc += readVarint();
+            freq = readVarint();
+            docsRead++;
+            pendingPositions = freq;
+            position = 0;
+            return doc;
+        }
+
+        /**
+         * Moves to the first document whose id is at least the target, using
+         * the skip entries to jump over whole blocks.
+         *
+         * @param target The smallest acceptable document id
+         * @return The document id, or {@link #NO_MORE_DOCS} if there is none
+         */
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            // Last skip point whose preceding document is still before the target
+            int low = docsRead / SKIP_INTERVAL;
+            int high = skipCount - 1;
+            int skip = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (skipDocs[middle] < target) {
+                    skip = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (skip >= 0 && (skip + 1) * SKIP_INTERVAL > docsRead) {
+                offset = start + skipOffsets[skip];
+                doc = skipDocs[skip];
+                docsRead = (skip + 1) * SKIP_INTERVAL;
+                pendingPositions = 0;
+            }
+            while (nextDoc() < target) {
+                // Decode forward within the block
+            }
+            return doc;
+        }
+
+        /**
+         * Gets the current document id.
+         *
+         * @return The document id, -1 before the first call to nextDoc
+         */
+        public int docId() {
+            return doc;
+        }
+
+        /**
+         * Gets the number of occurrences of the term in the current document.
+         *
+         * @return The term frequency
+         */
+        public int freq() {
+            return freq;
+        }
+
+        /**
+         * Reads the next position of the term in the current document. Must
+         * be called at most {@link #freq()} times per document.
+         *
+         * @return The position, in ascending order
+         */
+        public int nextPosition() {
+            pendingPositions--;
+            position += readVarint();
+            return position;
+        }
+
+        private void skipPendingPositions() {
+            while (pendingPositions > 0) {
+                if (bytes.get(offset++) >= 0) { // Last byte of a varint
+                    pendingPositions--;
+                }
+            }
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes.get(offset++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Appends documents to a postings list. Documents must be added in
+     * ascending id order. Not thread-safe.
+     */
+    public static final class Builder {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int docCount;
+        private long totalFrequency;
+        private int lastDoc = -1;
+        private int[] skipDocs = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skipCount;
+
+        /**
+         * Appends one document with the positions of the term in it.
+         *
+         * @param doc       The document id, greater than any added before
+         * @param positions The positions, in ascending order
+         * @param from      The index of the first position in the array
+         * @param count     The number of positions, at least 1
+         */
+        public void addDocument(int doc, int[] positions, int from, int count) {
+            if (doc <= lastDoc) {
+                throw new IllegalArgumentException("Document " + doc + " added after " + lastDoc);
+            }
+            if (docCount > 0 && docCount % SKIP_INTERVAL == 0) {
+                if (skipCount == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, Math.max(4, skipCount * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, skipDocs.length);
+                }
+                skipDocs[skipCount] = lastDoc;
+                skipOffsets[skipCount] = length;
+                skipCount++;
+            }
+            writeVarint(doc - lastDoc);
+            writeVarint(count);
+            int previous = 0;
+            for (int i = from; i < from + count; i++) {
+                writeVarint(positions[i] - previous);
+                previous = positions[i];
+            }
+            lastDoc = doc;
+            docCount++;
+            totalFrequency += count;
+        }
+
+        /**
+         * Appends all documents of another list, whose document ids must all be
+         * greater than any added before.
+         *
+         * @param other The postings to append
+         */
+        public void addAll(PostingsList other) {
+            addAll(other, doc -> true);
+        }
+
+        /**
+         * Appends the documents of another list that pass a filter, for
+         * example to drop deleted documents while merging.
+         *
+         * @param other The postings to append
+         * @param keep  Tells whether a document id is copied
+         */
+        public void addAll(PostingsList other, IntPredicate keep) {
+            int[] positions = new int[16];
+            Cursor cursor = other.cursor();
+            for (int doc = cursor.nextDoc(); doc != NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                if (!keep.test(doc)) {
+                    continue;
+                }
+                int freq = cursor.freq();
+                if (freq > positions.length) {
+                    positions = new int[Math.max(freq, positions.length * 2)];
+                }
+                for (int i = 0; i < freq; i++) {
+                    positions[i] = cursor.nextPosition();
+                }
+                addDocument(doc, positions, 0, freq);
+            }
+        }
+
+        /**
+         * Takes an immutable view of the documents added so far.
+         *
+         * @return The postings list
+         */
+        public PostingsList build() {
+            return new PostingsList(ByteBuffer.wrap(bytes), 0, length, docCount, totalFrequency, skipDocs,
+                    skipOffsets, skipCount);
+        }
+
+        /**
+         * Gets the capacity reserved by the builder.
+         *
+         * @return The allocated size in bytes
+         */
+        public long getMemoryBytes() {
+            return bytes.length + 2L * Integer.BYTES * skipDocs.length;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > bytes.length) {
+                // Grow into a new array so that views of the old one stay untouched
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.example.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Parsed boolean query over the positional postings of an index segment:
+ * words, phrases with optional slop, and AND / OR / NOT combinations. Queries
+ * are built by {@link QueryParser} and are immutable.
+ *
+ * A query is evaluated document-at-a-time by a {@link Matcher} per segment.
+ * Conjunctions drive iteration from their rarest clause and move the other
+ * clauses forward with {@link PostingsList.Cursor#advance(int)}, which jumps
+ * over whole blocks using the skip entries, so a conjunction costs about as
+ * much as its smallest postings list. Phrases are conjunctions whose
+ * positions are checked only on documents that contain every word.
+ */
+public abstract class Query {
+
+    private Query() {
+    }
+
+    /**
+     * Creates a matcher over the documents of one segment.
+     *
+     * @param reader The segment to match against
+     * @return A matcher positioned before the first document
+     */
+    public abstract Matcher matcher(SegmentReader reader);
+
+    /**
+     * A single word.
+     */
+    public static final class Term extends Query {
+        private final String word;
+
+        public Term(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public Matcher matcher(SegmentReader reader) {
+            return new TermMatcher(reader.search(word));
+        }
+
+        @Override
+        public String toString() {
+            return word;
+        }
+    }
+
+    /**
+     * Words that occur in order, with at most {@code slop} other words in
+     * total between them. A slop of 0 is an exact phrase.
+     */
+    public static final class Phrase extends Query {
+        private final String[] words;
+        private final int slop;
+
+        public Phrase(String[] words, int slop) {
+            if (words.length == 0 || slop < 0) {
+                throw new IllegalArgumentException("A phrase needs at least one word and a slop of at least 0");
+            }
+            this.words = words.clone();
+            this.slop = slop;
+        }
+
+        @Override
+        public Matcher matcher(SegmentReader reader) {
+            TermMatcher[] terms = new TermMatcher[words.length];
+            for (int i = 0; i < words.length; i++) {
+                terms[i] = new TermMatcher(reader.search(words[i]));
+            }
+            return new PhraseMatcher(terms, slop);
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + String.join(" ", words) + "\"" + (slop > 0 ? "~" + slop : "");
+        }
+    }
+
+    /**
+     * Documents matching every required clause and none of the excluded
+     * ones. At least one clause is required.
+     */
+    public static final class And extends Query {
+        private final Query[] required;
+        private final Query[] excluded;
+
+        public And(List<Query> required, List<Query> excluded) {
+            if (required.isEmpty()) {
+                throw new IllegalArgumentException("A conjunction needs at least one required clause");
+            }
+            this.required = required.toArray(new Query[0]);
+            this.excluded = excluded.toArray(new Query[0]);
+        }
+
+        @Override
+        public Matcher matcher(SegmentReader reader) {
+            Matcher lead;
+            if (required.length == 1) {
+                lead = required[0].matcher(reader);
+            } else {
+                Matcher[] matchers = new Matcher[required.length];
+                for (int i = 0; i < required.length; i++) {
+                    matchers[i] = required[i].matcher(reader);
+                }
+                lead = new ConjunctionMatcher(matchers);
+            }
+            if (excluded.length == 0) {
+                return lead;
+            }
+            Matcher[] exclusions = new Matcher[excluded.length];
+            for (int i = 0; i < excluded.length; i++) {
+                exclusions[i] = excluded[i].matcher(reader);
+            }
+            return new ExclusionMatcher(lead, exclusions);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (Query clause : required) {
+                text.append(text.length() > 1 ? " AND " : "").append(clause);
+            }
+            for (Query clause : excluded) {
+                text.append(text.length() > 1 ? " AND NOT " : "NOT ").append(clause);
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * Documents matching at least one clause.
+     */
+    public static final class Or extends Query {
+        private final Query[] clauses;
+
+        public Or(List<Query> clauses) {
+            this.clauses = clauses.toArray(new Query[0]);
+        }
+
+        @Override
+        public Matcher matcher(SegmentReader reader) {
+            Matcher[] matchers = new Matcher[clauses.length];
+            for (int i = 0; i < clauses.length; i++) {
+                matchers[i] = clauses[i].matcher(reader);
+            }
+            return new DisjunctionMatcher(matchers);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (Query clause : clauses) {
+                text.append(text.length() > 1 ? " OR " : "").append(clause);
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * Iterates the documents of a segment that match a query, in ascending
+     * document id order. Not thread-safe; every query evaluation creates its
+     * own matchers.
+     */
+    public abstract static class Matcher {
+
+        private Matcher() {
+        }
+
+        /**
+         * Gets the current document id.
+         *
+         * @return The document id, -1 before the first call to nextDoc, or
+         *         {@link PostingsList#NO_MORE_DOCS} at the end
+         */
+        public abstract int docId();
+
+        /**
+         * Moves to the next matching document.
+         *
+         * @return The document id, or {@link PostingsList#NO_MORE_DOCS} at the end
+         */
+        public abstract int nextDoc();
+
+        /**
+         * Moves to the first matching document whose id is at least the
+         * target. Does not move if the current document already is.
+         *
+         * @param target The smallest acceptable document id
+         * @return The document id, or {@link PostingsList#NO_MORE_DOCS} if there is none
+         */
+        public abstract int advance(int target);
+
+        /**
+         * Estimates how many documents the matcher can visit, used to pick
+         * the clause that leads a conjunction.
+         *
+         * @return An upper bound on the number of matching documents
+         */
+        public abstract long cost();
+
+        /**
+         * Reports the positions of the matched words or phrase starts in the
+         * current document. Must be called at most once per document.
+         *
+         * @param consumer Receives the positions
+         */
+        public abstract void collectPositions(IntConsumer consumer);
+    }
+
+    /**
+     * Documents of one postings list.
+     */
+    private static final class TermMatcher extends Matcher {
+        private final PostingsList.Cursor cursor;
+        private final int docCount;
+
+        TermMatcher(PostingsList postings) {
+            cursor = postings.cursor();
+            docCount = postings.getDocCount();
+        }
+
+        @Override
+        public int docId() {
+            return cursor.docId();
+        }
+
+        @Override
+        public int nextDoc() {
+            return cursor.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) {
+            return cursor.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return docCount;
+        }
+
+        int freq() {
+            return cursor.freq();
+        }
+
+        int nextPosition() {
+            return cursor.nextPosition();
+        }
+
+        @Override
+        public void collectPositions(IntConsumer consumer) {
+            for (int i = 0; i < cursor.freq(); i++) {
+                consumer.accept(cursor.nextPosition());
+            }
+        }
+    }
+
+    /**
+     * Documents matched by every sub-matcher. The cheapest sub-matcher leads
+     * and the others are advanced to its candidates; whenever one of them
+     * overshoots, the lead jumps to that document instead.
+     */
+    private static class ConjunctionMatcher extends Matcher {
+        private final Matcher[] matchers; // Ascending cost
+        private int doc = -1;
+
+        ConjunctionMatcher(Matcher[] matchers) {
+            this.matchers = matchers.clone();
+            Arrays.sort(this.matchers, Comparator.comparingLong(Matcher::cost));
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            return align(matchers[0].nextDoc());
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            return align(matchers[0].advance(target));
+        }
+
+        /**
+         * Moves every sub-matcher to the first document at or after the
+         * lead's candidate that all of them contain.
+         */
+        private int align(int candidate) {
+            int i = 1;
+            while (candidate != PostingsList.NO_MORE_DOCS && i < matchers.length) {
+                int next = matchers[i].advance(candidate);
+                if (next == candidate) {
+                    i++;
+                } else {
+                    candidate = matchers[0].advance(next); // Start over from the overshooting document
+                    i = 1;
+                }
+            }
+            doc = candidate;
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return matchers[0].cost();
+        }
+
+        @Override
+        public void collectPositions(IntConsumer consumer) {
+            for (Matcher matcher : matchers) {
+                matcher.collectPositions(consumer);
+            }
+        }
+    }
+
+    /**
+     * Documents containing all words of a phrase at acceptable positions.
+     */
+    private static final class PhraseMatcher extends ConjunctionMatcher {
+        private final TermMatcher[] terms; // In phrase order
+        private final int slop;
+        private final int[][] positions;
+        private final int[] positionCounts;
+
+        // Start positions of the matches in the current document
+        private int[] starts = new int[4];
+        private int startCount;
+
+        PhraseMatcher(TermMatcher[] terms, int slop) {
+            super(terms);
+            this.terms = terms;
+            this.slop = slop;
+            positions = new int[terms.length][8];
+            positionCounts = new int[terms.length];
+        }
+
+        @Override
+        public int nextDoc() {
+            int doc = super.nextDoc();
+            while (doc != PostingsList.NO_MORE_DOCS && !matchPositions()) {
+                doc = super.nextDoc();
+            }
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docId() >= target) {
+                return docId();
+            }
+            int doc = super.advance(target);
+            while (doc != PostingsList.NO_MORE_DOCS && !matchPositions()) {
+                doc = super.nextDoc();
+            }
+            return doc;
+        }
+
+        /**
+         * Reads the positions of every word in the current document and
+         * finds the phrase starts. From each position of the first word, every
+         * following word takes its first position after the previous word,
+         * which gives the shortest ordered span starting there.
+         *
+         * @return true if the phrase occurs in the document
+         */
+        private boolean matchPositions() {
+            for (int t = 0; t < terms.length; t++) {
+                int freq = terms[t].freq();
+                if (freq > positions[t].length) {
+                    positions[t] = new int[Math.max(freq, positions[t].length * 2)];
+                }
+                for (int i = 0; i < freq; i++) {
+                    positions[t][i] = terms[t].nextPosition();
+                }
+                positionCounts[t] = freq;
+            }
+
+            startCount = 0;
+            int[] next = new int[terms.length]; // Index of the first unused position of each word
+            for (int i = 0; i < positionCounts[0]; i++) {
+                int start = positions[0][i];
+                int previous = start;
+                boolean complete = true;
+                for (int t = 1; t < terms.length && complete; t++) {
+                    while (next[t] < positionCounts[t] && positions[t][next[t]] <= previous) {
+                        next[t]++;
+                    }
+                    if (next[t] == positionCounts[t]) {
+                        complete = false;
+                    } else {
+                        previous = positions[t][next[t]];
+                    }
+                }
+                if (!complete) {
+                    break; // Later starts cannot complete either
+                }
+                if (previous - start - (terms.length - 1) <= slop) {
+                    if (startCount == starts.length) {
+                        starts = Arrays.copyOf(starts, startCount * 2);
+                    }
+                    starts[startCount++] = start;
+                }
+            }
+            return startCount > 0;
+        }
+
+        @Override
+        public void collectPositions(IntConsumer consumer) {
+            for (int i = 0; i < startCount; i++) {
+                consumer.accept(starts[i]);
+            }
+        }
+    }
+
+    /**
+     * Documents of a matcher that no excluded matcher contains.
+     */
+    private static final class ExclusionMatcher extends Matcher {
+        private final Matcher lead;
+        private final Matcher[] exclusions;
+
+        ExclusionMatcher(Matcher lead, Matcher[] exclusions) {
+            this.lead = lead;
+            this.exclusions = exclusions;
+        }
+
+        @Override
+        public int docId() {
+            return lead.docId();
+        }
+
+        @Override
+        public int nextDoc() {
+            return skipExcluded(lead.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) {
+            if (lead.docId() >= target) {
+                return lead.docId();
+            }
+            return skipExcluded(lead.advance(target));
+        }
+
+        private int skipExcluded(int doc) {
+            while (doc != PostingsList.NO_MORE_DOCS && isExcluded(doc)) {
+                doc = lead.nextDoc();
+            }
+            return doc;
+        }
+
+        private boolean isExcluded(int doc) {
+            for (Matcher exclusion : exclusions) {
+                if (exclusion.advance(doc) == doc) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long cost() {
+            return lead.cost();
+        }
+
+        @Override
+        public void collectPositions(IntConsumer consumer) {
+            lead.collectPositions(consumer);
+        }
+    }
+
+    /**
+     * Documents matched by any sub-matcher.
+     */
+    private static final class DisjunctionMatcher extends Matcher {
+        private final Matcher[] matchers;
+        private final long cost;
+        private int doc = -1;
+
+        DisjunctionMatcher(Matcher[] matchers) {
+            this.matchers = matchers;
+            long total = 0;
+            for (Matcher matcher : matchers) {
+                total += matcher.cost();
+            }
+            cost = total;
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            return doc == PostingsList.NO_MORE_DOCS ? doc : advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int min = PostingsList.NO_MORE_DOCS;
+            for (Matcher matcher : matchers) {
+                min = Math.min(min, matcher.advance(target));
+            }
+            doc = min;
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return cost;
+        }
+
+        @Override
+        public void collectPositions(IntConsumer consumer) {
+            for (Matcher matcher : matchers) {
+                if (matcher.docId() == doc) {
+                    matcher.collectPositions(consumer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Parses query strings into {@link Query} trees. The syntax is:
+ *
+ * <pre>
+ * query   := or
+ * or      := and ("OR" and)*
+ * and     := unary (["AND"] unary)*        adjacent clauses are ANDed
+ * unary   := ("NOT" | "-") unary | primary
+ * primary := "(" or ")" | '"' words '"' ["~" slop] | word
+ * </pre>
+ *
+ * Operators must be written in upper case; lower case "and", "or" and "not"
+ * are searched as words. Words and phrases are split with the same analyzer
+ * as the indexed text, so a word such as "e-mail" that splits into several
+ * words is searched as a phrase.
+ */
+public final class QueryParser {
+
+    // Longest query accepted, to bound the work of a single request
+    public static final int MAX_QUERY_LENGTH = 1000;
+
+    private final String text;
+    private final Function<String, String[]> analyzer;
+    private int offset;
+
+    private QueryParser(String text, Function<String, String[]> analyzer) {
+        this.text = text;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param text     The query string
+     * @param analyzer Splits text into the words stored in the index
+     * @return The parsed query
+     * @throws IllegalArgumentException if the query is malformed or has no words
+     */
+    public static Query parse(String text, Function<String, String[]> analyzer) {
+        if (text.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Query is longer than " + MAX_QUERY_LENGTH + " characters");
+        }
+        QueryParser parser = new QueryParser(text, analyzer);
+        Query query = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.offset < text.length()) {
+            throw new IllegalArgumentException("Unexpected '" + text.charAt(parser.offset) + "' at position "
+                    + parser.offset);
+        }
+        if (query == null) {
+            throw new IllegalArgumentException("Query has no words to search for");
+        }
+        return query;
+    }
+
+    /**
+     * Parses clauses separated by OR. Returns null if no clause has words.
+     */
+    private Query parseOr() {
+        List<Query> clauses = new ArrayList<>();
+        addIfPresent(clauses, parseAnd());
+        while (acceptKeyword("OR")) {
+            addIfPresent(clauses, parseAnd());
+        }
+        if (clauses.size() <= 1) {
+            return clauses.isEmpty() ? null : clauses.get(0);
+        }
+        return new Query.Or(clauses);
+    }
+
+    /**
+     * Parses clauses separated by AND or by nothing, sorting them into
+     * required and excluded clauses.
+     */
+    private Query parseAnd() {
+        List<Query> required = new ArrayList<>();
+        List<Query> excluded = new ArrayList<>();
+        do {
+            boolean negated = false;
+            while (acceptKeyword("NOT") || accept('-')) {
+                negated = !negated;
+            }
+            Query clause = parsePrimary();
+            if (clause != null) {
+                (negated ? excluded : required).add(clause);
+            }
+        } while (acceptKeyword("AND") || startsClause());
+
+        if (required.isEmpty()) {
+            if (!excluded.isEmpty()) {
+                // Matching everything but a few words would scan every document
+                throw new IllegalArgumentException("NOT must be combined with a word to search for, as in 'a NOT b'");
+            }
+            return null;
+        }
+        if (required.size() == 1 && excluded.isEmpty()) {
+            return required.get(0);
+        }
+        return new Query.And(required, excluded);
+    }
+
+    /**
+     * Parses a group, a phrase or a word. Returns null for text without
+     * indexed words, such as punctuation or an empty group.
+     */
+    private Query parsePrimary() {
+        skipWhitespace();
+        if (offset == text.length()) {
+            throw new IllegalArgumentException("Query ends where a word was expected");
+        }
+        if (accept('(')) {
+            Query group = parseOr();
+            if (!accept(')')) {
+                throw new IllegalArgumentException("Missing ')' at position " + offset);
+            }
+            return group;
+        }
+        if (accept('"')) {
+            int end = text.indexOf('"', offset);
+            if (end < 0) {
+                throw new IllegalArgumentException("Missing closing '\"' for the phrase at position " + (offset - 1));
+            }
+            String phrase = text.substring(offset, end);
+            offset = end + 1;
+            int slop = 0;
+            if (accept('~')) {
+                int start = offset;
+                while (offset < text.length() && Character.isDigit(text.charAt(offset))) {
+                    offset++;
+                }
+                if (start == offset || offset - start > 4) {
+                    throw new IllegalArgumentException("Expected a slop of up to 4 digits at position " + start);
+                }
+                slop = Integer.parseInt(text.substring(start, offset));
+            }
+            return wordsQuery(phrase, slop);
+        }
+
+        int start = offset;
+        while (offset < text.length() && !isDelimiter(text.charAt(offset))) {
+            offset++;
+        }
+        if (start == offset) {
+            throw new IllegalArgumentException("Unexpected '" + text.charAt(offset) + "' at position " + offset);
+        }
+        return wordsQuery(text.substring(start, offset), 0);
+    }
+
+    /**
+     * Builds the query for a piece of text: nothing, one word, or a phrase.
+     */
+    private Query wordsQuery(String piece, int slop) {
+        List<String> words = new ArrayList<>();
+        for (String word : analyzer.apply(piece)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        if (words.size() == 1) {
+            return new Query.Term(words.get(0));
+        }
+        return new Query.Phrase(words.toArray(new String[0]), slop);
+    }
+
+    private static void addIfPresent(List<Query> clauses, Query clause) {
+        if (clause != null) {
+            clauses.add(clause);
+        }
+    }
+
+    // Tells whether another clause follows without an operator
+    private boolean startsClause() {
+        skipWhitespace();
+        if (offset == text.length() || text.charAt(offset) == ')') {
+            return false;
+        }
+        return !atKeyword("OR");
+    }
+
+    private boolean accept(char expected) {
+        skipWhitespace();
+        if (offset < text.length() && text.charAt(offset) == expected) {
+            offset++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        skipWhitespace();
+        if (atKeyword(keyword)) {
+            offset += keyword.length();
+            return true;
+        }
+        return false;
+    }
+
+    // A keyword is a whole word, so "ORANGE" and "NOTE" are words
+    private boolean atKeyword(String keyword) {
+        int end = offset + keyword.length();
+        return text.startsWith(keyword, offset) && (end == text.length() || isDelimiter(text.charAt(end)));
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '"';
+    }
+
+    private void skipWhitespace() {
+        while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+            offset++;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.example.model.Bm25Index;
+import com.example.model.PageContent;
+import com.example.model.PageCorpus;
+
+/**
+ * Service that ranks crawled pages with BM25 over a term dictionary and
+ * postings lists. The index is built once per corpus snapshot and rebuilt
+ * when {@link PageCorpusService} publishes a new snapshot.
+ */
+@Service
+public class RankingService {
+
+    // Maximum number of results returned by a single request
+    public static final int MAX_LIMIT = 100;
+
+    private final PageCorpusService pageCorpusService;
+
+    private final LinkGraphService linkGraphService;
+
+    // Index for the most recent corpus snapshot
+    private volatile Bm25Index index;
+
+    /**
+     * Constructor for injecting the service dependencies.
+     *
+     * @param pageCorpusService the service providing the page corpus
+     * @param linkGraphService  the service providing link authority
+     */
+    public RankingService(PageCorpusService pageCorpusService, LinkGraphService linkGraphService) {
+        this.pageCorpusService = pageCorpusService;
+        this.linkGraphService = linkGraphService;
+    }
+
+    /**
+     * Ranks the pages matching a query by BM25 blended with link authority.
+     *
+     * @param query           the free-text query
+     * @param offset          the number of top results to skip
+     * @param limit           the maximum number of results to return
+     * @param authorityWeight the weight of link authority; 0 ranks by BM25 only
+     * @return the requested page of ranked results
+     */
+    public List<PageContent> rankPages(String query, int offset, int limit, double authorityWeight) {
+        try {
+            Bm25Index current = getIndex();
+            PageCorpus corpus = current.getCorpus();
+
+            double[] priors = null;
+            if (authorityWeight > 0) {
+                LinkGraphService.Authority authority = linkGraphService.getAuthority();
+                // Priors are indexed by document id, so they must come from the same snapshot
+                if (authority.getCorpus() == corpus) {
+                    priors = authority.getPriors();
+                }
+            }
+            Bm25Index.Hits hits = current.search(query, Math.max(0, offset), clampLimit(limit), priors,
+                    authorityWeight);
+
+            List<PageContent> rankedPages = new ArrayList<>(hits.size());
+            for (int rank = 0; rank < hits.size(); rank++) {
+                rankedPages.add(corpus.toPageContent(hits.getDoc(rank), hits.getFrequency(rank), hits.getScore(rank)));
+            }
+            return rankedPages;
+        } catch (Exception e) {
+            System.err.println("Error ranking pages for query: " + query);
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Restricts a requested limit to the range 1..MAX_LIMIT.
+     *
+     * @param limit the requested limit
+     * @return the limit to use
+     */
+    static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Returns the index for the current corpus snapshot, building it if the
+     * snapshot changed since the last request.
+     *
+     * @return the BM25 index of the current corpus
+     */
+    public Bm25Index getIndex() {
+        PageCorpus corpus = pageCorpusService.getCorpus();
+        Bm25Index current = index;
+        if (current != null && current.getCorpus() == corpus) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null || current.getCorpus() != corpus) {
+                current = Bm25Index.build(corpus);
+                index = current;
+            }
+            return current;
+        }
+    }
+}
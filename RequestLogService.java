@@ -0,0 +1,120 @@
+package com.example.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Structured, sampled request log written off the request threads.
+ *
+ * Requests are logged as one line of {@code key=value} pairs. A fixed share
+ * of requests is sampled, plus every slow request. Request threads only queue
+ * the fields. A daemon thread formats and prints them, so a slow console
+ * never delays a response. When the queue is full, events are dropped and
+ * counted, and the count is reported on the next line that is written.
+ */
+@Service
+public class RequestLogService {
+
+    // Share of requests that are logged
+    private static final double SAMPLE_RATE = 0.1;
+
+    // Requests slower than this are always logged
+    private static final long SLOW_REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    public RequestLogService() {
+        writer = new Thread(this::writeLoop, "request-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Logs a request if it is sampled or slow. Never blocks.
+     *
+     * @param endpoint     the endpoint that handled the request
+     * @param elapsedNanos the time taken to handle it
+     * @param fields       alternating keys and values to log with it
+     */
+    public void log(String endpoint, long elapsedNanos, Object... fields) {
+        if (elapsedNanos < SLOW_REQUEST_NANOS && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+            return;
+        }
+        Object[] event = new Object[fields.length + 4];
+        event[0] = "endpoint";
+        event[1] = endpoint;
+        event[2] = "elapsedMicros";
+        event[3] = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        System.arraycopy(fields, 0, event, 4, fields.length);
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            while (true) {
+                Object[] event = queue.take();
+                line.setLength(0);
+                line.append("request");
+                for (int i = 0; i + 1 < event.length; i += 2) {
+                    appendField(line, String.valueOf(event[i]), event[i + 1]);
+                }
+                long droppedEvents = dropped.getAndSet(0);
+                if (droppedEvents > 0) {
+                    appendField(line, "dropped", droppedEvents);
+                }
+                System.out.println(line);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Shutting down
+        }
+    }
+
+    // Appends " key=value", quoting values that contain spaces, quotes or equals signs
+    private static void appendField(StringBuilder line, String key, Object value) {
+        line.append(' ').append(key).append('=');
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=' || c == '\\';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < ' ') {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Stops the writer thread. Events still queued are not written.
+     */
+    @PreDestroy
+    public void close() {
+        writer.interrupt();
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Bounded search history that suggests completions of a prefix, ranked by
+ * how often and how recently each search was made.
+ *
+ * Each search has a frecency score: its uses, each weighing half as much
+ * every {@code halfLife} searches later. This blends LRU and LFU (the LRFU
+ * policy): a search made once just now ranks about as high as one made twice
+ * a half-life ago. The score is kept as log2(score) + time / halfLife, which
+ * does not change while the search is not used and only grows when it is, so
+ * searches made at different times compare directly. When the history is full,
+ * the lowest ranked search is evicted.
+ *
+ * Searches are deduplicated by their lowercased text in a hash map. They are
+ * indexed in a radix trie of their lowercased text, where every node with more
+ * than {@link #MAX_SUGGESTIONS} searches below it caches the best of them. Since
+ * scores only grow, a use only moves a search up the caches on its path, and
+ * the evicted search, being the lowest ranked, is never in a cache. Suggesting
+ * costs the length of the prefix plus {@link #MAX_SUGGESTIONS}, however large
+ * the history. All methods are synchronized.
+ */
+public final class SearchHistory {
+
+    // The most suggestions returned for a prefix, and the size of the trie caches
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // Highest score first, then alphabetical, so the order is total
+    private static final Comparator<Entry> RANK_ORDER = (entry1, entry2) -> {
+        int compare = Double.compare(entry2.score, entry1.score);
+        return compare != 0 ? compare : entry1.folded.compareTo(entry2.folded);
+    };
+
+    private static final double LN_2 = Math.log(2);
+
+    private final int capacity;
+    private final double halfLife;
+    private long clock; // Searches made so far
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> ranked = new TreeSet<>(RANK_ORDER);
+    private final Node root = new Node("", null);
+
+    /**
+     * Creates an empty history.
+     *
+     * @param capacity The number of distinct searches kept
+     * @param halfLife The number of searches after which a use counts half
+     */
+    public SearchHistory(int capacity, int halfLife) {
+        if (capacity <= 0 || halfLife <= 0) {
+            throw new IllegalArgumentException("Capacity and half-life must be positive");
+        }
+        this.capacity = capacity;
+        this.halfLife = halfLife;
+    }
+
+    /**
+     * Records a search.
+     *
+     * @param word The search; its latest spelling is the one suggested
+     */
+    public void add(String word) {
+        add(word, 1);
+    }
+
+    /**
+     * Records uses of a search at once.
+     *
+     * @param word The search
+     * @param uses The number of uses, at least 1
+     */
+    public synchronized void add(String word, long uses) {
+        String folded = word.toLowerCase(Locale.ROOT);
+        double now = ++clock / halfLife;
+        Entry entry = entries.get(folded);
+        if (entry == null) {
+            if (entries.size() >= capacity) {
+                evict(ranked.last());
+            }
+            entry = new Entry(word, folded);
+            entry.score = now + Math.log(uses) / LN_2;
+            entry.uses = uses;
+            entries.put(folded, entry);
+            ranked.add(entry);
+            insert(entry);
+        } else {
+            ranked.remove(entry); // Re-sorted below, with its new score
+            entry.word = word;
+            entry.score = now + Math.log(Math.pow(2, entry.score - now) + uses) / LN_2;
+            entry.uses += uses;
+            ranked.add(entry);
+            for (Node node = entry.node; node != null; node = node.parent) {
+                if (node.top != null) {
+                    offer(node, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Suggests searches starting with a prefix, ignoring case.
+     *
+     * @param prefix The prefix; empty for the best searches overall
+     * @param limit  The number of suggestions, at most {@link #MAX_SUGGESTIONS}
+     * @return The searches, best ranked first
+     */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        String folded = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int offset = 0;
+        while (offset < folded.length()) {
+            Node child = node.child(folded.charAt(offset));
+            if (child == null) {
+                return new ArrayList<>();
+            }
+            int common = commonLength(child.label, folded, offset);
+            if (offset + common == folded.length()) {
+                node = child; // The prefix ends on this edge
+                break;
+            }
+            if (common < child.label.length()) {
+                return new ArrayList<>();
+            }
+            node = child;
+            offset += common;
+        }
+
+        Entry[] best = node.top != null ? node.top : collect(node);
+        List<String> suggestions = new ArrayList<>();
+        for (int i = 0; i < best.length && i < limit; i++) {
+            suggestions.add(best[i].word);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Gets the number of uses recorded for a search.
+     *
+     * @param word The search, in any case
+     * @return The uses, or 0 if it is not in the history
+     */
+    public synchronized long getUses(String word) {
+        Entry entry = entries.get(word.toLowerCase(Locale.ROOT));
+        return entry == null ? 0 : entry.uses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of searches recorded, which changes with every search.
+     *
+     * @return The searches recorded, counting repeats
+     */
+    public synchronized long getSearchCount() {
+        return clock;
+    }
+
+    /**
+     * Visits the searches from the lowest ranked to the best, with their uses,
+     * so adding them again in this order gives a similar ranking.
+     *
+     * @param visitor Receives each search and its uses
+     */
+    public synchronized void forEachLowestFirst(ObjLongConsumer<String> visitor) {
+        for (Entry entry : ranked.descendingSet()) {
+            visitor.accept(entry.word, entry.uses);
+        }
+    }
+
+    // Adds a new entry to the trie, splitting an edge if needed, and to the caches on its path
+    private void insert(Entry entry) {
+        String folded = entry.folded;
+        Node node = root;
+        int offset = 0;
+        while (offset < folded.length()) {
+            Node child = node.child(folded.charAt(offset));
+            if (child == null) {
+                child = new Node(folded.substring(offset), node);
+                node.addChild(child);
+                node = child;
+                offset = folded.length();
+                break;
+            }
+            int common = commonLength(child.label, folded, offset);
+            if (common < child.label.length()) {
+                // Split the edge; the new middle node has the same searches below it as the child
+                Node middle = new Node(child.label.substring(0, common), node);
+                node.replaceChild(child, middle);
+                child.label = child.label.substring(common);
+                child.parent = middle;
+                middle.addChild(child);
+                middle.size = child.size;
+                middle.top = child.top == null ? null : child.top.clone();
+                child = middle;
+            }
+            node = child;
+            offset += common;
+        }
+        node.entry = entry;
+        entry.node = node;
+
+        for (Node ancestor = node; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.size++;
+            if (ancestor.top != null) {
+                offer(ancestor, entry);
+            } else if (ancestor.size > MAX_SUGGESTIONS) {
+                ancestor.top = Arrays.copyOf(collect(ancestor), MAX_SUGGESTIONS);
+            }
+        }
+    }
+
+    // Moves an entry into its place in a node's cache, if it ranks high enough
+    private static void offer(Node node, Entry entry) {
+        Entry[] top = node.top;
+        int index = top.length - 1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == entry) {
+                index = i; // Already cached: its score grew, so it can only move up
+                break;
+            }
+        }
+        if (top[index] != entry && RANK_ORDER.compare(entry, top[index]) >= 0) {
+            return;
+        }
+        while (index > 0 && RANK_ORDER.compare(entry, top[index - 1]) < 0) {
+            top[index] = top[index - 1];
+            index--;
+        }
+        top[index] = entry;
+    }
+
+    // Removes the lowest ranked entry, and the trie nodes it no longer needs
+    private void evict(Entry entry) {
+        entries.remove(entry.folded);
+        ranked.remove(entry);
+        Node node = entry.node;
+        node.entry = null;
+        for (Node ancestor = node; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.size--;
+            if (ancestor.top != null) {
+                if (ancestor.size <= MAX_SUGGESTIONS) {
+                    ancestor.top = null; // Small enough to collect on demand
+                } else if (Arrays.asList(ancestor.top).contains(entry)) {
+                    ancestor.top = Arrays.copyOf(collect(ancestor), MAX_SUGGESTIONS); // Only on ties
+                }
+            }
+        }
+
+        if (node != root && node.childCount == 0) {
+            Node parent = node.parent;
+            parent.removeChild(node);
+            node = parent;
+        }
+        if (node != root && node.entry == null && node.childCount == 1) {
+            // Merge the node with its only child, keeping the trie compressed
+            Node child = node.children[0];
+            node.label = node.label + child.label;
+            node.children = child.children;
+            node.childCount = child.childCount;
+            for (int i = 0; i < node.childCount; i++) {
+                node.children[i].parent = node;
+            }
+            node.entry = child.entry;
+            if (node.entry != null) {
+                node.entry.node = node;
+            }
+            node.top = child.top;
+        }
+    }
+
+    // All entries below a node, best first; only used for small subtrees
+    private static Entry[] collect(Node node) {
+        List<Entry> found = new ArrayList<>(node.size);
+        List<Node> pending = new ArrayList<>();
+        pending.add(node);
+        while (!pending.isEmpty()) {
+            Node next = pending.remove(pending.size() - 1);
+            if (next.entry != null) {
+                found.add(next.entry);
+            }
+            for (int i = 0; i < next.childCount; i++) {
+                pending.add(next.children[i]);
+            }
+        }
+        found.sort(RANK_ORDER);
+        return found.toArray(new Entry[0]);
+    }
+
+    private static int commonLength(String label, String text, int offset) {
+        int length = 0;
+        while (length < label.length() && offset + length < text.length()
+                && label.charAt(length) == text.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    // A search: its latest spelling, lowercased text, uses and score
+    private static final class Entry {
+        String word;
+        final String folded;
+        long uses;
+        double score;
+        Node node;
+
+        Entry(String word, String folded) {
+            this.word = word;
+            this.folded = folded;
+        }
+    }
+
+    // A trie node: the edge label into it, children sorted by first char, and the searches below it
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        String label;
+        Node parent;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        Entry entry;
+        int size;
+        Entry[] top; // Best entries below, when there are more than MAX_SUGGESTIONS
+
+        Node(String label, Node parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        Node child(char first) {
+            int index = find(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node child) {
+            int index = -find(child.label.charAt(0)) - 1;
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            children[index] = child;
+            childCount++;
+        }
+
+        void replaceChild(Node child, Node replacement) {
+            children[find(child.label.charAt(0))] = replacement;
+        }
+
+        void removeChild(Node child) {
+            int index = find(child.label.charAt(0));
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+
+        // Binary search by first char; -(insertion point) - 1 if absent
+        private int find(char first) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = children[middle].label.charAt(0);
+                if (c < first) {
+                    low = middle + 1;
+                } else if (c > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+    }
+}
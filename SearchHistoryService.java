@@ -1,27 +1,178 @@
 package com.example.service;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.model.SearchHistory;
+import com.example.model.WriteBehindLog;
+
+import jakarta.annotation.PreDestroy;
+
 @Service
 public class SearchHistoryService {
 
-    private List<String> searchHistory = new ArrayList<>(); // You can replace this with a database if needed
+    // Distinct searches kept overall, and the searches after which a use counts half
+    private static final int HISTORY_CAPACITY = 100_000;
+    private static final int HISTORY_HALF_LIFE = 1_000;
+
+    // Per-session histories are small and short-lived; the least recently active sessions are dropped
+    private static final int SESSION_CAPACITY = 200;
+    private static final int SESSION_HALF_LIFE = 20;
+    private static final int MAX_SESSIONS = 10_000;
+
+    // Longer session ids are ignored, so clients cannot make the session map arbitrarily large
+    private static final int MAX_SESSION_ID_LENGTH = 64;
+
+    private final SearchHistory searchHistory = new SearchHistory(HISTORY_CAPACITY, HISTORY_HALF_LIFE);
+
+    // Guarded by itself; in access order, so the eldest session is the least recently active
+    private final Map<String, SearchHistory> sessionHistories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchHistory> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+
+    // Logs every search to disk, so the history survives restarts; null if the store could not be opened
+    private WriteBehindLog historyLog;
+
+    /**
+     * Creates the service and restores the history from the store.
+     *
+     * @param storeDirectory The directory of the search history log, shared with the search count log
+     */
+    @Autowired
+    public SearchHistoryService(@Value("${frequency.store.dir:src/main/store}") String storeDirectory) {
+        try {
+            historyLog = new WriteBehindLog(Path.of(storeDirectory), "search-history", new HistoryState(searchHistory),
+                    () -> new HistoryState(new SearchHistory(HISTORY_CAPACITY, HISTORY_HALF_LIFE)));
+        } catch (IOException e) {
+            System.err.println("Error opening the search history store; history will not be kept");
+            e.printStackTrace();
+        }
+    }
+
+    // Replays logged searches into a history, and snapshots it as counts
+    private static final class HistoryState implements WriteBehindLog.SnapshotState {
+        private final SearchHistory history;
+
+        HistoryState(SearchHistory history) {
+            this.history = history;
+        }
+
+        @Override
+        public void load(DataInputStream in) throws IOException {
+            WriteBehindLog.CountState.read(in, history::add);
+        }
+
+        @Override
+        public void apply(String word, long delta) {
+            history.add(word, delta);
+        }
+
+        @Override
+        public void save(DataOutputStream out) throws IOException {
+            // Lowest ranked first, so loading the snapshot restores roughly the same ranking
+            WriteBehindLog.CountState counts = new WriteBehindLog.CountState();
+            history.forEachLowestFirst(counts::apply);
+            counts.save(out);
+        }
+    }
 
     // Sample method to add words to the search history
     public void addSearchHistory(String word) {
-        if (!searchHistory.contains(word)) {
-            searchHistory.add(word);
+        addSearchHistory(null, word);
+    }
+
+    /**
+     * Records a search in the history, and in the history of a session.
+     *
+     * @param sessionId The session, or null to only record it overall
+     * @param word      The search
+     */
+    public void addSearchHistory(String sessionId, String word) {
+        searchHistory.add(word);
+        if (historyLog != null) {
+            historyLog.append(word, 1); // Written behind, never waits for the disk
+        }
+        if (isValidSessionId(sessionId)) {
+            SearchHistory sessionHistory;
+            synchronized (sessionHistories) {
+                sessionHistory = sessionHistories.computeIfAbsent(sessionId,
+                        id -> new SearchHistory(SESSION_CAPACITY, SESSION_HALF_LIFE));
+            }
+            sessionHistory.add(word);
         }
     }
 
     // Method to get autocomplete suggestions
     public List<String> getAutocompleteSuggestions(String query) {
-        return searchHistory.stream()
-                .filter(word -> word.toLowerCase().startsWith(query.toLowerCase()))
-                .collect(Collectors.toList());
+        return searchHistory.suggest(query, SearchHistory.MAX_SUGGESTIONS);
+    }
+
+    /**
+     * Suggests the past searches of one session starting with a query,
+     * ignoring case, ranked by how often and how recently the session made
+     * them.
+     *
+     * @param sessionId The session
+     * @param query     The prefix typed so far
+     * @param limit     The number of suggestions, at most {@link SearchHistory#MAX_SUGGESTIONS}
+     * @return The suggestions, best first; empty for an unknown session
+     */
+    public List<String> getSessionSuggestions(String sessionId, String query, int limit) {
+        if (!isValidSessionId(sessionId)) {
+            return new ArrayList<>();
+        }
+        SearchHistory sessionHistory;
+        synchronized (sessionHistories) {
+            sessionHistory = sessionHistories.get(sessionId);
+        }
+        return sessionHistory == null ? new ArrayList<>() : sessionHistory.suggest(query, limit);
+    }
+
+    private static boolean isValidSessionId(String sessionId) {
+        return sessionId != null && !sessionId.isEmpty() && sessionId.length() <= MAX_SESSION_ID_LENGTH;
+    }
+
+    /**
+     * Visits every search in the overall history with its number of uses,
+     * lowest ranked first.
+     *
+     * @param visitor Receives each search and its uses
+     */
+    public void forEachSearch(ObjLongConsumer<String> visitor) {
+        searchHistory.forEachLowestFirst(visitor);
+    }
+
+    /**
+     * Gets the number of searches recorded overall, so callers can tell when
+     * the history changed.
+     *
+     * @return The searches recorded, counting repeats
+     */
+    public long getSearchCount() {
+        return searchHistory.getSearchCount();
+    }
+
+    /**
+     * Writes the pending history and closes the store.
+     */
+    @PreDestroy
+    public void close() {
+        if (historyLog != null) {
+            historyLog.close();
+        }
     }
 }
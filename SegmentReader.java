@@ -0,0 +1,93 @@
+package com.example.model;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Read access to one segment of the inverted index: a set of documents with
+ * their term postings, word frequencies and per-document word counts.
+ * Documents are addressed by their global document id, which is unique across
+ * all segments, or by their local index in the segment's document table.
+ * Local indexes follow ascending document id.
+ */
+public interface SegmentReader {
+
+    /**
+     * Gets the number of documents in the segment, deleted or not.
+     *
+     * @return The number of documents
+     */
+    int getDocCount();
+
+    /**
+     * Gets the global id of a document.
+     *
+     * @param index The local index of the document
+     * @return The document id
+     */
+    int getDocId(int index);
+
+    /**
+     * Gets the file name of a document.
+     *
+     * @param index The local index of the document
+     * @return The name the document was added under
+     */
+    String getDocFilename(int index);
+
+    /**
+     * Finds the local index of a document.
+     *
+     * @param docId The global document id
+     * @return The local index, or -1 if the document is not in this segment
+     */
+    int findDoc(int docId);
+
+    /**
+     * Searches for a word and returns its postings, with global document ids.
+     *
+     * @param word The word to search for
+     * @return The postings of the word, or an empty list if it does not occur
+     */
+    PostingsList search(String word);
+
+    /**
+     * Visits the words of one document with the number of times each occurs in it.
+     *
+     * @param index   The local index of the document
+     * @param visitor Receives each word and its count
+     */
+    void forEachDocWord(int index, ObjIntConsumer<String> visitor);
+
+    /**
+     * Visits every normalized term of the segment with its postings.
+     *
+     * @param visitor Receives each term and its postings
+     */
+    void forEachTerm(BiConsumer<String, PostingsList> visitor);
+
+    /**
+     * Visits every word with its frequency in ascending word order.
+     *
+     * @param visitor Receives each word and its frequency
+     */
+    void forEachWord(ObjIntConsumer<String> visitor);
+
+    /**
+     * Visits the most frequent terms of the segment that match a prefix or
+     * wildcard pattern. Frequencies here include deleted documents.
+     *
+     * @param pattern The pattern, normalized by {@link CompletionIndex#normalizePattern}
+     * @param limit   The maximum number of terms to visit
+     * @param visitor Receives each term, most frequent first
+     */
+    void forEachCompletion(String pattern, int limit, Consumer<String> visitor);
+
+    /**
+     * Gets the memory or file size of the segment.
+     *
+     * @return The size in bytes
+     */
+    long getSizeBytes();
+}
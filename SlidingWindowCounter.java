@@ -0,0 +1,279 @@
+package com.example.model;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent word counter over a sliding time window, with the most frequent
+ * words kept ranked as they are counted.
+ *
+ * The window is a ring of time buckets. The current bucket maps words to
+ * {@link LongAdder}s, so threads counting the same word update striped cells
+ * instead of contending on one value, and counting takes no lock. When the
+ * clock moves into a new bucket, the bucket that ended is frozen, the buckets
+ * that left the window are dropped, and the counts of the completed buckets
+ * still in the window are summed into a base map. A word's count is its base
+ * plus its count in the current bucket.
+ *
+ * Between two buckets counts only grow, so the top words are maintained
+ * exactly: a word joins them when its count passes the smallest count among
+ * them, and is checked without a lock otherwise. Their counts are read live,
+ * so {@link #top(int)} costs O(k). The ranking is recomputed from the base when
+ * the bucket changes, once per bucket duration.
+ *
+ * A word counted by a thread at the very moment its bucket ends can be missed
+ * from the window.
+ */
+public final class SlidingWindowCounter {
+
+    // Highest count first, then alphabetical
+    private static final Comparator<Entry<String, Long>> RANKING_ORDER = (entry1, entry2) -> {
+        int compare = Long.compare(entry2.getValue(), entry1.getValue());
+        return compare != 0 ? compare : entry1.getKey().compareTo(entry2.getKey());
+    };
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int topK;
+    private final LongSupplier clock;
+
+    // Completed buckets still in the window, and the epoch of each slot
+    private final Map<String, Long>[] completed;
+    private final long[] completedEpochs;
+
+    private volatile State state;
+
+    /**
+     * Creates a counter over a window of {@code bucketCount} buckets of
+     * {@code bucketMillis} each. A single bucket of {@link Long#MAX_VALUE}
+     * millis counts forever.
+     *
+     * @param bucketMillis The duration of a bucket
+     * @param bucketCount  The number of buckets in the window
+     * @param topK         The number of words kept ranked
+     */
+    public SlidingWindowCounter(long bucketMillis, int bucketCount, int topK) {
+        this(bucketMillis, bucketCount, topK, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a counter that reads the time from a clock.
+     *
+     * @param bucketMillis The duration of a bucket
+     * @param bucketCount  The number of buckets in the window
+     * @param topK         The number of words kept ranked
+     * @param clock        The current time in millis
+     */
+    @SuppressWarnings("unchecked")
+    public SlidingWindowCounter(long bucketMillis, int bucketCount, int topK, LongSupplier clock) {
+        if (bucketMillis <= 0 || bucketCount <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("Bucket duration, bucket count and top size must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.topK = topK;
+        this.clock = clock;
+        this.completed = (Map<String, Long>[]) new Map<?, ?>[bucketCount];
+        this.completedEpochs = new long[bucketCount];
+        this.state = new State(epoch(), Collections.emptyMap(), Ranking.EMPTY);
+    }
+
+    /**
+     * Counts one occurrence of a word.
+     *
+     * @param word The word
+     * @return The count of the word in the window, including this one
+     */
+    public long add(String word) {
+        return add(word, 1);
+    }
+
+    /**
+     * Counts occurrences of a word.
+     *
+     * @param word  The word
+     * @param count The number of occurrences
+     * @return The count of the word in the window, including these
+     */
+    public long add(String word, long count) {
+        State current = current();
+        LongAdder adder = current.bucket.get(word);
+        if (adder == null) {
+            adder = current.bucket.computeIfAbsent(word, key -> new LongAdder());
+        }
+        adder.add(count);
+        long windowCount = current.count(word);
+
+        // Lock-free check: ranked words are read live, others must beat the smallest ranked count
+        Ranking ranking = current.ranking;
+        if (!ranking.words.contains(word) && (ranking.words.size() < topK || windowCount > ranking.threshold)) {
+            rank(current, word, windowCount);
+        }
+        return windowCount;
+    }
+
+    /**
+     * Gets the count of a word in the window.
+     *
+     * @param word The word
+     * @return The count, or 0 if the word was not counted in the window
+     */
+    public long getCount(String word) {
+        return current().count(word);
+    }
+
+    /**
+     * Gets the most frequent words in the window, most frequent first and
+     * then in alphabetical order. Among words tied with the last one ranked,
+     * the first to reach that count is kept.
+     *
+     * @param limit The number of words to return, at most the ranked size
+     * @return The words and their counts
+     */
+    public List<Entry<String, Long>> top(int limit) {
+        State current = current();
+        List<Entry<String, Long>> words = new ArrayList<>(current.ranking.words.size());
+        for (String word : current.ranking.words) {
+            words.add(new SimpleImmutableEntry<>(word, current.count(word)));
+        }
+        words.sort(RANKING_ORDER);
+        return words.subList(0, Math.max(0, Math.min(limit, words.size())));
+    }
+
+    private long epoch() {
+        return bucketMillis == Long.MAX_VALUE ? 0 : clock.getAsLong() / bucketMillis;
+    }
+
+    private State current() {
+        State current = state;
+        long epoch = epoch();
+        return epoch > current.epoch ? advance(epoch) : current;
+    }
+
+    /**
+     * Moves the window to a new bucket: freezes the bucket that ended, drops
+     * the buckets that left the window and ranks the words again.
+     */
+    private synchronized State advance(long epoch) {
+        State previous = state;
+        if (epoch <= previous.epoch) {
+            return previous; // Another thread got here first
+        }
+        Map<String, Long> base = new HashMap<>(previous.base);
+        long oldest = epoch - bucketCount; // Buckets up to this epoch are out of the window
+
+        if (previous.epoch > oldest && bucketCount > 1) {
+            Map<String, Long> frozen = new HashMap<>();
+            previous.bucket.forEach((word, adder) -> frozen.put(word, adder.sum()));
+            frozen.forEach((word, count) -> base.merge(word, count, Long::sum));
+            int slot = (int) Math.floorMod(previous.epoch, (long) bucketCount);
+            completed[slot] = frozen;
+            completedEpochs[slot] = previous.epoch;
+        }
+        for (int slot = 0; slot < bucketCount; slot++) {
+            if (completed[slot] != null && completedEpochs[slot] <= oldest) {
+                completed[slot].forEach((word, count) -> base.computeIfPresent(word,
+                        (key, total) -> total.longValue() == count.longValue() ? null : total - count));
+                completed[slot] = null;
+            }
+        }
+
+        // Rank again from the completed buckets; the new bucket is still empty
+        PriorityQueue<Entry<String, Long>> best = new PriorityQueue<>(topK + 1, RANKING_ORDER.reversed());
+        for (Entry<String, Long> entry : base.entrySet()) {
+            best.add(entry);
+            if (best.size() > topK) {
+                best.poll();
+            }
+        }
+        Set<String> words = new HashSet<>();
+        long threshold = Long.MAX_VALUE;
+        for (Entry<String, Long> entry : best) {
+            words.add(entry.getKey());
+            threshold = Math.min(threshold, entry.getValue());
+        }
+        State next = new State(epoch, base,
+                new Ranking(Collections.unmodifiableSet(words), words.isEmpty() ? 0 : threshold));
+        state = next;
+        return next;
+    }
+
+    /**
+     * Lets a word into the ranking if it beats the smallest ranked count,
+     * and refreshes that smallest count.
+     */
+    private synchronized void rank(State current, String word, long count) {
+        Ranking ranking = current.ranking;
+        if (current != state || ranking.words.contains(word)) {
+            return;
+        }
+        Set<String> words = new HashSet<>(ranking.words);
+        if (words.size() >= topK) {
+            String smallest = null;
+            long smallestCount = Long.MAX_VALUE;
+            for (String ranked : words) {
+                long rankedCount = current.count(ranked);
+                if (rankedCount < smallestCount) {
+                    smallest = ranked;
+                    smallestCount = rankedCount;
+                }
+            }
+            if (count <= smallestCount) {
+                current.ranking = new Ranking(ranking.words, smallestCount); // Only raise the threshold
+                return;
+            }
+            words.remove(smallest);
+        }
+        words.add(word);
+        long threshold = Long.MAX_VALUE;
+        for (String ranked : words) {
+            threshold = Math.min(threshold, current.count(ranked));
+        }
+        current.ranking = new Ranking(Collections.unmodifiableSet(words), threshold);
+    }
+
+    // The current bucket and the counts of the completed buckets in the window
+    private static final class State {
+        final long epoch;
+        final Map<String, Long> base;
+        final ConcurrentHashMap<String, LongAdder> bucket = new ConcurrentHashMap<>();
+        volatile Ranking ranking;
+
+        State(long epoch, Map<String, Long> base, Ranking ranking) {
+            this.epoch = epoch;
+            this.base = base;
+            this.ranking = ranking;
+        }
+
+        long count(String word) {
+            Long completedCount = base.get(word);
+            LongAdder adder = bucket.get(word);
+            return (completedCount == null ? 0 : completedCount) + (adder == null ? 0 : adder.sum());
+        }
+    }
+
+    // Immutable set of ranked words and a lower bound of their smallest count
+    private static final class Ranking {
+        static final Ranking EMPTY = new Ranking(Collections.emptySet(), 0);
+
+        final Set<String> words;
+        final long threshold;
+
+        Ranking(Set<String> words, long threshold) {
+            this.words = words;
+            this.threshold = threshold;
+        }
+    }
+}
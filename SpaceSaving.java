@@ -0,0 +1,224 @@
+package com.example.model;
+
+/**
+ * Space-Saving summary of the most frequent words of a stream, in memory
+ * bounded by the error allowed instead of by the vocabulary.
+ *
+ * The summary keeps ceil(1 / epsilon) counters. A word that already has a
+ * counter increments it. Otherwise the word takes over the counter with the
+ * smallest count, inheriting that count as its possible overestimate. After
+ * N words, every word occurring more than epsilon * N times has a counter,
+ * and each count is at most epsilon * N above the true frequency, never below.
+ *
+ * Counters sit in a min-heap by count, and words are found through an
+ * open-addressing table keyed by the tokenizer's char slices, so adding a word
+ * costs O(log(1 / epsilon)) and creates a String only when a word takes over a
+ * counter. Not thread-safe.
+ */
+public final class SpaceSaving {
+
+    // Keeps the table small enough to allocate for any accepted epsilon
+    public static final double MIN_EPSILON = 1e-6;
+
+    private final int capacity;
+    private final String[] words;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+    private long total;
+
+    // Counter ids ordered as a min-heap by count, and the heap slot of each counter
+    private final int[] heap;
+    private final int[] heapSlots;
+
+    // Buckets holding counter id + 1, or 0 when empty; at most half full
+    private final int[] table;
+
+    /**
+     * Creates a summary for an error bound.
+     *
+     * @param epsilon The largest overestimate allowed, as a share of the words counted
+     * @throws IllegalArgumentException if epsilon is not between {@link #MIN_EPSILON} and 1
+     */
+    public SpaceSaving(double epsilon) {
+        if (!(epsilon >= MIN_EPSILON && epsilon < 1)) {
+            throw new IllegalArgumentException("Epsilon must be between " + MIN_EPSILON + " and 1");
+        }
+        capacity = (int) Math.ceil(1 / epsilon);
+        words = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapSlots = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+    }
+
+    /**
+     * Counts one occurrence of a word.
+     *
+     * @param chars  The buffer holding the word
+     * @param offset The offset of the word in the buffer
+     * @param length The length of the word
+     */
+    public void add(char[] chars, int offset, int length) {
+        total++;
+        int hash = WordCounter.hash(chars, offset, length);
+        int mask = table.length - 1;
+        int bucket = WordCounter.spread(hash) & mask;
+        while (table[bucket] != 0) {
+            int id = table[bucket] - 1;
+            if (hashes[id] == hash && WordCounter.matches(words[id], chars, offset, length)) {
+                counts[id]++;
+                siftDown(heapSlots[id]);
+                return;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        int id;
+        if (size < capacity) {
+            // A free counter: the new count of 1 is the smallest, so it goes to the top
+            id = size++;
+            heap[id] = id;
+            heapSlots[id] = id;
+            counts[id] = 1;
+            errors[id] = 0;
+            siftUp(id);
+        } else {
+            // Take over the smallest counter; its count bounds how often the new word was missed
+            id = heap[0];
+            removeFromTable(id);
+            bucket = WordCounter.spread(hash) & mask;
+            while (table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            errors[id] = counts[id];
+            counts[id]++;
+            siftDown(0);
+        }
+        words[id] = new String(chars, offset, length);
+        hashes[id] = hash;
+        table[bucket] = id + 1;
+    }
+
+    /**
+     * Removes a counter from the table, shifting back the entries that
+     * probed past it so lookups still find them.
+     */
+    private void removeFromTable(int id) {
+        int mask = table.length - 1;
+        int hole = WordCounter.spread(hashes[id]) & mask;
+        while (table[hole] != id + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = WordCounter.spread(hashes[table[next] - 1]) & mask;
+            // The entry can move into the hole if its home bucket is not between the hole and it
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[id]) {
+                break;
+            }
+            place(heap[parent], slot);
+            slot = parent;
+        }
+        place(id, slot);
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[id]) {
+                break;
+            }
+            place(heap[child], slot);
+            slot = child;
+        }
+        place(id, slot);
+    }
+
+    private void place(int id, int slot) {
+        heap[slot] = id;
+        heapSlots[id] = slot;
+    }
+
+    /**
+     * Finds the counters with the highest counts.
+     *
+     * @param n The number of words to return
+     * @return The ids of the counters, highest count first
+     */
+    public int[] top(int n) {
+        TopKHeap ranked = new TopKHeap(Math.min(n, size));
+        for (int id = 0; id < size; id++) {
+            ranked.offer(id, counts[id]);
+        }
+        return ranked.drainDocs();
+    }
+
+    public String getWord(int id) {
+        return words[id];
+    }
+
+    /**
+     * Gets the count of a counter, which is at least the true frequency of its word.
+     *
+     * @param id The counter id
+     * @return The estimated count
+     */
+    public long getCount(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Gets how much a counter may overestimate its word's frequency.
+     *
+     * @param id The counter id
+     * @return The count the word inherited when it took over the counter
+     */
+    public long getError(int id) {
+        return errors[id];
+    }
+
+    /**
+     * Gets the largest overestimate of any word, counted or not: the
+     * smallest count once every counter is in use, and 0 before that.
+     *
+     * @return The error bound, at most epsilon times {@link #getTotal()}
+     */
+    public long getMaxError() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of words counted, with repetitions.
+     *
+     * @return The total count
+     */
+    public long getTotal() {
+        return total;
+    }
+}
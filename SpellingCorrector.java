@@ -0,0 +1,366 @@
+package com.example.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spelling correction over a fixed vocabulary with the symmetric delete
+ * algorithm (SymSpell).
+ *
+ * Every word of the vocabulary is indexed under each string obtained by
+ * deleting up to {@code maxEditDistance} characters from it. A misspelled
+ * input only needs its own deletes looked up: two words within edit distance d
+ * always share a delete of at most d characters from each. The candidates
+ * found are checked with the real distance (optimal string alignment, which
+ * counts an adjacent transposition as one edit), so a lookup costs a few dozen
+ * hash probes, not a pass over the vocabulary.
+ *
+ * Only the first {@code prefixLength} characters of a word are used to
+ * generate deletes, which bounds the number of deletes per word whatever its
+ * length. A shorter prefix takes less memory, and a lookup has more candidates
+ * to check. Deletes are stored as 64-bit hashes in an open-addressing table
+ * pointing into one array of word ids; a collision only adds a candidate that
+ * fails the distance check. Instances are immutable and safe to share between
+ * threads.
+ */
+public final class SpellingCorrector {
+
+    /**
+     * A word of the vocabulary close to the input.
+     */
+    public static final class Correction {
+        private final String word;
+        private final int distance;
+        private final long frequency;
+
+        Correction(String word, int distance, long frequency) {
+            this.word = word;
+            this.distance = distance;
+            this.frequency = frequency;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        public long getFrequency() {
+            return frequency;
+        }
+    }
+
+    // Closest first, then most frequent, then alphabetical
+    private static final Comparator<Correction> CORRECTION_ORDER = (correction1, correction2) -> {
+        if (correction1.distance != correction2.distance) {
+            return Integer.compare(correction1.distance, correction2.distance);
+        }
+        if (correction1.frequency != correction2.frequency) {
+            return Long.compare(correction2.frequency, correction1.frequency);
+        }
+        return correction1.word.compareTo(correction2.word);
+    };
+
+    // Edit distances beyond this make deletes explode and corrections meaningless
+    public static final int MAX_EDIT_DISTANCE = 3;
+
+    private static final long EMPTY = 0;
+
+    private final String[] words;
+    private final long[] frequencies;
+    private final int maxEditDistance;
+    private final int prefixLength;
+
+    // Delete hashes by slot, and the ids of the words having that delete: ids[starts[slot] .. starts[slot + 1])
+    private final long[] keys;
+    private final int[] starts;
+    private final int[] ids;
+
+    /**
+     * Indexes a vocabulary.
+     *
+     * @param words           The distinct words
+     * @param frequencies     The frequency of each word, which ranks corrections
+     * @param maxEditDistance The largest distance of a correction, from 1 to {@link #MAX_EDIT_DISTANCE}
+     * @param prefixLength    The characters of a word deletes are generated from, at least maxEditDistance + 1
+     */
+    public SpellingCorrector(String[] words, long[] frequencies, int maxEditDistance, int prefixLength) {
+        if (maxEditDistance < 1 || maxEditDistance > MAX_EDIT_DISTANCE) {
+            throw new IllegalArgumentException("Edit distance must be between 1 and " + MAX_EDIT_DISTANCE);
+        }
+        if (prefixLength <= maxEditDistance) {
+            throw new IllegalArgumentException("Prefix length must be greater than the edit distance");
+        }
+        if (words.length != frequencies.length) {
+            throw new IllegalArgumentException("Every word needs a frequency");
+        }
+        this.words = words.clone();
+        this.frequencies = frequencies.clone();
+        this.maxEditDistance = maxEditDistance;
+        this.prefixLength = prefixLength;
+
+        // Collect (delete hash, word id) pairs, in word id order
+        long[] pairHashes = new long[Math.max(16, words.length * 8)];
+        int[] pairIds = new int[pairHashes.length];
+        int pairCount = 0;
+        Set<String> deletes = new HashSet<>();
+        for (int id = 0; id < words.length; id++) {
+            deletes.clear();
+            String prefix = prefix(words[id]);
+            deletes.add(prefix);
+            addDeletes(prefix, maxEditDistance, deletes);
+            if (pairCount + deletes.size() > pairHashes.length) {
+                int capacity = Math.max(pairHashes.length * 2, pairCount + deletes.size());
+                pairHashes = Arrays.copyOf(pairHashes, capacity);
+                pairIds = Arrays.copyOf(pairIds, capacity);
+            }
+            for (String delete : deletes) {
+                pairHashes[pairCount] = hash(delete);
+                pairIds[pairCount++] = id;
+            }
+        }
+
+        // Count the words per distinct delete in a table at most half full, then lay out the ids
+        long[] slotKeys = new long[16];
+        int[] counts = new int[16];
+        int distinct = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (distinct * 2 >= slotKeys.length) {
+                long[] oldKeys = slotKeys;
+                int[] oldCounts = counts;
+                slotKeys = new long[oldKeys.length * 2];
+                counts = new int[oldKeys.length * 2];
+                for (int slot = 0; slot < oldKeys.length; slot++) {
+                    if (oldKeys[slot] != EMPTY) {
+                        int newSlot = find(slotKeys, oldKeys[slot]);
+                        slotKeys[newSlot] = oldKeys[slot];
+                        counts[newSlot] = oldCounts[slot];
+                    }
+                }
+            }
+            int slot = find(slotKeys, pairHashes[i]);
+            if (slotKeys[slot] == EMPTY) {
+                slotKeys[slot] = pairHashes[i];
+                distinct++;
+            }
+            counts[slot]++;
+        }
+        int[] slotStarts = new int[slotKeys.length + 1];
+        for (int slot = 0; slot < slotKeys.length; slot++) {
+            slotStarts[slot + 1] = slotStarts[slot] + counts[slot];
+        }
+        int[] slotIds = new int[pairCount];
+        int[] next = Arrays.copyOf(slotStarts, slotKeys.length);
+        for (int i = 0; i < pairCount; i++) {
+            slotIds[next[find(slotKeys, pairHashes[i])]++] = pairIds[i];
+        }
+        this.keys = slotKeys;
+        this.starts = slotStarts;
+        this.ids = slotIds;
+    }
+
+    /**
+     * Finds the closest words of the vocabulary to an input, within an edit
+     * distance. Deletes of the input are looked up by increasing number of
+     * deletions, and a word at distance d is always found among the deletes
+     * of at most d deletions, so once a correction is found the longer
+     * deletes are skipped and candidates are only checked up to its distance.
+     *
+     * @param input       The word as typed, normalized like the vocabulary
+     * @param maxDistance The largest distance, at most the one the index was built for
+     * @param limit       The maximum number of corrections
+     * @return The words at the smallest distance found, most frequent first;
+     *         only the input itself if it is in the vocabulary
+     */
+    public List<Correction> lookup(String input, int maxDistance, int limit) {
+        int bestDistance = Math.min(maxDistance, maxEditDistance);
+        List<Correction> corrections = new ArrayList<>();
+        String prefix = prefix(input);
+        Set<String> seenDeletes = new HashSet<>();
+        Set<Integer> seenWords = new HashSet<>();
+        ArrayDeque<String> pending = new ArrayDeque<>(); // Breadth first: fewest deletions first
+        pending.add(prefix);
+        seenDeletes.add(prefix);
+        while (!pending.isEmpty()) {
+            String delete = pending.poll();
+            int deletions = prefix.length() - delete.length();
+            if (deletions > bestDistance) {
+                break;
+            }
+            int slot = find(keys, hash(delete));
+            if (keys[slot] != EMPTY) {
+                for (int i = starts[slot]; i < starts[slot + 1]; i++) {
+                    int id = ids[i];
+                    String word = words[id];
+                    if (Math.abs(word.length() - input.length()) > bestDistance || !seenWords.add(id)) {
+                        continue;
+                    }
+                    int distance = distance(input, word, bestDistance);
+                    if (distance < 0) {
+                        continue;
+                    }
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        corrections.clear(); // Farther corrections found so far no longer count
+                    }
+                    corrections.add(new Correction(word, distance, frequencies[id]));
+                }
+            }
+            if (deletions < bestDistance) {
+                for (int i = 0; i < delete.length(); i++) {
+                    String shorter = delete.substring(0, i) + delete.substring(i + 1);
+                    if (seenDeletes.add(shorter)) {
+                        pending.add(shorter);
+                    }
+                }
+            }
+        }
+        corrections.sort(CORRECTION_ORDER);
+        return corrections.subList(0, Math.min(limit, corrections.size()));
+    }
+
+    /**
+     * Gets the frequency of a word of the vocabulary.
+     *
+     * @param word The word
+     * @return The frequency, or 0 if the word is not in the vocabulary
+     */
+    public long getFrequency(String word) {
+        int slot = find(keys, hash(prefix(word)));
+        if (keys[slot] != EMPTY) {
+            for (int i = starts[slot]; i < starts[slot + 1]; i++) {
+                if (words[ids[i]].equals(word)) {
+                    return frequencies[ids[i]];
+                }
+            }
+        }
+        return 0;
+    }
+
+    public int getWordCount() {
+        return words.length;
+    }
+
+    public int getMaxEditDistance() {
+        return maxEditDistance;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * Gets the number of distinct deletes indexed.
+     *
+     * @return The number of deletes
+     */
+    public int getDeleteCount() {
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the memory taken by the delete table and the word ids, without the
+     * words themselves.
+     *
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) Long.BYTES * keys.length + (long) Integer.BYTES * (starts.length + ids.length);
+    }
+
+    private String prefix(String word) {
+        return word.length() > prefixLength ? word.substring(0, prefixLength) : word;
+    }
+
+    // Adds every string made by deleting 1 to distance characters
+    private static void addDeletes(String word, int distance, Set<String> deletes) {
+        for (int i = 0; i < word.length(); i++) {
+            String delete = word.substring(0, i) + word.substring(i + 1);
+            if (deletes.add(delete) && distance > 1) {
+                addDeletes(delete, distance - 1, deletes);
+            }
+        }
+    }
+
+    // Linear probing for a hash: its slot, or the empty slot where it belongs
+    private static int find(long[] table, long hash) {
+        int tableMask = table.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & tableMask;
+        while (table[slot] != EMPTY && table[slot] != hash) {
+            slot = (slot + 1) & tableMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Hashes a string with 64-bit FNV-1a and a final mix; never returns
+     * {@link #EMPTY}.
+     */
+    private static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Computes the optimal string alignment distance of two words, giving up
+     * as soon as it must exceed a maximum.
+     *
+     * @return The distance, or -1 if it is greater than maxDistance
+     */
+    static int distance(String source, String target, int maxDistance) {
+        int sourceLength = source.length();
+        int targetLength = target.length();
+        if (Math.abs(sourceLength - targetLength) > maxDistance) {
+            return -1;
+        }
+        // Three rows of the dynamic programming table: two back for transpositions
+        int[] previousPrevious = new int[targetLength + 1];
+        int[] previous = new int[targetLength + 1];
+        int[] current = new int[targetLength + 1];
+        for (int j = 0; j <= targetLength; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= sourceLength; i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            char sourceChar = source.charAt(i - 1);
+            for (int j = 1; j <= targetLength; j++) {
+                char targetChar = target.charAt(j - 1);
+                int cost = sourceChar == targetChar ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && sourceChar == target.charAt(j - 2) && source.charAt(i - 2) == targetChar) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > maxDistance) {
+                return -1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[targetLength] <= maxDistance ? previous[targetLength] : -1;
+    }
+}
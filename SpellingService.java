@@ -0,0 +1,251 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Bm25Index;
+import com.example.model.SpellingCorrector;
+import com.example.model.Tokenizer;
+import com.example.model.TopKHeap;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * "Did you mean" corrections for searches, over the vocabulary of the
+ * inverted index and ranked by its word frequencies. Ranked page searches
+ * are corrected over the term dictionary of their own {@link Bm25Index}
+ * instead, with a corrector built once per corpus snapshot.
+ *
+ * Each {@link SpellingCorrector} is immutable and published through a
+ * volatile field. A background thread checks the index and the corpus every
+ * {@link #REFRESH_INTERVAL_SECONDS} seconds and rebuilds a corrector when its
+ * words changed. Their size and speed are set by three properties:
+ * spelling.max-edit-distance (2 finds most typos; 1 takes about half the
+ * memory and lookup time), spelling.prefix-length (fewer characters take less
+ * memory and check more candidates per lookup), and spelling.max-words (the
+ * most frequent words kept from a larger vocabulary).
+ */
+@Service
+public class SpellingService {
+
+    // Seconds between checks of the index for changes
+    private static final int REFRESH_INTERVAL_SECONDS = 5;
+
+    private final InvertedIndexService invertedIndexService;
+    private final RankingService rankingService;
+    private final int maxEditDistance;
+    private final int prefixLength;
+    private final int maxWords;
+
+    // The corrector that queries read, replaced whole on every rebuild; null until the first one is built
+    private volatile SpellingCorrector corrector;
+    private volatile long buildMillis;
+
+    // Version of the index the corrector was built from; only used by the refresh thread
+    private long indexVersion = -1;
+
+    // The corrector of the most recent BM25 term dictionary, replaced whole on every rebuild; null until built
+    private volatile RankCorrector rankCorrector;
+
+    // A corrector together with the BM25 index whose terms it holds
+    private static final class RankCorrector {
+        private final Bm25Index index;
+        private final SpellingCorrector corrector;
+
+        RankCorrector(Bm25Index index, SpellingCorrector corrector) {
+            this.index = index;
+            this.corrector = corrector;
+        }
+    }
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "spelling-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Autowired
+    public SpellingService(InvertedIndexService invertedIndexService, RankingService rankingService,
+            @Value("${spelling.max-edit-distance:2}") int maxEditDistance,
+            @Value("${spelling.prefix-length:7}") int prefixLength,
+            @Value("${spelling.max-words:500000}") int maxWords) {
+        if (maxEditDistance < 1 || maxEditDistance > SpellingCorrector.MAX_EDIT_DISTANCE
+                || prefixLength <= maxEditDistance || maxWords <= 0) {
+            throw new IllegalArgumentException("Invalid spelling settings: edit distance " + maxEditDistance
+                    + ", prefix length " + prefixLength + ", words " + maxWords);
+        }
+        this.invertedIndexService = invertedIndexService;
+        this.rankingService = rankingService;
+        this.maxEditDistance = maxEditDistance;
+        this.prefixLength = prefixLength;
+        this.maxWords = maxWords;
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Rebuilds the correctors whose source changed since the last build; runs on the refresh thread only
+    private void refresh() {
+        refreshVocabulary();
+        refreshRankTerms();
+    }
+
+    // Rebuilds the corrector if the inverted index changed since the last build
+    private void refreshVocabulary() {
+        try {
+            long currentVersion = invertedIndexService.getVersion();
+            if (currentVersion == indexVersion) {
+                return;
+            }
+            long start = System.nanoTime();
+            List<String> words = new ArrayList<>();
+            List<Integer> frequencies = new ArrayList<>();
+            invertedIndexService.forEachWord(maxWords, (word, frequency) -> {
+                words.add(word);
+                frequencies.add(frequency);
+            });
+            corrector = buildCorrector(words, frequencies);
+            buildMillis = (System.nanoTime() - start) / 1_000_000;
+            indexVersion = currentVersion;
+        } catch (Exception e) {
+            // Keep serving the previous corrector, and try again on the next check
+            System.err.println("Error rebuilding the spelling corrector");
+            e.printStackTrace();
+        }
+    }
+
+    // Rebuilds the corrector of the BM25 term dictionary if the corpus snapshot changed since the last build
+    private void refreshRankTerms() {
+        try {
+            Bm25Index index = rankingService.getIndex(); // Builds the index of a new snapshot here, off the request threads
+            RankCorrector current = rankCorrector;
+            if (current != null && current.index == index) {
+                return;
+            }
+            List<String> terms = new ArrayList<>();
+            List<Integer> frequencies = new ArrayList<>();
+            index.forEachTerm((term, frequency) -> {
+                terms.add(term);
+                frequencies.add(frequency);
+            });
+            List<String> keptTerms = terms;
+            List<Integer> keptFrequencies = frequencies;
+            if (terms.size() > maxWords) {
+                // Keep the most frequent terms, like the inverted index vocabulary
+                TopKHeap heap = new TopKHeap(maxWords);
+                for (int i = 0; i < terms.size(); i++) {
+                    heap.offer(i, frequencies.get(i));
+                }
+                keptTerms = new ArrayList<>(maxWords);
+                keptFrequencies = new ArrayList<>(maxWords);
+                for (int i : heap.drainDocs()) {
+                    keptTerms.add(terms.get(i));
+                    keptFrequencies.add(frequencies.get(i));
+                }
+            }
+            rankCorrector = new RankCorrector(index, buildCorrector(keptTerms, keptFrequencies));
+        } catch (Exception e) {
+            // Ranked searches go without corrections, and the build is tried again on the next check
+            System.err.println("Error rebuilding the ranked search spelling corrector");
+            e.printStackTrace();
+        }
+    }
+
+    // Builds a corrector over words weighted by their frequencies
+    private SpellingCorrector buildCorrector(List<String> words, List<Integer> frequencies) {
+        long[] weights = new long[frequencies.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = frequencies.get(i);
+        }
+        return new SpellingCorrector(words.toArray(new String[0]), weights, maxEditDistance, prefixLength);
+    }
+
+    /**
+     * Suggests corrections of a word that is not in the vocabulary. Short
+     * words allow fewer edits, since almost any two-letter word is two edits
+     * from most others: none up to 2 characters, 1 up to 4, then the maximum.
+     *
+     * @param word  The word as typed
+     * @param limit The maximum number of corrections
+     * @return The closest words, most frequent first; empty if the word is
+     *         known or nothing is close enough
+     */
+    public List<SpellingCorrector.Correction> suggest(String word, int limit) {
+        return suggest(corrector, word, limit);
+    }
+
+    // Suggests corrections of a word with the given corrector, which may be null
+    private List<SpellingCorrector.Correction> suggest(SpellingCorrector current, String word, int limit) {
+        String normalized = word.trim().toLowerCase(Locale.ROOT);
+        int maxDistance = Math.min(maxEditDistance, (normalized.length() - 1) / 2);
+        if (current == null || maxDistance <= 0 || current.getFrequency(normalized) > 0) {
+            return new ArrayList<>();
+        }
+        return current.lookup(normalized, maxDistance, limit);
+    }
+
+    /**
+     * Corrects every word of a query that is not a term of a BM25 index with
+     * its best correction among those terms. The corrector of a new corpus
+     * snapshot is built in the background, so there are no corrections for a
+     * few seconds after the snapshot changes.
+     *
+     * @param query The query as typed
+     * @param index The index the query was ranked against
+     * @return The corrected query, or null if no word needed or had a correction
+     */
+    public String correctQuery(String query, Bm25Index index) {
+        RankCorrector ready = rankCorrector;
+        if (ready == null || ready.index != index) {
+            return null;
+        }
+        SpellingCorrector current = ready.corrector;
+        List<String> words = Tokenizer.tokenize(query);
+        boolean corrected = false;
+        for (int i = 0; i < words.size(); i++) {
+            List<SpellingCorrector.Correction> corrections = suggest(current, words.get(i), 1);
+            if (!corrections.isEmpty()) {
+                words.set(i, corrections.get(0).getWord());
+                corrected = true;
+            }
+        }
+        return corrected ? String.join(" ", words) : null;
+    }
+
+    /**
+     * Describes the current corrector: its settings, size and build time.
+     *
+     * @return The statistics; only the settings until the first corrector is built
+     */
+    public Map<String, Object> getStats() {
+        SpellingCorrector current = corrector;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxEditDistance", maxEditDistance);
+        stats.put("prefixLength", prefixLength);
+        stats.put("maxWords", maxWords);
+        if (current != null) {
+            stats.put("words", current.getWordCount());
+            stats.put("deletes", current.getDeleteCount());
+            stats.put("memoryBytes", current.getMemoryBytes());
+            stats.put("buildMillis", buildMillis);
+        }
+        return stats;
+    }
+
+    /**
+     * Stops the background rebuilds.
+     */
+    @PreDestroy
+    public void close() {
+        refreshExecutor.shutdownNow();
+    }
+}
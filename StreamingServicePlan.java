@@ -1,36 +1,116 @@
 package com.example.model;
 
+import java.util.Locale;
+
 /**
  * Represents a plan offered by a streaming service, including various attributes
  * such as service name, plan name, pricing details, features, and more.
+ *
+ * Plans are immutable. The prices and flags are kept as written in the catalog,
+ * for display, and are also parsed once on construction into cents and booleans,
+ * so sorting and filtering never parse text.
  */
-public class StreamingServicePlan {
+public final class StreamingServicePlan {
+
+    // Price in cents of a plan whose price is missing or not a number, such as "N/A"
+    public static final long NO_PRICE = -1;
 
-    // Name of the streaming service (e.g., Netflix, Disney+)
-    private String serviceName;
+    // Name of the streaming service (e.g., Netflix, Disney+), interned since every plan of a service shares it
+    private final String serviceName;
 
     // Name of the specific plan (e.g., Basic, Premium)
-    private String planName;
+    private final String planName;
 
     // Monthly price of the plan
-    private String price;
+    private final String price;
 
     // Annual price of the plan
-    private String annualPrice;
+    private final String annualPrice;
 
     // List of features included in the plan
-    private String features;
+    private final String features;
 
     // Number of simultaneous streams allowed
-    private int simultaneousStream;
+    private final int simultaneousStream;
 
     // Indicates if the plan supports content downloads (Yes/No)
-    private String download;
+    private final String download;
 
     // Indicates if the plan offers ad-free streaming (Yes/No)
-    private String adFreeStreaming;
-
-    // Getters and setters
+    private final String adFreeStreaming;
+
+    // The prices in cents and the flags, parsed from the text above
+    private final long priceCents;
+    private final long annualPriceCents;
+    private final boolean downloadable;
+    private final boolean adFree;
+
+    /**
+     * Creates a plan from the text of its catalog row.
+     *
+     * @param serviceName        The name of the streaming service
+     * @param planName           The name of the plan
+     * @param price              The monthly price, such as "5.99 / month"
+     * @param annualPrice        The annual price, such as "$99 / year" or "N/A"
+     * @param features           The features included
+     * @param simultaneousStream The number of simultaneous streams
+     * @param download           "Yes" if downloads are supported
+     * @param adFreeStreaming    "Yes" if ad-free streaming is available
+     */
+    public StreamingServicePlan(String serviceName, String planName, String price, String annualPrice,
+            String features, int simultaneousStream, String download, String adFreeStreaming) {
+        this.serviceName = serviceName.intern();
+        this.planName = planName;
+        this.price = price;
+        this.annualPrice = annualPrice;
+        this.features = features;
+        this.simultaneousStream = simultaneousStream;
+        this.download = download;
+        this.adFreeStreaming = adFreeStreaming;
+        this.priceCents = parseCents(price);
+        this.annualPriceCents = parseCents(annualPrice);
+        this.downloadable = parseFlag(download);
+        this.adFree = parseFlag(adFreeStreaming);
+    }
+
+    /**
+     * Parses the first amount in a price, ignoring currency symbols and units,
+     * so "$5.99 / month" is 599 cents. Digits past the cents are dropped.
+     *
+     * @param price The price as written
+     * @return The amount in cents, or {@link #NO_PRICE} if there is none
+     */
+    private static long parseCents(String price) {
+        int i = 0;
+        while (i < price.length() && !Character.isDigit(price.charAt(i))) {
+            i++;
+        }
+        if (i == price.length()) {
+            return NO_PRICE;
+        }
+        long cents = 0;
+        for (; i < price.length() && Character.isDigit(price.charAt(i)); i++) {
+            if (cents > Long.MAX_VALUE / 1000) {
+                return NO_PRICE; // Too large to be a price
+            }
+            cents = cents * 10 + Character.digit(price.charAt(i), 10);
+        }
+        cents *= 100;
+        if (i < price.length() && price.charAt(i) == '.') {
+            for (int scale = 10, j = i + 1; scale > 0 && j < price.length()
+                    && Character.isDigit(price.charAt(j)); scale /= 10, j++) {
+                cents += scale * Character.digit(price.charAt(j), 10);
+            }
+        }
+        return cents;
+    }
+
+    // "Yes" in any case is true; "No", "N/A" and anything else are false
+    private static boolean parseFlag(String flag) {
+        return flag.trim().toLowerCase(Locale.ROOT).equals("yes");
+    }
+
+    // Getters
 
     /**
      * Gets the name of the streaming service.
@@ -41,15 +121,6 @@ public class StreamingServicePlan {
         return serviceName;
     }
 
-    /**
-     * Sets the name of the streaming service.
-     * 
-     * @param serviceName The name to set.
-     */
-    public void setServiceName(String serviceName) {
-        this.serviceName = serviceName;
-    }
-
     /**
      * Gets the name of the plan.
      * 
@@ -59,15 +130,6 @@ public class StreamingServicePlan {
         return planName;
     }
 
-    /**
-     * Sets the name of the plan.
-     * 
-     * @param planName The name to set.
-     */
-    public void setPlanName(String planName) {
-        this.planName = planName;
-    }
-
     /**
      * Gets the monthly price of the plan.
      * 
@@ -77,15 +139,6 @@ public class StreamingServicePlan {
         return price;
     }
 
-    /**
-     * Sets the monthly price of the plan.
-     * 
-     * @param price The price to set.
-     */
-    public void setPrice(String price) {
-        this.price = price;
-    }
-
     /**
      * Gets the annual price of the plan.
      * 
@@ -95,15 +148,6 @@ public class StreamingServicePlan {
         return annualPrice;
     }
 
-    /**
-     * Sets the annual price of the plan.
-     * 
-     * @param annualPrice The annual price to set.
-     */
-    public void setAnnualPrice(String annualPrice) {
-        this.annualPrice = annualPrice;
-    }
-
     /**
      * Gets the features included in the plan.
      * 
@@ -113,15 +157,6 @@ public class StreamingServicePlan {
         return features;
     }
 
-    /**
-     * Sets the features included in the plan.
-     * 
-     * @param features The features to set.
-     */
-    public void setFeatures(String features) {
-        this.features = features;
-    }
-
     /**
      * Gets the number of simultaneous streams allowed by the plan.
      * 
@@ -131,15 +166,6 @@ public class StreamingServicePlan {
         return simultaneousStream;
     }
 
-    /**
-     * Sets the number of simultaneous streams allowed by the plan.
-     * 
-     * @param simultaneousStream The number to set.
-     */
-    public void setSimultaneousStream(int simultaneousStream) {
-        this.simultaneousStream = simultaneousStream;
-    }
-
     /**
      * Gets the download capability of the plan.
      * 
@@ -149,15 +175,6 @@ public class StreamingServicePlan {
         return download;
     }
 
-    /**
-     * Sets the download capability of the plan.
-     * 
-     * @param download "Yes" if downloads are supported, otherwise "No".
-     */
-    public void setDownload(String download) {
-        this.download = download;
-    }
-
     /**
      * Gets the ad-free streaming capability of the plan.
      * 
@@ -168,12 +185,39 @@ public class StreamingServicePlan {
     }
 
     /**
-     * Sets the ad-free streaming capability of the plan.
-     * 
-     * @param adFreeStreaming "Yes" if ad-free streaming is available, otherwise "No".
+     * Gets the monthly price of the plan in cents.
+     *
+     * @return The price in cents, or {@link #NO_PRICE} if it is not known.
      */
-    public void setAdFreeStreaming(String adFreeStreaming) {
-        this.adFreeStreaming = adFreeStreaming;
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Gets the annual price of the plan in cents.
+     *
+     * @return The annual price in cents, or {@link #NO_PRICE} if it is not known.
+     */
+    public long getAnnualPriceCents() {
+        return annualPriceCents;
+    }
+
+    /**
+     * Tells whether the plan supports content downloads.
+     *
+     * @return True if downloads are supported.
+     */
+    public boolean isDownloadable() {
+        return downloadable;
+    }
+
+    /**
+     * Tells whether the plan offers ad-free streaming.
+     *
+     * @return True if streaming is ad-free.
+     */
+    public boolean isAdFree() {
+        return adFree;
     }
 
     /**
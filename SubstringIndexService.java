@@ -0,0 +1,121 @@
+package com.example.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.stereotype.Service;
+
+import com.example.model.AhoCorasickMatcher;
+import com.example.model.PageCorpus;
+import com.example.model.SuffixArrayIndex;
+
+/**
+ * Service that maintains a suffix array over the current page corpus for
+ * exact substring counting. The index is built in the background whenever
+ * {@link PageCorpusService} publishes a new snapshot; until it is ready,
+ * callers fall back to scanning the pages.
+ */
+@Service
+public class SubstringIndexService {
+
+    private final PageCorpusService pageCorpusService;
+
+    // Builds indexes off the request threads
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "substring-index-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Set while a build is queued or running
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    // Index for the most recent corpus snapshot that finished building
+    private volatile SuffixArrayIndex index;
+
+    // Time of one full scan of the corpus measured after the last build, for comparison
+    private volatile long scanMicros;
+
+    /**
+     * Constructor for injecting the PageCorpusService dependency.
+     * Starts building the index for the initial corpus right away.
+     *
+     * @param pageCorpusService the service providing the page corpus
+     */
+    public SubstringIndexService(PageCorpusService pageCorpusService) {
+        this.pageCorpusService = pageCorpusService;
+        scheduleBuild();
+    }
+
+    /**
+     * Returns the index for a corpus snapshot if it has been built. Otherwise a
+     * build is scheduled and null is returned, so the caller can scan instead.
+     *
+     * @param corpus the snapshot the caller is working on
+     * @return the index for the snapshot, or null if it is not ready yet
+     */
+    public SuffixArrayIndex getIndex(PageCorpus corpus) {
+        SuffixArrayIndex current = index;
+        if (current != null && current.getCorpus() == corpus) {
+            return current;
+        }
+        scheduleBuild();
+        return null;
+    }
+
+    /**
+     * Reports the size and build cost of the current index next to the cost
+     * of one linear scan over the same corpus.
+     *
+     * @return statistics of the current index, or an empty map if none is built
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        SuffixArrayIndex current = index;
+        if (current == null) {
+            return stats;
+        }
+        stats.put("pages", current.getCorpus().size());
+        stats.put("characters", current.getTextLength());
+        stats.put("memoryBytes", current.getMemoryBytes());
+        stats.put("buildMillis", current.getBuildMillis());
+        stats.put("scanMicros", scanMicros);
+        return stats;
+    }
+
+    private void scheduleBuild() {
+        if (!building.compareAndSet(false, true)) {
+            return; // A build is already queued; it picks up the newest snapshot
+        }
+        buildExecutor.execute(() -> {
+            try {
+                PageCorpus latest = pageCorpusService.getCorpus();
+                SuffixArrayIndex built = SuffixArrayIndex.build(latest);
+                index = built;
+                scanMicros = measureScan(latest);
+                System.out.println("Substring index: " + built.getTextLength() + " chars, "
+                        + built.getMemoryBytes() + " bytes, built in " + built.getBuildMillis()
+                        + " ms; one linear scan takes " + scanMicros + " us");
+            } catch (Exception e) {
+                System.err.println("Error building substring index");
+                e.printStackTrace();
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    // Times one single-keyword scan over every page, the cost the index replaces per query
+    private static long measureScan(PageCorpus corpus) {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new String[] { "e" });
+        long start = System.nanoTime();
+        long total = 0;
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            total += matcher.countTotal(corpus.getFoldedContent(doc));
+        }
+        return total >= 0 ? (System.nanoTime() - start) / 1000 : 0;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.model;
+
+import java.util.Arrays;
+
+/**
+ * Suffix array over the concatenated, case-folded content of a
+ * {@link PageCorpus}. Pages are separated by a NUL character, which never
+ * occurs in a search pattern, so a match can never span two pages.
+ *
+ * Counting the occurrences of a pattern in every page costs
+ * O(|P| log n + occ): two binary searches find the block of suffixes that
+ * start with the pattern, and every suffix in that block is one occurrence in
+ * the page it starts in. Overlapping occurrences are counted, exactly like a
+ * linear scan of each page would count them.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class SuffixArrayIndex {
+
+    // Separator placed after every page
+    public static final char SEPARATOR = '\0';
+
+    // Corpus snapshot the index was built from
+    private final PageCorpus corpus;
+
+    // Concatenated case-folded content of all pages
+    private final char[] text;
+
+    // Start positions of the suffixes of text, in lexicographic order
+    private final int[] suffixArray;
+
+    // Page that each suffix of the suffix array starts in
+    private final int[] suffixDocs;
+
+    // Time it took to build the index
+    private final long buildNanos;
+
+    private SuffixArrayIndex(PageCorpus corpus, char[] text, int[] suffixArray, int[] suffixDocs, long buildNanos) {
+        this.corpus = corpus;
+        this.text = text;
+        this.suffixArray = suffixArray;
+        this.suffixDocs = suffixDocs;
+        this.buildNanos = buildNanos;
+    }
+
+    /**
+     * Builds the index for a corpus snapshot by prefix doubling with radix
+     * sorting, in O(n log n) time for n characters of content.
+     *
+     * @param corpus The corpus to index
+     * @return The built index
+     */
+    public static SuffixArrayIndex build(PageCorpus corpus) {
+        long start = System.nanoTime();
+
+        // Concatenate the pages, remembering the page of every position
+        int length = 0;
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            length += corpus.getFoldedContent(doc).length() + 1;
+        }
+        char[] text = new char[length];
+        int[] positionDocs = new int[length];
+        int position = 0;
+        for (int doc = 0; doc < corpus.size(); doc++) {
+            String content = corpus.getFoldedContent(doc);
+            content.getChars(0, content.length(), text, position);
+            // A NUL inside a page would act as a page boundary; replace it with a space
+            for (int i = position; i < position + content.length(); i++) {
+                if (text[i] == SEPARATOR) {
+                    text[i] = ' ';
+                }
+            }
+            Arrays.fill(positionDocs, position, position + content.length() + 1, doc);
+            position += content.length();
+            text[position++] = SEPARATOR;
+        }
+
+        int[] suffixArray = buildSuffixArray(text);
+        int[] suffixDocs = new int[length];
+        for (int i = 0; i < length; i++) {
+            suffixDocs[i] = positionDocs[suffixArray[i]];
+        }
+        return new SuffixArrayIndex(corpus, text, suffixArray, suffixDocs, System.nanoTime() - start);
+    }
+
+    /**
+     * Sorts the suffixes of a text by prefix doubling. After the round for
+     * step k, suffixes are sorted by their first 2k characters and rank[i] is
+     * the class of suffix i under that order.
+     */
+    private static int[] buildSuffixArray(char[] text) {
+        int n = text.length;
+        int[] suffixArray = new int[n];
+        int[] rank = new int[n];
+        int[] nextRank = new int[n];
+        int[] bySecondKey = new int[n];
+        if (n == 0) {
+            return suffixArray;
+        }
+
+        // Initial order and classes by first character
+        int[] counts = new int[Math.max(Character.MAX_VALUE + 1, n) + 1];
+        for (char c : text) {
+            counts[c + 1]++;
+        }
+        for (int c = 1; c <= Character.MAX_VALUE + 1; c++) {
+            counts[c] += counts[c - 1];
+        }
+        for (int i = 0; i < n; i++) {
+            suffixArray[counts[text[i]]++] = i;
+        }
+        int classes = 1;
+        rank[suffixArray[0]] = 0;
+        for (int i = 1; i < n; i++) {
+            if (text[suffixArray[i]] != text[suffixArray[i - 1]]) {
+                classes++;
+            }
+            rank[suffixArray[i]] = classes - 1;
+        }
+
+        for (int k = 1; classes < n; k <<= 1) {
+            // Order by second key: suffixes without a second half first, then by the previous order
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                bySecondKey[p++] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                if (suffixArray[i] >= k) {
+                    bySecondKey[p++] = suffixArray[i] - k;
+                }
+            }
+
+            // Stable counting sort by first key
+            Arrays.fill(counts, 0, classes + 1, 0);
+            for (int i = 0; i < n; i++) {
+                counts[rank[i] + 1]++;
+            }
+            for (int c = 1; c <= classes; c++) {
+                counts[c] += counts[c - 1];
+            }
+            for (int i = 0; i < n; i++) {
+                int suffix = bySecondKey[i];
+                suffixArray[counts[rank[suffix]]++] = suffix;
+            }
+
+            // Recompute the classes for prefixes of length 2k
+            nextRank[suffixArray[0]] = 0;
+            classes = 1;
+            for (int i = 1; i < n; i++) {
+                int current = suffixArray[i];
+                int previous = suffixArray[i - 1];
+                int currentSecond = current + k < n ? rank[current + k] : -1;
+                int previousSecond = previous + k < n ? rank[previous + k] : -1;
+                if (rank[current] != rank[previous] || currentSecond != previousSecond) {
+                    classes++;
+                }
+                nextRank[current] = classes - 1;
+            }
+            int[] swap = rank;
+            rank = nextRank;
+            nextRank = swap;
+        }
+        return suffixArray;
+    }
+
+    /**
+     * Gets the corpus snapshot this index was built from.
+     *
+     * @return The indexed corpus
+     */
+    public PageCorpus getCorpus() {
+        return corpus;
+    }
+
+    /**
+     * Tells whether a pattern can be answered by the index. Empty patterns and
+     * patterns containing the page separator cannot.
+     *
+     * @param pattern The case-folded pattern
+     * @return True if {@link #addOccurrences} gives exact counts for the pattern
+     */
+    public static boolean supports(String pattern) {
+        return !pattern.isEmpty() && pattern.indexOf(SEPARATOR) < 0;
+    }
+
+    /**
+     * Adds the number of occurrences of every pattern in every page to a
+     * per-page counter array, and returns the pages that were touched.
+     * Pages that contain none of the patterns are never visited.
+     *
+     * @param patterns The case-folded patterns; all must be {@link #supports supported}
+     * @param counts   The counters, indexed by document id, all zero on entry
+     * @return The ids of the pages whose counter is now greater than zero
+     */
+    public int[] addOccurrences(String[] patterns, int[] counts) {
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (String pattern : patterns) {
+            int from = lowerBound(pattern);
+            int to = upperBound(pattern, from);
+            for (int i = from; i < to; i++) {
+                int doc = suffixDocs[i];
+                if (counts[doc]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = doc;
+                }
+            }
+        }
+        return Arrays.copyOf(touched, touchedCount);
+    }
+
+    // First suffix that is not smaller than the pattern
+    private int lowerBound(String pattern) {
+        int low = 0;
+        int high = suffixArray.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(suffixArray[middle], pattern) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // First suffix after from that does not start with the pattern
+    private int upperBound(String pattern, int from) {
+        int low = from;
+        int high = suffixArray.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(suffixArray[middle], pattern) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the suffix at a position with a pattern, looking only at the
+     * first |pattern| characters of the suffix. Returns 0 if the suffix starts
+     * with the pattern.
+     */
+    private int comparePrefix(int suffix, String pattern) {
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            if (suffix + i >= text.length) {
+                return -1; // The suffix is a proper prefix of the pattern
+            }
+            char c = text[suffix + i];
+            char p = pattern.charAt(i);
+            if (c != p) {
+                return c < p ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of indexed characters, including page separators.
+     *
+     * @return The length of the concatenated text
+     */
+    public int getTextLength() {
+        return text.length;
+    }
+
+    /**
+     * Gets the memory used by the index: 2 bytes per character of text plus
+     * 4 bytes each for the suffix array and the page of every suffix.
+     *
+     * @return The memory in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) text.length * (Character.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Gets the time it took to build the index.
+     *
+     * @return The build time in milliseconds
+     */
+    public long getBuildMillis() {
+        return buildNanos / 1_000_000;
+    }
+}
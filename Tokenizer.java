@@ -0,0 +1,269 @@
+package com.example.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming tokenizer shared by everything that splits text into words.
+ *
+ * A word is a maximal run of letters, digits (Unicode categories L and N)
+ * and underscores; every other character separates words. Words are
+ * lowercased one code point at a time, without locale rules, directly in the
+ * tokenizer's buffer. Each call to {@link #next()} exposes the current word as
+ * a slice of {@link #buffer()}, so text can be tokenized without creating a
+ * String per word; {@link #token()} creates one when it is needed.
+ *
+ * Text is read in chunks from a {@link Reader} or a {@link CharSequence}, so
+ * a file never has to be loaded into a single string. The buffer only grows
+ * when a single word is longer than it. A tokenizer can be reset to new text
+ * and reused, but it is not thread-safe.
+ */
+public final class Tokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int scan;        // Next unread char in the buffer
+    private int limit;       // End of the chars read into the buffer
+    private int mark;        // First char that must stay in the buffer when it is refilled
+    private long bufferBase; // Offset in the text of buffer[0]
+
+    // Source of the text: a reader, or a sequence read from textOffset on
+    private Reader reader;
+    private CharSequence text;
+    private int textOffset;
+    private boolean exhausted = true;
+
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenPosition = -1;
+
+    /**
+     * Starts tokenizing text read from a reader. The reader is not closed.
+     *
+     * @param reader The source of the text
+     * @return This tokenizer
+     */
+    public Tokenizer reset(Reader reader) {
+        this.reader = reader;
+        this.text = null;
+        return restart();
+    }
+
+    /**
+     * Starts tokenizing a string, CharBuffer or other character sequence. The
+     * sequence is read as it is tokenized, so it must not change meanwhile.
+     *
+     * @param text The text
+     * @return This tokenizer
+     */
+    public Tokenizer reset(CharSequence text) {
+        this.reader = null;
+        this.text = text;
+        this.textOffset = 0;
+        return restart();
+    }
+
+    private Tokenizer restart() {
+        scan = 0;
+        limit = 0;
+        mark = 0;
+        bufferBase = 0;
+        exhausted = false;
+        tokenStart = 0;
+        tokenLength = 0;
+        tokenPosition = -1;
+        return this;
+    }
+
+    /**
+     * Advances to the next word and lowercases it in the buffer.
+     *
+     * @return false if the text has no more words
+     * @throws UncheckedIOException if the reader fails
+     */
+    public boolean next() {
+        // Skip separators; they are dropped from the buffer when it is refilled
+        while (true) {
+            mark = scan;
+            if (!available()) {
+                tokenLength = 0;
+                return false;
+            }
+            int codePoint = Character.codePointAt(buffer, scan, limit);
+            if (isWordCodePoint(codePoint)) {
+                break;
+            }
+            scan += Character.charCount(codePoint);
+        }
+
+        // Fold the word in place; refills move it to the front of the buffer and adjust the mark
+        while (available()) {
+            int codePoint = Character.codePointAt(buffer, scan, limit);
+            if (!isWordCodePoint(codePoint)) {
+                break;
+            }
+            int charCount = Character.charCount(codePoint);
+            int folded = Character.toLowerCase(codePoint);
+            if (folded != codePoint && Character.charCount(folded) == charCount) {
+                Character.toChars(folded, buffer, scan);
+            }
+            scan += charCount;
+        }
+        tokenStart = mark;
+        tokenLength = scan - mark;
+        tokenPosition++;
+        return true;
+    }
+
+    /**
+     * Makes sure a whole code point starts at {@link #scan}, refilling the
+     * buffer if needed.
+     *
+     * @return false at the end of the text
+     */
+    private boolean available() {
+        while (!exhausted && (scan == limit || scan + 1 == limit && Character.isHighSurrogate(buffer[scan]))) {
+            fill();
+        }
+        return scan < limit;
+    }
+
+    private void fill() {
+        // Drop the chars before the mark, and grow the buffer only for a word longer than it
+        if (mark > 0) {
+            System.arraycopy(buffer, mark, buffer, 0, limit - mark);
+            bufferBase += mark;
+            scan -= mark;
+            limit -= mark;
+            mark = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            exhausted = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private int read(char[] destination, int offset, int length) {
+        if (reader != null) {
+            try {
+                return reader.read(destination, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (text == null || textOffset == text.length()) {
+            return -1;
+        }
+        int count = Math.min(length, text.length() - textOffset);
+        if (text instanceof String) {
+            ((String) text).getChars(textOffset, textOffset + count, destination, offset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                destination[offset + i] = text.charAt(textOffset + i);
+            }
+        }
+        textOffset += count;
+        return count;
+    }
+
+    /**
+     * Gets the buffer holding the current word. Its content changes on the
+     * next call to {@link #next()}.
+     *
+     * @return The buffer
+     */
+    public char[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the offset of the current word in {@link #buffer()}.
+     *
+     * @return The offset
+     */
+    public int offset() {
+        return tokenStart;
+    }
+
+    /**
+     * Gets the length of the current word in chars.
+     *
+     * @return The length
+     */
+    public int length() {
+        return tokenLength;
+    }
+
+    /**
+     * Gets the index of the current word among the words of the text.
+     *
+     * @return The 0-based position
+     */
+    public int position() {
+        return tokenPosition;
+    }
+
+    /**
+     * Gets the offset of the current word in the text, in chars.
+     *
+     * @return The offset from the start of the text
+     */
+    public long startOffset() {
+        return bufferBase + tokenStart;
+    }
+
+    /**
+     * Creates a string of the current word.
+     *
+     * @return The lowercased word
+     */
+    public String token() {
+        return new String(buffer, tokenStart, tokenLength);
+    }
+
+    /**
+     * Tells whether a code point belongs to words: a letter, a digit or other
+     * number, or an underscore.
+     *
+     * @param codePoint The code point
+     * @return true for a word character
+     */
+    public static boolean isWordCodePoint(int codePoint) {
+        if (codePoint < 0x80) { // ASCII fast path
+            return codePoint >= 'a' && codePoint <= 'z' || codePoint >= 'A' && codePoint <= 'Z'
+                    || codePoint >= '0' && codePoint <= '9' || codePoint == '_';
+        }
+        if (Character.isLetter(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+                || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * Splits text into lowercased words. Convenient for short text such as
+     * queries; long text is better streamed with {@link #next()}.
+     *
+     * @param text The text
+     * @return The words in order
+     */
+    public static List<String> tokenize(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer().reset(text);
+        while (tokenizer.next()) {
+            words.add(tokenizer.token());
+        }
+        return words;
+    }
+}
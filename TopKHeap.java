@@ -0,0 +1,138 @@
+package com.example.model;
+
+/**
+ * Bounded min-heap that keeps the k best scoring documents seen so far.
+ * Documents and scores are stored in parallel primitive arrays, so offering a
+ * candidate never allocates. Offering n candidates costs O(n log k).
+ *
+ * Higher scores rank first; equal scores rank the lower document id first,
+ * which matches the order a stable sort over document ids would produce.
+ */
+public final class TopKHeap {
+
+    private final int[] docs;
+    private final double[] scores;
+    private int size;
+
+    /**
+     * Creates a heap that keeps at most {@code capacity} documents.
+     *
+     * @param capacity The number of documents to keep
+     */
+    public TopKHeap(int capacity) {
+        this.docs = new int[Math.max(0, capacity)];
+        this.scores = new double[Math.max(0, capacity)];
+    }
+
+    /**
+     * Offers a document to the heap. It is kept only if it ranks above the
+     * worst document currently kept, or the heap is not full yet.
+     *
+     * @param doc   The document id
+     * @param score The score of the document
+     */
+    public void offer(int doc, double score) {
+        if (size < docs.length) {
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && ranksBefore(doc, score, docs[0], scores[0])) {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the number of documents currently kept.
+     *
+     * @return The number of documents in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap and returns its documents from best to worst.
+     *
+     * @return The document ids in rank order
+     */
+    public int[] drainDocs() {
+        int[] ranked = new int[size];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = docs[0];
+            removeTop();
+        }
+        return ranked;
+    }
+
+    /**
+     * Empties the heap and returns documents and scores from best to worst.
+     *
+     * @param rankedScores Receives the scores; must be at least {@link #size()} long
+     * @return The document ids in rank order
+     */
+    public int[] drain(double[] rankedScores) {
+        int[] ranked = new int[size];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = docs[0];
+            rankedScores[i] = scores[0];
+            removeTop();
+        }
+        return ranked;
+    }
+
+    // Returns true if document a ranks before document b
+    private static boolean ranksBefore(int docA, double scoreA, int docB, double scoreB) {
+        return scoreA > scoreB || (scoreA == scoreB && docA < docB);
+    }
+
+    private void removeTop() {
+        size--;
+        docs[0] = docs[size];
+        scores[0] = scores[size];
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            // The root holds the worst document, so a child must not rank after its parent
+            if (!ranksBefore(docs[parent], scores[parent], docs[index], scores[index])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && ranksBefore(docs[left], scores[left], docs[right], scores[right])) {
+                worst = right;
+            }
+            if (!ranksBefore(docs[index], scores[index], docs[worst], scores[worst])) {
+                break;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
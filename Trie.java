@@ -1,108 +1,543 @@
 package com.example.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
 
 /**
- * A Trie (prefix tree) implementation for storing words and their occurrences
- * in documents. Each word in the trie is associated with a list of occurrences
- * that store information such as the filename, page index, and position.
+ * A compact radix Trie (prefix tree) implementation for storing words and
+ * their occurrences in documents. Each word in the trie is associated with a
+ * compressed {@link PostingsList} holding the documents and positions where
+ * it occurs.
+ *
+ * Chains of single-child nodes are collapsed into one edge, so the trie has at
+ * most two nodes per word. Nodes are not objects: they are indexes into
+ * pages of ints holding the node's edge label (a slice of a shared char pool),
+ * its first child, its next sibling and the id of the word ending at it.
+ * A node costs 20 bytes plus its label, no matter how many children it has,
+ * and any Unicode letter can be stored.
+ *
+ * A Trie has a single writer, but any number of threads can read immutable
+ * {@link #snapshot() snapshots} of it while it is being written, without
+ * locking. Nodes and postings are stored in fixed-size pages: taking a
+ * snapshot copies only the page tables, and the writer copies a page the
+ * first time it modifies it after a snapshot, so a snapshot costs a few
+ * pages per changed node rather than a copy of the whole trie. Labels are
+ * only ever appended, so the label pool is shared as is.
  */
 public class Trie {
 
+    // Index of the root node
+    private static final int ROOT = 0;
+
+    // Marks a missing child, sibling or word
+    private static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Fields of a node, stored next to each other in its page
+    private static final int LABEL_START = 0;   // Start of the node's edge label in the pool
+    private static final int LABEL_LENGTH = 1;  // Length of the node's edge label
+    private static final int FIRST_CHILD = 2;   // First child of the node
+    private static final int NEXT_SIBLING = 3;  // Next sibling of the node
+    private static final int TERM_ID = 4;       // Word ending at the node
+    private static final int NODE_FIELDS = 5;
+
+    // Nodes and postings views are stored in pages of PAGE_SIZE entries
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private int[][] nodePages = new int[INITIAL_CAPACITY][];
+    private int nodeCount;
+
+    // Edge labels of all nodes, lowercased word characters only
+    private char[] labelPool = new char[INITIAL_CAPACITY * 4];
+    private int labelPoolSize;
+
+    // Postings of each word, indexed by term id; null in a snapshot
+    private PostingsList.Builder[] postings;
+    private int termCount;
+
+    // Postings of each word as of the last snapshot, indexed by term id
+    private PostingsList[][] viewPages = new PostingsList[INITIAL_CAPACITY][];
+
+    // Writer only: the version of each page, and the terms changed since the last snapshot.
+    // Pages of the current version are not shared with any snapshot and are modified in place.
+    private int[] nodePageVersions = new int[INITIAL_CAPACITY];
+    private int[] viewPageVersions = new int[INITIAL_CAPACITY];
+    private BitSet changedTerms = new BitSet();
+    private int version;
+
     /**
-     * Inner class representing a single node in the Trie.
+     * Constructor to initialize the Trie with an empty root node.
+     */
+    public Trie() {
+        postings = new PostingsList.Builder[INITIAL_CAPACITY];
+        newNode(0, 0);
+    }
+
+    /**
+     * Constructor for a read-only snapshot sharing the pages of a Trie.
      */
-    private class TrieNode {
-        TrieNode[] children; // Array to store child nodes (one for each letter in the alphabet)
-        List<Occurrence> occurrences; // List to store occurrences of the word ending at this node
+    private Trie(Trie source) {
+        nodePages = source.nodePages.clone();
+        nodeCount = source.nodeCount;
+        labelPool = source.labelPool;
+        labelPoolSize = source.labelPoolSize;
+        viewPages = source.viewPages.clone();
+        termCount = source.termCount;
+    }
 
-        /**
-         * Constructor to initialize the TrieNode with 26 children (for 'a' to 'z') and an empty list of occurrences.
-         */
-        public TrieNode() {
-            this.children = new TrieNode[26]; // 26 letters in the alphabet
-            this.occurrences = new ArrayList<>();
+    /**
+     * Takes an immutable snapshot of the Trie. The snapshot can be searched
+     * from any thread while this Trie keeps changing, and never sees later
+     * changes. Must be called by the writer.
+     *
+     * @return A read-only Trie with the words and postings added so far
+     */
+    public Trie snapshot() {
+        checkWritable();
+        // Publish the current postings of every term changed since the last snapshot
+        for (int termId = changedTerms.nextSetBit(0); termId >= 0; termId = changedTerms.nextSetBit(termId + 1)) {
+            int page = termId >>> PAGE_BITS;
+            if (viewPages[page] == null) {
+                viewPages[page] = new PostingsList[PAGE_SIZE];
+                viewPageVersions[page] = version;
+            } else if (viewPageVersions[page] != version) {
+                viewPages[page] = viewPages[page].clone();
+                viewPageVersions[page] = version;
+            }
+            viewPages[page][termId & PAGE_MASK] = postings[termId].build();
+        }
+        changedTerms.clear();
+
+        Trie snapshot = new Trie(this);
+        version++; // Every page is shared from now on
+        return snapshot;
+    }
+
+    /**
+     * Inserts all words of a document into the Trie. The position of a word
+     * is its index in the array; empty words are skipped but keep their
+     * position. Documents must be inserted in ascending id order.
+     *
+     * @param docId The global id of the document
+     * @param words The words of the document in text order
+     */
+    public void insertDocument(int docId, String[] words) {
+        checkWritable();
+        // Pair every occurrence with its term id and sort, grouping the positions of each term
+        long[] entries = new long[words.length];
+        int entryCount = 0;
+        for (int position = 0; position < words.length; position++) {
+            if (!words[position].isEmpty()) { // Ignore empty words
+                entries[entryCount++] = (long) addTerm(words[position]) << 32 | position;
+            }
         }
+        Arrays.sort(entries, 0, entryCount);
 
-        /**
-         * Converts a character to an index between 0 and 25 based on its position in the alphabet.
-         *
-         * @param c The character to convert.
-         * @return The index corresponding to the character.
-         */
-        public int charToIndex(char c) {
-            return c - 'a';
+        int[] positions = new int[entryCount];
+        for (int start = 0; start < entryCount; ) {
+            int termId = (int) (entries[start] >>> 32);
+            int end = start;
+            while (end < entryCount && (int) (entries[end] >>> 32) == termId) {
+                positions[end - start] = (int) entries[end];
+                end++;
+            }
+            postings[termId].addDocument(docId, positions, 0, end - start);
+            changedTerms.set(termId);
+            start = end;
         }
     }
 
-    private TrieNode root; // Root node of the Trie
+    /**
+     * Appends the words and postings of another Trie, typically one built by
+     * another thread over a later range of documents. Every document id in
+     * the other Trie must be greater than the ids already inserted here.
+     *
+     * @param other The Trie to merge into this one
+     */
+    public void addAll(Trie other) {
+        checkWritable();
+        other.walk((key, keyLength, otherTermId) -> {
+            int termId = addKey(key, keyLength);
+            postings[termId].addAll(other.getPostings(otherTermId));
+            changedTerms.set(termId);
+        });
+    }
 
     /**
-     * Constructor to initialize the Trie with an empty root node.
+     * Appends the documents of existing postings that pass a filter to a
+     * word, for example when merging index segments. The document ids must be
+     * greater than any already stored for the word.
+     *
+     * @param word     The word, normalized or not
+     * @param postings The postings to copy
+     * @param keep     Tells whether a document id is copied
      */
-    public Trie() {
-        root = new TrieNode();
+    public void addPostings(String word, PostingsList postings, IntPredicate keep) {
+        checkWritable();
+        int termId = addTerm(word);
+        this.postings[termId].addAll(postings, keep);
+        changedTerms.set(termId);
     }
 
     /**
-     * Inserts a word into the Trie along with its occurrence details.
+     * Visits every word of the Trie with its postings, in no particular order.
      *
-     * @param word      The word to insert into the Trie.
-     * @param filename  The name of the file where the word was found.
-     * @param pageIndex The page index where the word was found.
-     * @param position  The position of the word within the page.
+     * @param visitor Receives each normalized word and its postings
      */
-    public void insert(String word, String filename, int pageIndex, int position) {
-        TrieNode node = root;
+    public void forEachTerm(BiConsumer<String, PostingsList> visitor) {
+        walk((key, keyLength, termId) -> visitor.accept(new String(key, 0, keyLength), getPostings(termId)));
+    }
 
-        // Traverse through each character in the word
-        for (char c : word.toCharArray()) {
-            if (Character.isLetter(c)) { // Ignore non-letter characters
-                c = Character.toLowerCase(c); // Convert to lowercase for case-insensitivity
-                int index = node.charToIndex(c);
+    /**
+     * Receives the words found by {@link #walk}. The key array is reused
+     * between calls.
+     */
+    private interface TermVisitor {
+        void visit(char[] key, int keyLength, int termId);
+    }
+
+    /**
+     * Depth-first walk over all nodes, rebuilding each word's key from the
+     * edge labels on its path.
+     */
+    private void walk(TermVisitor visitor) {
+        char[] key = new char[64];
+        int[] nodes = new int[64];
+        int[] keyLengths = new int[64];
+        int stackSize = 0;
+        nodes[stackSize] = ROOT;
+        keyLengths[stackSize++] = 0;
 
-                // Create a new TrieNode if none exists for the current character
-                if (node.children[index] == null) {
-                    node.children[index] = new TrieNode();
+        while (stackSize > 0) {
+            int node = nodes[--stackSize];
+            int keyLength = keyLengths[stackSize];
+            if (node != ROOT) {
+                int labelLength = get(node, LABEL_LENGTH);
+                if (keyLength + labelLength > key.length) {
+                    key = Arrays.copyOf(key, Math.max(key.length * 2, keyLength + labelLength));
                 }
+                System.arraycopy(labelPool, get(node, LABEL_START), key, keyLength, labelLength);
+                keyLength += labelLength;
+            }
+            if (get(node, TERM_ID) != NONE) {
+                visitor.visit(key, keyLength, get(node, TERM_ID));
+            }
+            for (int child = get(node, FIRST_CHILD); child != NONE; child = get(child, NEXT_SIBLING)) {
+                if (stackSize == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, stackSize * 2);
+                    keyLengths = Arrays.copyOf(keyLengths, stackSize * 2);
+                }
+                nodes[stackSize] = child;
+                keyLengths[stackSize++] = keyLength;
+            }
+        }
+    }
+
+    /**
+     * Finds or creates the node for a word and returns its term id.
+     *
+     * @param word The word to add
+     * @return The term id of the normalized word
+     */
+    private int addTerm(String word) {
+        char[] key = normalize(word);
+        return addKey(key, key.length);
+    }
+
+    /**
+     * Finds or creates the node for a normalized key and returns its term id.
+     *
+     * @param key       The normalized key
+     * @param keyLength The number of chars of the key to use
+     * @return The term id of the key
+     */
+    private int addKey(char[] key, int keyLength) {
+        int node = ROOT;
+        int matched = 0;
+
+        // Walk down the trie, splitting an edge where the word leaves it
+        while (matched < keyLength) {
+            int child = findChild(node, key[matched]);
+            if (child == NONE) {
+                node = addChild(node, key, matched, keyLength - matched);
+                matched = keyLength;
+                break;
+            }
 
-                // Move to the next node in the Trie
-                node = node.children[index];
+            int common = commonPrefix(child, key, matched, keyLength);
+            if (common < get(child, LABEL_LENGTH)) {
+                child = split(node, child, common);
             }
+            node = child;
+            matched += common;
         }
 
-        // Add the occurrence details at the last node
-        node.occurrences.add(new Occurrence(pageIndex, position, filename));
+        // Mark the end of the word at the last node
+        if (get(node, TERM_ID) == NONE) {
+            if (termCount == postings.length) {
+                postings = Arrays.copyOf(postings, termCount * 2);
+            }
+            if ((termCount >>> PAGE_BITS) == viewPages.length) {
+                viewPages = Arrays.copyOf(viewPages, viewPages.length * 2);
+                viewPageVersions = Arrays.copyOf(viewPageVersions, viewPages.length);
+            }
+            postings[termCount] = new PostingsList.Builder();
+            set(node, TERM_ID, termCount++);
+        }
+        return get(node, TERM_ID);
     }
 
     /**
-     * Searches for a word in the Trie and returns a list of occurrences if found.
+     * Searches for a word in the Trie and returns its postings if found.
      *
      * @param word The word to search for in the Trie.
-     * @return A list of occurrences of the word, or an empty list if the word is not found.
+     * @return The postings of the word, or an empty list if the word is not found.
      */
-    public List<Occurrence> search(String word) {
-        TrieNode node = root;
+    public PostingsList search(String word) {
+        int node = findNode(normalize(word));
 
-        // Traverse through each character in the word
-        for (char c : word.toCharArray()) {
-            if (Character.isLetter(c)) { // Ignore non-letter characters
-                c = Character.toLowerCase(c); // Convert to lowercase for case-insensitivity
-                int index = node.charToIndex(c);
+        // Return the postings stored for the word ending at the node
+        if (node == NONE || get(node, TERM_ID) == NONE) {
+            return PostingsList.EMPTY;
+        }
+        return getPostings(get(node, TERM_ID));
+    }
 
-                // If the node for the current character does not exist, the word is not found
-                if (node.children[index] == null) {
-                    return Collections.emptyList(); // Return an empty list
-                }
+    /**
+     * Gets the postings of a term: the builder's current content in the
+     * writable Trie, or the view published with a snapshot.
+     */
+    private PostingsList getPostings(int termId) {
+        if (postings != null) {
+            return postings[termId].build();
+        }
+        return viewPages[termId >>> PAGE_BITS][termId & PAGE_MASK];
+    }
 
-                // Move to the next node in the Trie
-                node = node.children[index];
+    /**
+     * Gets the number of distinct words stored in the Trie.
+     *
+     * @return The number of words.
+     */
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Gets the number of nodes in the Trie, including the root.
+     *
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Estimates the memory used by the node structure and labels, not counting
+     * the postings.
+     *
+     * @return The estimated memory in bytes.
+     */
+    public long estimateNodeMemoryBytes() {
+        return 5L * Integer.BYTES * nodeCount + (long) Character.BYTES * labelPoolSize;
+    }
+
+    /**
+     * Gets the memory reserved for the postings of all words.
+     *
+     * @return The memory in bytes
+     */
+    public long getPostingsMemoryBytes() {
+        long bytes = 0;
+        for (int termId = 0; termId < termCount; termId++) {
+            bytes += postings != null ? postings[termId].getMemoryBytes() : getPostings(termId).getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Lowercases the word characters of a word and drops every other
+     * character, the same way for inserts and searches. Word characters are
+     * those of {@link Tokenizer}, so a token is its own key.
+     *
+     * @param word The word to normalize.
+     * @return The normalized key as UTF-16 chars.
+     */
+    static char[] normalize(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = word.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Tokenizer.isWordCodePoint(codePoint)) { // Ignore characters that never occur in tokens
+                key.appendCodePoint(foldCase(codePoint)); // Lowercase for case-insensitivity
+            }
+        }
+        char[] chars = new char[key.length()];
+        key.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+
+    /**
+     * Lowercases a code point the way {@link Tokenizer} does, which keeps
+     * characters whose lowercase form has a different length.
+     *
+     * @param codePoint The code point.
+     * @return The lowercased code point.
+     */
+    static int foldCase(int codePoint) {
+        int folded = Character.toLowerCase(codePoint);
+        return Character.charCount(folded) == Character.charCount(codePoint) ? folded : codePoint;
+    }
+
+    /**
+     * Finds the node at which a normalized key ends.
+     *
+     * @return The node, or NONE if the key does not end exactly at a node.
+     */
+    private int findNode(char[] key) {
+        int node = ROOT;
+        int matched = 0;
+        while (matched < key.length) {
+            node = findChild(node, key[matched]);
+            // If the node for the current character does not exist, the word is not found
+            if (node == NONE || commonPrefix(node, key, matched, key.length) < get(node, LABEL_LENGTH)) {
+                return NONE;
+            }
+            matched += get(node, LABEL_LENGTH);
+        }
+        return node;
+    }
+
+    /**
+     * Finds the child of a node whose edge label starts with a character.
+     *
+     * @return The child node, or NONE if there is no such child.
+     */
+    private int findChild(int node, char first) {
+        for (int child = get(node, FIRST_CHILD); child != NONE; child = get(child, NEXT_SIBLING)) {
+            if (labelPool[get(child, LABEL_START)] == first) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Counts how many characters of a node's edge label match the key between
+     * an offset and the end of the key.
+     */
+    private int commonPrefix(int node, char[] key, int offset, int keyLength) {
+        int start = get(node, LABEL_START);
+        int length = Math.min(get(node, LABEL_LENGTH), keyLength - offset);
+        int common = 0;
+        while (common < length && labelPool[start + common] == key[offset + common]) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Splits the edge into a child after the given number of characters. The
+     * child keeps the rest of the label and is moved under a new node that
+     * takes its place among the parent's children.
+     *
+     * @return The new intermediate node.
+     */
+    private int split(int parent, int child, int length) {
+        int middle = newNode(get(child, LABEL_START), length);
+        set(child, LABEL_START, get(child, LABEL_START) + length);
+        set(child, LABEL_LENGTH, get(child, LABEL_LENGTH) - length);
+
+        // The new node takes the child's place in the sibling list
+        set(middle, NEXT_SIBLING, get(child, NEXT_SIBLING));
+        set(child, NEXT_SIBLING, NONE);
+        set(middle, FIRST_CHILD, child);
+        if (get(parent, FIRST_CHILD) == child) {
+            set(parent, FIRST_CHILD, middle);
+        } else {
+            int previous = get(parent, FIRST_CHILD);
+            while (get(previous, NEXT_SIBLING) != child) {
+                previous = get(previous, NEXT_SIBLING);
+            }
+            set(previous, NEXT_SIBLING, middle);
+        }
+        return middle;
+    }
+
+    /**
+     * Appends a new child with the given label at the end of a node's sibling list.
+     *
+     * @return The new child node.
+     */
+    private int addChild(int parent, char[] key, int offset, int length) {
+        if (labelPoolSize + length > labelPool.length) {
+            labelPool = Arrays.copyOf(labelPool, Math.max(labelPool.length * 2, labelPoolSize + length));
+        }
+        System.arraycopy(key, offset, labelPool, labelPoolSize, length);
+        int child = newNode(labelPoolSize, length);
+        labelPoolSize += length;
+
+        if (get(parent, FIRST_CHILD) == NONE) {
+            set(parent, FIRST_CHILD, child);
+        } else {
+            int last = get(parent, FIRST_CHILD);
+            while (get(last, NEXT_SIBLING) != NONE) {
+                last = get(last, NEXT_SIBLING);
             }
+            set(last, NEXT_SIBLING, child);
+        }
+        return child;
+    }
+
+    /**
+     * Allocates a node without children, siblings or word.
+     */
+    private int newNode(int labelStart, int labelLength) {
+        int page = nodeCount >>> PAGE_BITS;
+        if (page == nodePages.length) {
+            nodePages = Arrays.copyOf(nodePages, nodePages.length * 2);
+            nodePageVersions = Arrays.copyOf(nodePageVersions, nodePages.length);
+        }
+        if (nodePages[page] == null) {
+            nodePages[page] = new int[PAGE_SIZE * NODE_FIELDS];
+            nodePageVersions[page] = version;
         }
+        int node = nodeCount++;
+        set(node, LABEL_START, labelStart);
+        set(node, LABEL_LENGTH, labelLength);
+        set(node, FIRST_CHILD, NONE);
+        set(node, NEXT_SIBLING, NONE);
+        set(node, TERM_ID, NONE);
+        return node;
+    }
 
-        // Return the list of occurrences stored at the last node
-        return node.occurrences;
+    /**
+     * Reads a field of a node.
+     */
+    private int get(int node, int field) {
+        return nodePages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_FIELDS + field];
+    }
+
+    /**
+     * Writes a field of a node, first copying its page if a snapshot shares it.
+     */
+    private void set(int node, int field, int value) {
+        int page = node >>> PAGE_BITS;
+        if (nodePageVersions[page] != version) {
+            nodePages[page] = nodePages[page].clone();
+            nodePageVersions[page] = version;
+        }
+        nodePages[page][(node & PAGE_MASK) * NODE_FIELDS + field] = value;
+    }
+
+    private void checkWritable() {
+        if (postings == null) {
+            throw new UnsupportedOperationException("Trie snapshots are read-only");
+        }
     }
 }
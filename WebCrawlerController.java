@@ -13,6 +13,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.service.InvertedIndexService; // Service that indexes page text
+import com.example.service.LinkGraphService; // Service that ranks pages by their links
+
 /**
  * REST Controller for web crawling functionality.
  * Allows users to extract all links (URLs) from a given webpage.
@@ -20,6 +23,23 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class WebCrawlerController {
 
+    // Service that receives the extracted links for link authority ranking
+    private final LinkGraphService linkGraphService;
+
+    // Service that makes the text of crawled pages searchable
+    private final InvertedIndexService invertedIndexService;
+
+    /**
+     * Constructor for injecting the service dependencies into the controller.
+     *
+     * @param linkGraphService     the service that records crawled links
+     * @param invertedIndexService the service that indexes crawled text
+     */
+    public WebCrawlerController(LinkGraphService linkGraphService, InvertedIndexService invertedIndexService) {
+        this.linkGraphService = linkGraphService;
+        this.invertedIndexService = invertedIndexService;
+    }
+
     /**
      * API endpoint to crawl a website and extract all links.
      *
@@ -49,6 +69,12 @@ public class WebCrawlerController {
                     links.add(absUrl); // Add the URL to the list if it's valid
                 }
             }
+
+            // Feed the page's outlinks into the link graph used for page ranking
+            linkGraphService.recordOutlinks(url, links);
+
+            // Index the page text under its URL, replacing any earlier crawl of the same page
+            invertedIndexService.addDocument(url, doc.text());
         } catch (IOException e) {
             // Handle network-related errors, such as connectivity issues
             e.printStackTrace();
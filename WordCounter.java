@@ -0,0 +1,140 @@
+package com.example.model;
+
+import java.util.Arrays;
+
+/**
+ * Exact word counts in primitive arrays, keyed by the char slices the
+ * {@link Tokenizer} produces. A word is looked up by its chars, so a String is
+ * only created the first time a word is seen, and counts are plain ints
+ * rather than boxed map values.
+ *
+ * Words get dense ids in order of first appearance. The table uses open
+ * addressing with linear probing and doubles when it is half full.
+ * Not thread-safe.
+ */
+public final class WordCounter {
+
+    private String[] words = new String[16];
+    private int[] hashes = new int[16];
+    private int[] counts = new int[16];
+    private int size;
+    private long total;
+
+    // Buckets holding word id + 1, or 0 when empty
+    private int[] table = new int[32];
+
+    /**
+     * Counts one occurrence of a word.
+     *
+     * @param chars  The buffer holding the word
+     * @param offset The offset of the word in the buffer
+     * @param length The length of the word
+     */
+    public void add(char[] chars, int offset, int length) {
+        total++;
+        int hash = hash(chars, offset, length);
+        int mask = table.length - 1;
+        int bucket = spread(hash) & mask;
+        while (table[bucket] != 0) {
+            int id = table[bucket] - 1;
+            if (hashes[id] == hash && matches(words[id], chars, offset, length)) {
+                counts[id]++;
+                return;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        // First occurrence: give the word the next id
+        if (size == words.length) {
+            words = Arrays.copyOf(words, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        words[size] = new String(chars, offset, length);
+        hashes[size] = hash;
+        counts[size] = 1;
+        table[bucket] = ++size;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int bucket = spread(hashes[id]) & mask;
+            while (table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            table[bucket] = id + 1;
+        }
+    }
+
+    /**
+     * Finds the most frequent words with a heap of size n, without sorting
+     * the other words. Equal counts rank the word seen first first.
+     *
+     * @param n The number of words to return
+     * @return The ids of the words, most frequent first
+     */
+    public int[] top(int n) {
+        TopKHeap heap = new TopKHeap(Math.min(n, size));
+        for (int id = 0; id < size; id++) {
+            heap.offer(id, counts[id]);
+        }
+        return heap.drainDocs();
+    }
+
+    public String getWord(int id) {
+        return words[id];
+    }
+
+    public int getCount(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Gets the number of distinct words.
+     *
+     * @return The number of words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of words counted, with repetitions.
+     *
+     * @return The total count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    // Same hash as String.hashCode, so it can be computed from either form
+    static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    // Mixes the high bits into the low bits used to pick a bucket
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    static boolean matches(String word, char[] chars, int offset, int length) {
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
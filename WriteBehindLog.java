@@ -0,0 +1,496 @@
+package com.example.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store of keyed counters: an append-only log written behind the
+ * callers, compacted into snapshots.
+ *
+ * {@link #append(String, long)} never touches the disk. Updates are added to
+ * an in-memory batch, where repeated keys coalesce into one delta, and a
+ * background thread swaps the batch out every {@link #FLUSH_INTERVAL_MILLIS}
+ * and appends it to the log as one frame with a CRC, followed by a single
+ * fsync. A crash loses at most the last interval. Keys updated within one
+ * interval are written in no particular order.
+ *
+ * The log is split into numbered segments. Once the closed segments reach
+ * {@link #COMPACT_BYTES}, the background thread folds them and the previous
+ * snapshot into a new snapshot. It is built in a scratch {@link SnapshotState}
+ * rather than from the live state, so the snapshot matches the log exactly. The snapshot
+ * records the first segment it does not include; it is written to a temporary
+ * file and moved into place, and the segments it includes are deleted after.
+ *
+ * On startup the snapshot is loaded and the later segments are replayed into
+ * the live state. A frame cut short by a crash ends the replay of its segment.
+ * New updates always go to a new segment.
+ */
+public final class WriteBehindLog implements Closeable {
+
+    /**
+     * The counters a log is replayed into.
+     */
+    public interface State {
+
+        /**
+         * Loads a snapshot written by {@link SnapshotState#save(DataOutputStream)}.
+         */
+        void load(DataInputStream in) throws IOException;
+
+        /**
+         * Applies one logged update.
+         */
+        void apply(String key, long delta);
+    }
+
+    /**
+     * A state that snapshots are built in.
+     */
+    public interface SnapshotState extends State {
+
+        /**
+         * Writes a snapshot of the state.
+         */
+        void save(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * State of plain counters by key, in the order keys were first seen.
+     */
+    public static final class CountState implements SnapshotState {
+        private static final int MAGIC = 0x57424c43; // "WBLC"
+
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+
+        @Override
+        public void load(DataInputStream in) throws IOException {
+            read(in, this::apply);
+        }
+
+        @Override
+        public void apply(String key, long delta) {
+            counts.merge(key, delta, Long::sum);
+        }
+
+        @Override
+        public void save(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(counts.size());
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                writeKey(out, entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+
+        /**
+         * Reads the counters of a snapshot written by a CountState.
+         *
+         * @param in       The snapshot
+         * @param consumer Receives each key and its count, in order
+         * @throws IOException if reading fails or the data is not a snapshot of counters
+         */
+        public static void read(DataInputStream in, ObjLongConsumer<String> consumer) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot of counters");
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                consumer.accept(readKey(in), in.readLong());
+            }
+        }
+    }
+
+    // Updates are appended at this interval, with one fsync each
+    public static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    // Closed segments are compacted into the snapshot once they reach this size
+    public static final long COMPACT_BYTES = 64L << 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x57424c53; // "WBLS"
+    private static final int MAX_KEY_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final String name;
+    private final Supplier<? extends SnapshotState> scratchState;
+
+    // The batch callers add to; swapped out by each flush
+    private volatile Batch batch = new Batch();
+
+    // The segment being appended to, null once closed, and the bytes in the closed segments
+    private FileChannel segment;
+    private long generation;
+    private long closedBytes;
+
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Opens the log in a directory, replays it into the live state, and
+     * starts writing behind.
+     *
+     * @param directory    The directory of the snapshot and segments
+     * @param name         The prefix of the files, unique in the directory
+     * @param live         The state to replay the snapshot and log into
+     * @param scratchState Creates empty states to build snapshots in
+     * @throws IOException if the directory or a new segment cannot be created
+     */
+    public WriteBehindLog(Path directory, String name, State live, Supplier<? extends SnapshotState> scratchState)
+            throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.scratchState = scratchState;
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        long first = loadSnapshot(live);
+        long records = 0;
+        long last = first - 1;
+        for (long existing : listSegments()) {
+            if (existing < first || Files.size(segmentPath(existing)) == 0) {
+                Files.deleteIfExists(segmentPath(existing)); // Already in the snapshot, or empty
+            } else {
+                records += replay(segmentPath(existing), live);
+                closedBytes += Files.size(segmentPath(existing));
+                last = existing;
+            }
+        }
+        if (records > 0 || first > 0) {
+            System.out.println("Recovered " + name + " from " + (first > 0 ? "a snapshot and " : "") + records
+                    + " logged updates in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        openSegment(last + 1);
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushAndCompact, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a delta to a counter. It is written on the next flush. Never blocks
+     * on the disk.
+     *
+     * @param key   The counter
+     * @param delta The amount to add
+     */
+    public void append(String key, long delta) {
+        while (true) {
+            Batch current = batch;
+            current.writers.increment();
+            try {
+                // Re-checked after registering, so a flush either sees this writer or this writer sees the swap
+                if (current == batch) {
+                    LongAdder adder = current.deltas.get(key);
+                    if (adder == null) {
+                        adder = current.deltas.computeIfAbsent(key, k -> new LongAdder());
+                    }
+                    adder.add(delta);
+                    return;
+                }
+            } finally {
+                current.writers.decrement();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending updates to the log now and waits until they are
+     * on disk.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        try {
+            writer.submit(() -> {
+                flushBatch();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Compacts the log into a new snapshot now, and waits until it is done.
+     *
+     * @throws IOException if writing fails
+     */
+    public void compact() throws IOException {
+        try {
+            writer.submit(() -> {
+                flushBatch();
+                compactSegments();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    // Runs on the writer thread
+    private void flushAndCompact() {
+        if (segment == null) {
+            return; // Closed, while this run was already scheduled
+        }
+        try {
+            flushBatch();
+            if (closedBytes + segment.size() >= COMPACT_BYTES) {
+                compactSegments();
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing the " + name + " log");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Swaps out the batch and appends it as one frame: its length, a CRC32 of
+     * the records, then the records, each a key and a delta.
+     */
+    private void flushBatch() throws IOException {
+        Batch flushed = batch;
+        if (flushed.deltas.isEmpty()) {
+            return;
+        }
+        batch = new Batch();
+        while (flushed.writers.sum() != 0) {
+            Thread.onSpinWait(); // A caller is still adding to the old batch
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(payload);
+        for (Map.Entry<String, LongAdder> entry : flushed.deltas.entrySet()) {
+            writeKey(records, entry.getKey());
+            records.writeLong(entry.getValue().sum());
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(bytes.length).putInt((int) crc.getValue());
+        header.flip();
+        ByteBuffer[] frame = { header, ByteBuffer.wrap(bytes) };
+        try {
+            while (frame[1].hasRemaining()) {
+                segment.write(frame);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            // Keep the updates for the next flush, in a new segment since this one may hold part of the frame
+            flushed.deltas.forEach((key, delta) -> append(key, delta.sum()));
+            openSegment(generation + 1);
+            throw e;
+        }
+    }
+
+    /**
+     * Folds the snapshot and the closed segments into a new snapshot in a
+     * scratch state, then deletes the segments it includes.
+     */
+    private void compactSegments() throws IOException {
+        long start = System.nanoTime();
+        long through = generation;
+        openSegment(generation + 1);
+
+        SnapshotState state = scratchState.get();
+        long first = loadSnapshot(state);
+        List<Long> included = new ArrayList<>();
+        for (long existing : listSegments()) {
+            if (existing <= through) {
+                if (existing >= first) {
+                    replay(segmentPath(existing), state);
+                }
+                included.add(existing);
+            }
+        }
+
+        Path snapshot = snapshotPath();
+        Path temporary = directory.resolve(name + ".snapshot.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(through + 1);
+            state.save(out);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long existing : included) {
+            Files.deleteIfExists(segmentPath(existing));
+        }
+        closedBytes = 0;
+        System.out.println("Compacted the " + name + " log into a " + Files.size(snapshot) / 1024 + " KB snapshot in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Loads the snapshot into a state.
+     *
+     * @return The first segment the snapshot does not include, 0 without a snapshot
+     */
+    private long loadSnapshot(State state) throws IOException {
+        Path snapshot = snapshotPath();
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot: " + snapshot);
+            }
+            long first = in.readLong();
+            state.load(in);
+            return first;
+        }
+    }
+
+    /**
+     * Applies the records of a segment to a state, up to the first frame that
+     * is cut short or fails its CRC.
+     *
+     * @return The number of records applied
+     */
+    private long replay(Path path, State state) throws IOException {
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return records; // End of the segment
+                }
+                int expectedCrc = in.readInt();
+                if (length < 0) {
+                    throw new EOFException();
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != expectedCrc) {
+                    System.err.println("Skipping the end of " + path + " after a frame with a bad CRC");
+                    return records;
+                }
+                DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+                while (frame.available() > 0) {
+                    state.apply(readKey(frame), frame.readLong());
+                    records++;
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("Skipping the end of " + path + " after a frame cut short");
+            return records;
+        }
+    }
+
+    private void openSegment(long newGeneration) throws IOException {
+        if (segment != null) {
+            closedBytes += segment.size();
+            segment.close();
+        }
+        generation = newGeneration;
+        segment = FileChannel.open(segmentPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Generations of the segments in the directory, in order
+    private List<Long> listSegments() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "-*.log")) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // Not a segment of this log
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve(name + ".snapshot");
+    }
+
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve(name + "-" + segmentGeneration + ".log");
+    }
+
+    private static void writeKey(DataOutputStream out, String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readKey(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_KEY_BYTES) {
+            throw new IOException("Invalid key length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the pending updates and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        try {
+            writer.submit(() -> {
+                flushBatch();
+                segment.close();
+                segment = null;
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    // Deltas added since the last flush, and the callers adding to them
+    private static final class Batch {
+        final ConcurrentHashMap<String, LongAdder> deltas = new ConcurrentHashMap<>();
+        final LongAdder writers = new LongAdder();
+    }
+}
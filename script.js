@@ -1,3 +1,12 @@
+// Identifies this tab, so the searches made here are suggested first
+const sessionId =
+  sessionStorage.getItem("sessionId") ||
+  (() => {
+    const id = crypto.randomUUID();
+    sessionStorage.setItem("sessionId", id);
+    return id;
+  })();
+
 // Function to toggle the explore popup visibility
 function toggleExplorePopup() {
   const popup = document.getElementById("explorePopup");
@@ -140,7 +149,7 @@ function handleSearch(event) {
 
     // Fetch search results from the backend
     fetch(
-      `http://localhost:8080/api/search?query=${encodeURIComponent(searchTerm)}`
+      `http://localhost:8080/api/search?query=${encodeURIComponent(searchTerm)}&sessionId=${sessionId}`
     )
       .then((response) => {
         if (!response.ok) {
@@ -203,7 +212,7 @@ function fetchSearchResults(query) {
   const container = document.getElementById("content");
   container.innerHTML = "<p>Loading search results...</p>"; // Clear current content and show loading message
 
-  fetch(`http://localhost:8080/api/search?query=${query}`)
+  fetch(`http://localhost:8080/api/search?query=${query}&sessionId=${sessionId}`)
     .then((response) => {
       if (!response.ok) {
         throw new Error(`HTTP error! Status: ${response.status}`);
@@ -247,7 +256,7 @@ function fetchSearchResults(query) {
       return;
     }
 
-    fetch(`http://localhost:8080/api/autocomplete?query=${query}`)
+    fetch(`http://localhost:8080/api/autocomplete?query=${query}&sessionId=${sessionId}`)
       .then((response) => response.json())
       .then((data) => {
         if (data.length > 0) {